@@ -0,0 +1,173 @@
+package com.nickstephen.gamelib.opengl.shapes;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import com.nickstephen.gamelib.opengl.program.Program;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>Times changing sprites' texture coordinates with {@link Vertices#updateTextureCoords(int, int)}
+ * against repacking the whole vertex buffer with {@link Vertices#resetFloatBuffer()}, for sprites
+ * with their own vertices and for a batch of quads in one set of vertices. Nothing is drawn, so no
+ * GL context is needed. The times are logged rather than asserted on.</p>
+ * @author Nick Stephen
+ */
+public class VerticesBenchmark extends AndroidTestCase {
+    private static final int SPRITES = 500;
+    private static final int FRAMES = 600;
+    private static final int FLOATS_PER_QUAD = Vertices.TEXCOORD_CNT * 4;
+
+    private Quads[] mSingle;
+    private Quads mBatch;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mSingle = new Quads[SPRITES];
+        for (int i = 0; i < SPRITES; i++) {
+            mSingle[i] = new Quads(getContext(), 1);
+        }
+        mBatch = new Quads(getContext(), SPRITES);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (Quads quads : mSingle) {
+            quads.dispose();
+        }
+        mBatch.dispose();
+
+        super.tearDown();
+    }
+
+    /**
+     * Every sprite moves on to another frame of a 4x4 atlas each frame.
+     */
+    public void testSprites() {
+        report("sprites, reset", timeSingle(false));
+        report("sprites, update", timeSingle(true));
+    }
+
+    public void testBatch() {
+        report("batch, reset", timeBatch(1, false));
+        report("batch, update", timeBatch(1, true));
+    }
+
+    /**
+     * A tenth of the sprites in the batch change each frame.
+     */
+    public void testSparseBatch() {
+        report("batch 1/10, reset", timeBatch(10, false));
+        report("batch 1/10, update", timeBatch(10, true));
+    }
+
+    /**
+     * @return The mean time per frame (nanos)
+     */
+    private long timeSingle(boolean update) {
+        long start = 0;
+
+        // A quarter of the frames first to warm up
+        for (int f = -FRAMES / 4; f < FRAMES; f++) {
+            if (f == 0) {
+                start = System.nanoTime();
+            }
+
+            for (int i = 0; i < SPRITES; i++) {
+                final Vertices vertices = mSingle[i].getVertices();
+                setFrame(vertices.getTextureCoords(), 0, f + i);
+
+                if (update) {
+                    vertices.updateTextureCoords(0, 4);
+                } else {
+                    vertices.resetFloatBuffer();
+                }
+            }
+        }
+
+        return (System.nanoTime() - start) / FRAMES;
+    }
+
+    /**
+     * @param every Change one sprite in this many each frame
+     * @return The mean time per frame (nanos)
+     */
+    private long timeBatch(int every, boolean update) {
+        final Vertices vertices = mBatch.getVertices();
+        long start = 0;
+
+        for (int f = -FRAMES / 4; f < FRAMES; f++) {
+            if (f == 0) {
+                start = System.nanoTime();
+            }
+
+            for (int i = (f & Integer.MAX_VALUE) % every; i < SPRITES; i += every) {
+                setFrame(vertices.getTextureCoords(), i, f + i);
+
+                if (update) {
+                    vertices.updateTextureCoords(i * 4, 4);
+                }
+            }
+
+            if (!update) {
+                vertices.resetFloatBuffer();
+            }
+        }
+
+        return (System.nanoTime() - start) / FRAMES;
+    }
+
+    /**
+     * Write the texture coordinates of a cell of a 4x4 atlas into a quad, in the same order as
+     * {@link Sprite}.
+     */
+    private static void setFrame(@NotNull float[] coords, int quad, int frame) {
+        final int cell = frame & 15;
+        final float u1 = (cell & 3) / 4.f;
+        final float v1 = (cell >> 2) / 4.f;
+        final float u2 = u1 + 0.25f;
+        final float v2 = v1 + 0.25f;
+
+        int o = quad * FLOATS_PER_QUAD;
+        coords[o++] = u1; coords[o++] = v1;
+        coords[o++] = u2; coords[o++] = v1;
+        coords[o++] = u2; coords[o++] = v2;
+        coords[o++] = u1; coords[o] = v2;
+    }
+
+    private static void report(@NotNull String name, long nanos) {
+        Twig.debug("VerticesBenchmark", name + ": " + (nanos / 1000.0) + "us per frame (" + SPRITES + " sprites)");
+    }
+
+    /**
+     * A shape with some textured quads that's never drawn.
+     */
+    private static class Quads extends Shape {
+        Quads(@NotNull Context context, int quads) {
+            super(context, null, Program.SpriteProgram.create());
+
+            mVertices = new Vertices(this, quads);
+
+            float[] positions = new float[quads * 8];
+            for (int i = 0; i < quads; i++) {
+                final float x = (i % 32) * 16.f;
+                final float y = (i / 32) * 16.f;
+                final int o = i * 8;
+                positions[o] = x;               positions[o + 1] = y + 16.f;
+                positions[o + 2] = x + 16.f;    positions[o + 3] = y + 16.f;
+                positions[o + 4] = x + 16.f;    positions[o + 5] = y;
+                positions[o + 6] = x;           positions[o + 7] = y;
+            }
+            mVertices.setVertices(positions);
+            mVertices.setTextureCoords(new float[quads * FLOATS_PER_QUAD]);
+        }
+
+        @NotNull Vertices getVertices() {
+            return mVertices;
+        }
+    }
+}
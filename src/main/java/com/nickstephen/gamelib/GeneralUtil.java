@@ -23,13 +23,13 @@ public final class GeneralUtil {
      * @return The average value in the array.
      */
     public static long arrayAverage(@NotNull long[] input) {
-        long ave = input[0];
+        long sum = 0;
 
-        for (int i = 1; i < input.length; i++) {
-            ave = ave / 2 + input[i] / 2;
+        for (int i = 0; i < input.length; i++) {
+            sum += input[i];
         }
 
-        return ave;
+        return sum / input.length;
     }
 
     /**
@@ -168,7 +168,7 @@ public abstract class Animation {
      * in the {@link com.nickstephen.gamelib.run.GameLoop}
      */
     public void start() {
-        mStart = System.currentTimeMillis();
+        mStart = GameLoop.getInstanceUnsafe().getTime();
         GameLoop.getInstanceUnsafe().addAnimation(this);
     }
 
@@ -180,7 +180,7 @@ public abstract class Animation {
      * @param delay The delay (millis) to start the animation
      */
     public void start(long delay) {
-        mStart = System.currentTimeMillis() + delay;
+        mStart = GameLoop.getInstanceUnsafe().getTime() + delay;
         GameLoop.getInstanceUnsafe().addAnimation(this);
     }
 
@@ -228,7 +228,7 @@ public abstract class Animation {
      * {@link #mProgress} value. Most animations won't have to override this method.
      */
     public void onLoop() {
-        mStart = System.currentTimeMillis();
+        mStart = GameLoop.getInstanceUnsafe().getTime();
 
         if (mOnLoopStyle == LoopStyle.REVERSE) {
             mForwardAnim = !mForwardAnim;
@@ -0,0 +1,407 @@
+package com.nickstephen.gamelib.assets;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A read-only archive of many assets in one file, built by {@link AssetPackBuilder}. The whole
+ * pack is memory mapped once and each asset is handed out as a slice of the mapping, so there's no
+ * per-file open and no copying. Hundreds of small sprites load much faster this way than through
+ * {@link AssetManager#open(String)} one at a time.</p>
+ *
+ * <p>The format is little endian:</p>
+ * <pre>
+ * header   "GLPK", version, entry count, 0          (4 ints)
+ * entries  name hash (long), offset, length, format (sorted by hash, 20 bytes each)
+ * data     each asset, starting on a 16 byte boundary</pre>
+ *
+ * <p>Names are found by their 64 bit FNV-1a hash (see {@link #hash(String)}), which the builder
+ * checks for collisions. Mount packs with {@link Manager#mount(AssetPack)} and
+ * {@link com.nickstephen.gamelib.opengl.textures.Texture} will look in them before the plain
+ * assets, for both sprites and font textures.</p>
+ *
+ * <p>Packs inside the APK should be stored uncompressed (add "pack" to aaptOptions.noCompress),
+ * otherwise they can't be mapped and are read into memory instead.</p>
+ *
+ * <p>All methods are thread-safe.</p>
+ * @author Nick Stephen
+ */
+public final class AssetPack {
+    public static final int MAGIC = 'G' | ('L' << 8) | ('P' << 16) | ('K' << 24);
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int ENTRY_SIZE = 20;
+    /**
+     * Every asset starts on a multiple of this many bytes.
+     */
+    public static final int ALIGNMENT = 16;
+
+    /**
+     * Formats of the assets, so loaders know what to do with them without looking at names.
+     */
+    public static final int FORMAT_RAW = 0;
+    public static final int FORMAT_PNG = 1;
+    public static final int FORMAT_JPEG = 2;
+    public static final int FORMAT_PKM = 3;
+    public static final int FORMAT_KTX = 4;
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * The packs that are searched for assets. The most recently mounted pack is searched first,
+     * so a patch pack can override assets in the base pack.
+     */
+    public static class Manager {
+        private final static Manager sInst = new Manager();
+
+        /**
+         * Start searching a pack for assets.
+         * @param pack The pack
+         */
+        public static void mount(@NotNull AssetPack pack) {
+            synchronized (sInst.mPacks) {
+                if (!sInst.mPacks.contains(pack)) {
+                    sInst.mPacks.add(pack);
+                }
+            }
+        }
+
+        /**
+         * Stop searching a pack for assets.
+         * @param pack The pack
+         */
+        public static void unmount(@NotNull AssetPack pack) {
+            synchronized (sInst.mPacks) {
+                sInst.mPacks.remove(pack);
+            }
+        }
+
+        /**
+         * Find the mounted pack that has an asset.
+         * @param name The name of the asset
+         * @return The pack, or null if none of them have it
+         */
+        public static @Nullable AssetPack find(@NotNull String name) {
+            final long hash = hash(name);
+
+            synchronized (sInst.mPacks) {
+                for (int i = sInst.mPacks.size() - 1; i >= 0; --i) {
+                    AssetPack pack = sInst.mPacks.get(i);
+                    if (pack.indexOf(hash) >= 0) {
+                        return pack;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Get an asset's data from whichever mounted pack has it, without copying it.
+         * @param name The name of the asset
+         * @return A read-only buffer of just the asset, or null if no pack has it
+         */
+        public static @Nullable ByteBuffer get(@NotNull String name) {
+            final AssetPack pack = find(name);
+            return pack != null ? pack.get(name) : null;
+        }
+
+        /**
+         * Open a stream over an asset in whichever mounted pack has it.
+         * @param name The name of the asset
+         * @return A stream, or null if no pack has it
+         */
+        public static @Nullable InputStream openStream(@NotNull String name) {
+            final AssetPack pack = find(name);
+            return pack != null ? pack.openStream(name) : null;
+        }
+
+        private final List<AssetPack> mPacks = new ArrayList<AssetPack>();
+
+        private Manager() {}
+    }
+
+    private final String mName;
+    private final ByteBuffer mData;
+    private final int mCount;
+
+    private AssetPack(@NotNull String name, @NotNull ByteBuffer data) throws IOException {
+        mName = name;
+        mData = data.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException(name + " isn't an asset pack");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException(name + " is version " + data.getInt(4) + ", expected " + VERSION);
+        }
+
+        mCount = data.getInt(8);
+        if (mCount < 0 || HEADER_SIZE + (long) mCount * ENTRY_SIZE > data.limit()) {
+            throw new IOException(name + " has a truncated index");
+        }
+
+        for (int i = 0; i < mCount; i++) {
+            final int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            final int offset = data.getInt(entry + 8);
+            final int length = data.getInt(entry + 12);
+            if (offset < 0 || length < 0 || (long) offset + length > data.limit()) {
+                throw new IOException(name + " has an entry past the end of the file");
+            }
+        }
+    }
+
+    /**
+     * Open a pack from the assets. Can be called from any thread.
+     * @param assets The asset manager
+     * @param name The name of the pack in the assets
+     * @return The pack
+     * @throws IOException If the pack can't be read or is invalid
+     */
+    public static @NotNull AssetPack open(@NotNull AssetManager assets, @NotNull String name) throws IOException {
+        ByteBuffer data;
+
+        try {
+            AssetFileDescriptor fd = assets.openFd(name);
+            FileInputStream is = fd.createInputStream();
+            try {
+                data = is.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+            } finally {
+                is.close(); // The mapping stays valid
+            }
+        } catch (FileNotFoundException e) {
+            Twig.debug("AssetPack", name + " is compressed in the APK, reading it into memory instead of mapping it");
+            InputStream is = assets.open(name);
+            try {
+                data = readFully(is);
+            } finally {
+                is.close();
+            }
+        }
+
+        return new AssetPack(name, data);
+    }
+
+    /**
+     * Open a pack from a file, e.g. one downloaded to external storage.
+     * @param file The pack file
+     * @return The pack
+     * @throws IOException If the pack can't be read or is invalid
+     */
+    public static @NotNull AssetPack open(@NotNull File file) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+        try {
+            return new AssetPack(file.getName(), is.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        } finally {
+            is.close();
+        }
+    }
+
+    private static @NotNull ByteBuffer readFully(@NotNull InputStream is) throws IOException {
+        ByteBuffer data = ByteBuffer.allocateDirect(Math.max(is.available(), HEADER_SIZE));
+        final byte[] chunk = new byte[16 * 1024];
+        int read;
+
+        while ((read = is.read(chunk)) != -1) {
+            if (data.remaining() < read) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(data.capacity() * 2, data.position() + read));
+                data.flip();
+                grown.put(data);
+                data = grown;
+            }
+            data.put(chunk, 0, read);
+        }
+
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Hash an asset name the way packs index them (64 bit FNV-1a of the UTF-8 bytes).
+     * @param name The name of the asset
+     * @return The hash
+     */
+    public static long hash(@NotNull String name) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < name.length(); i++) {
+            int c = name.charAt(i);
+            if (c < 0x80) {
+                hash = (hash ^ c) * FNV_PRIME;
+            } else {
+                if (Character.isHighSurrogate((char) c) && i + 1 < name.length()) {
+                    c = Character.toCodePoint((char) c, name.charAt(++i));
+                }
+
+                // UTF-8 encode without allocating
+                if (c < 0x800) {
+                    hash = (hash ^ (0xC0 | (c >> 6))) * FNV_PRIME;
+                } else if (c < 0x10000) {
+                    hash = (hash ^ (0xE0 | (c >> 12))) * FNV_PRIME;
+                    hash = (hash ^ (0x80 | ((c >> 6) & 0x3F))) * FNV_PRIME;
+                } else {
+                    hash = (hash ^ (0xF0 | (c >> 18))) * FNV_PRIME;
+                    hash = (hash ^ (0x80 | ((c >> 12) & 0x3F))) * FNV_PRIME;
+                    hash = (hash ^ (0x80 | ((c >> 6) & 0x3F))) * FNV_PRIME;
+                }
+                hash = (hash ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Find an entry by binary search of the index.
+     * @return The entry's index, or -1 if it isn't there
+     */
+    private int indexOf(long hash) {
+        int low = 0, high = mCount - 1;
+
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midHash = mData.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Check whether the pack has an asset.
+     * @param name The name of the asset
+     * @return True if it does, false otherwise
+     */
+    public boolean contains(@NotNull String name) {
+        return indexOf(hash(name)) >= 0;
+    }
+
+    /**
+     * Get an asset's data without copying it.
+     * @param name The name of the asset
+     * @return A read-only buffer of just the asset, or null if it isn't in the pack
+     */
+    public @Nullable ByteBuffer get(@NotNull String name) {
+        final int i = indexOf(hash(name));
+        if (i < 0) {
+            return null;
+        }
+
+        final int entry = HEADER_SIZE + i * ENTRY_SIZE;
+        final int offset = mData.getInt(entry + 8);
+        final int length = mData.getInt(entry + 12);
+
+        ByteBuffer slice = mData.asReadOnlyBuffer();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return slice.slice();
+    }
+
+    /**
+     * Get the format of an asset.
+     * @param name The name of the asset
+     * @return One of the FORMAT_ constants, or -1 if it isn't in the pack
+     */
+    public int getFormat(@NotNull String name) {
+        final int i = indexOf(hash(name));
+        return i < 0 ? -1 : mData.getInt(HEADER_SIZE + i * ENTRY_SIZE + 16);
+    }
+
+    /**
+     * Open a stream over an asset, for decoders that only take streams. Reads straight from the
+     * mapping.
+     * @param name The name of the asset
+     * @return A stream, or null if the asset isn't in the pack
+     */
+    public @Nullable InputStream openStream(@NotNull String name) {
+        final ByteBuffer data = get(name);
+        return data != null ? new BufferInputStream(data) : null;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public @NotNull String getName() {
+        return mName;
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+        private int mMark;
+
+        BufferInputStream(@NotNull ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+
+            len = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, mBuffer.remaining()));
+            mBuffer.position(mBuffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            mMark = mBuffer.position();
+        }
+
+        @Override
+        public synchronized void reset() {
+            mBuffer.position(mMark);
+        }
+    }
+}
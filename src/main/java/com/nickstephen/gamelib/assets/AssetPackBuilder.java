@@ -0,0 +1,260 @@
+package com.nickstephen.gamelib.assets;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Writes {@link AssetPack} files. Doesn't touch any Android classes, so it runs on a normal JVM
+ * as part of the asset build:</p>
+ * <pre>java -cp gamelib.jar com.nickstephen.gamelib.assets.AssetPackBuilder assets/sprites.pack raw/sprites</pre>
+ * <p>packs every file under raw/sprites, named by its path relative to that directory with '/'
+ * separators (so "raw/sprites/ui/button.png" becomes "ui/button.png").</p>
+ * @author Nick Stephen
+ */
+public class AssetPackBuilder {
+    private static class Entry {
+        final String name;
+        final long hash;
+        final int format;
+        final File file;
+        final byte[] data;
+        int offset;
+        int length;
+
+        Entry(String name, int format, File file, byte[] data) {
+            this.name = name;
+            this.hash = AssetPack.hash(name);
+            this.format = format;
+            this.file = file;
+            this.data = data;
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<Entry>();
+
+    /**
+     * Add a file. Its format is worked out from its extension.
+     * @param name The name to find the asset by
+     * @param file The file
+     * @return This object
+     * @throws IOException If the name's hash collides with another asset's
+     */
+    public AssetPackBuilder add(@NotNull String name, @NotNull File file) throws IOException {
+        return add(new Entry(name, formatOf(name), file, null));
+    }
+
+    /**
+     * Add an asset from memory.
+     * @param name The name to find the asset by
+     * @param data The contents of the asset
+     * @param format One of the AssetPack.FORMAT_ constants
+     * @return This object
+     * @throws IOException If the name's hash collides with another asset's
+     */
+    public AssetPackBuilder add(@NotNull String name, @NotNull byte[] data, int format) throws IOException {
+        return add(new Entry(name, format, null, data));
+    }
+
+    /**
+     * Add every file under a directory, named by their paths relative to it.
+     * @param dir The directory
+     * @return This object
+     * @throws IOException If the directory can't be read or two names' hashes collide
+     */
+    public AssetPackBuilder addDirectory(@NotNull File dir) throws IOException {
+        if (!dir.isDirectory()) {
+            throw new IOException(dir + " isn't a directory");
+        }
+
+        addDirectory(dir, "");
+        return this;
+    }
+
+    private void addDirectory(File dir, String prefix) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Can't list " + dir);
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addDirectory(file, prefix + file.getName() + "/");
+            } else if (!file.isHidden()) {
+                add(prefix + file.getName(), file);
+            }
+        }
+    }
+
+    private AssetPackBuilder add(Entry entry) throws IOException {
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry other = mEntries.get(i);
+
+            if (other.hash == entry.hash) {
+                if (other.name.equals(entry.name)) {
+                    throw new IOException(entry.name + " is already in the pack");
+                }
+                throw new IOException(entry.name + " and " + other.name + " have the same hash, rename one of them");
+            }
+        }
+
+        mEntries.add(entry);
+        return this;
+    }
+
+    /**
+     * Get the format of an asset from its name.
+     * @param name The name of the asset
+     * @return One of the AssetPack.FORMAT_ constants
+     */
+    public static int formatOf(@NotNull String name) {
+        final String lower = name.toLowerCase();
+
+        if (lower.endsWith(".png")) {
+            return AssetPack.FORMAT_PNG;
+        } else if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return AssetPack.FORMAT_JPEG;
+        } else if (lower.endsWith(".pkm")) {
+            return AssetPack.FORMAT_PKM;
+        } else if (lower.endsWith(".ktx")) {
+            return AssetPack.FORMAT_KTX;
+        }
+
+        return AssetPack.FORMAT_RAW;
+    }
+
+    /**
+     * Write the pack.
+     * @param file The file to write to
+     * @throws IOException If it can't be written, or the pack would be bigger than 2GB
+     */
+    public void write(@NotNull File file) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(os);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Write the pack to a stream.
+     * @param os The stream, which is left open
+     * @throws IOException If it can't be written, or the pack would be bigger than 2GB
+     */
+    public void write(@NotNull OutputStream os) throws IOException {
+        Collections.sort(mEntries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.hash < rhs.hash ? -1 : (lhs.hash == rhs.hash ? 0 : 1);
+            }
+        });
+
+        long offset = align(AssetPack.HEADER_SIZE + (long) mEntries.size() * AssetPack.ENTRY_SIZE);
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            final long length = entry.data != null ? entry.data.length : entry.file.length();
+
+            if (offset + length > Integer.MAX_VALUE) {
+                throw new IOException("Asset packs can't be bigger than 2GB");
+            }
+
+            entry.offset = (int) offset;
+            entry.length = (int) length;
+            offset = align(offset + length);
+        }
+
+        final byte[] header = new byte[AssetPack.HEADER_SIZE];
+        putInt(header, 0, AssetPack.MAGIC);
+        putInt(header, 4, AssetPack.VERSION);
+        putInt(header, 8, mEntries.size());
+        os.write(header);
+
+        final byte[] index = new byte[AssetPack.ENTRY_SIZE];
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            putInt(index, 0, (int) entry.hash);
+            putInt(index, 4, (int) (entry.hash >>> 32));
+            putInt(index, 8, entry.offset);
+            putInt(index, 12, entry.length);
+            putInt(index, 16, entry.format);
+            os.write(index);
+        }
+
+        long written = AssetPack.HEADER_SIZE + (long) mEntries.size() * AssetPack.ENTRY_SIZE;
+        final byte[] chunk = new byte[64 * 1024];
+
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+
+            for (; written < entry.offset; written++) {
+                os.write(0);
+            }
+
+            if (entry.data != null) {
+                os.write(entry.data);
+            } else {
+                InputStream is = new FileInputStream(entry.file);
+                try {
+                    int read, total = 0;
+                    while ((read = is.read(chunk)) != -1) {
+                        os.write(chunk, 0, read);
+                        total += read;
+                    }
+                    if (total != entry.length) {
+                        throw new IOException(entry.file + " changed while it was being packed");
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+
+            written += entry.length;
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + AssetPack.ALIGNMENT - 1) / AssetPack.ALIGNMENT * AssetPack.ALIGNMENT;
+    }
+
+    private static void putInt(byte[] dst, int index, int value) {
+        dst[index] = (byte) value;
+        dst[index + 1] = (byte) (value >>> 8);
+        dst[index + 2] = (byte) (value >>> 16);
+        dst[index + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Build a pack from the command line. Errors are printed to stderr and the exit status is 1 if
+     * the pack couldn't be built (2 for bad arguments).
+     * @param args The pack to write, then one or more directories to pack
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: AssetPackBuilder <output.pack> <directory>...");
+            System.exit(2);
+        }
+
+        try {
+            AssetPackBuilder builder = new AssetPackBuilder();
+            for (int i = 1; i < args.length; i++) {
+                builder.addDirectory(new File(args[i]));
+            }
+            builder.write(new File(args[0]));
+            System.out.println("Wrote " + builder.mEntries.size() + " assets to " + args[0]);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.nickstephen.gamelib.assets;
+
+/**
+ * Listener for the progress of a {@link Preloader}. Called on the GL thread, so post anything that
+ * touches Android views to the main thread.
+ * @author Nick Stephen
+ */
+public interface IOnPreloadL {
+    /**
+     * Called whenever more resources have been loaded.
+     * @param preloader The preloader
+     * @param loaded The number of resources loaded so far
+     * @param total The number of resources in the manifest
+     */
+    public void onPreloadProgress(Preloader preloader, int loaded, int total);
+
+    /**
+     * Called once every resource is loaded (or has failed, see {@link Preloader#getFailedCount()}).
+     * @param preloader The preloader
+     */
+    public void onPreloadComplete(Preloader preloader);
+}
@@ -0,0 +1,167 @@
+package com.nickstephen.gamelib.assets;
+
+import com.nickstephen.gamelib.opengl.interfaces.IDisposable;
+import com.nickstephen.gamelib.opengl.program.Program;
+import com.nickstephen.gamelib.opengl.text.Text;
+import com.nickstephen.gamelib.opengl.textures.SamplerSettings;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>The textures, fonts and programs a scene needs, so a {@link Preloader} can load them all
+ * before the scene is shown instead of as each shape first draws.</p>
+ *
+ * <p>Textures and fonts can also be listed in a text file and read with {@link #load(InputStream)},
+ * one per line:</p>
+ * <pre>
+ * # Comments start with a hash
+ * texture sprites/ship.png
+ * texture tiles/ground.ktx mipmapped
+ * texture tiles/atlas.png pixelated
+ * texture ui/mask.png stencil
+ * font default fonts/default.png</pre>
+ * <p>Programs are made in code, so they're added with {@link #addProgram(Program)}.</p>
+ * @author Nick Stephen
+ */
+public class PreloadManifest implements IDisposable {
+    private final List<String> mTextures = new ArrayList<String>();
+    private final List<SamplerSettings> mSamplers = new ArrayList<SamplerSettings>();
+    private final List<Program> mPrograms = new ArrayList<Program>();
+
+    /**
+     * Read textures and fonts from a manifest file.
+     * @param is The file, which is left open
+     * @return A new manifest
+     * @throws IOException If the file can't be read or has a line that doesn't make sense
+     */
+    public static @NotNull PreloadManifest load(@NotNull InputStream is) throws IOException {
+        PreloadManifest manifest = new PreloadManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        String line;
+        int number = 0;
+
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+
+            final String[] words = line.split("\\s+");
+            if (words[0].equals("texture") && (words.length == 2 || words.length == 3)) {
+                SamplerSettings sampler = null;
+                if (words.length == 3) {
+                    if (words[2].equals("mipmapped")) {
+                        sampler = SamplerSettings.mipmapped();
+                    } else if (words[2].equals("pixelated")) {
+                        sampler = SamplerSettings.pixelated();
+                    } else if (words[2].equals("stencil")) {
+                        sampler = SamplerSettings.stencil();
+                    } else {
+                        throw new IOException("Line " + number + ": unknown sampler \"" + words[2] + "\"");
+                    }
+                }
+                manifest.addTexture(words[1], sampler);
+            } else if (words[0].equals("font") && words.length >= 3) {
+                String[] textures = new String[words.length - 2];
+                System.arraycopy(words, 2, textures, 0, textures.length);
+                manifest.addFont(new Text.Font(words[1], textures));
+            } else {
+                throw new IOException("Line " + number + ": can't understand \"" + line + "\"");
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Add a texture with the default sampler settings.
+     * @param name The name of the texture in the assets
+     * @return This object
+     */
+    public PreloadManifest addTexture(@NotNull String name) {
+        return addTexture(name, null);
+    }
+
+    /**
+     * Add a texture. Use the same sampler settings the shapes using it will, since the first
+     * settings a texture is loaded with are the ones it keeps.
+     * @param name The name of the texture in the assets
+     * @param sampler How it should be sampled, or null for the default
+     * @return This object
+     */
+    public PreloadManifest addTexture(@NotNull String name, @Nullable SamplerSettings sampler) {
+        if (!mTextures.contains(name)) {
+            mTextures.add(name);
+            mSamplers.add(sampler);
+        }
+        return this;
+    }
+
+    /**
+     * Add all the textures of a font.
+     * @param font The font
+     * @return This object
+     */
+    public PreloadManifest addFont(@NotNull Text.Font font) {
+        for (String texture : font.textureNames) {
+            addTexture(texture, null);
+        }
+        return this;
+    }
+
+    /**
+     * Add a program to be compiled. The manifest takes over the reference from
+     * Program.Manager (e.g. from SpriteProgram.create()) and gives it back in {@link #dispose()}.
+     * @param program The program
+     * @return This object
+     */
+    public PreloadManifest addProgram(@NotNull Program program) {
+        if (!mPrograms.contains(program)) {
+            mPrograms.add(program);
+        } else {
+            program.dispose(); // Only hold one reference
+        }
+        return this;
+    }
+
+    public int getTextureCount() {
+        return mTextures.size();
+    }
+
+    public @NotNull String getTexture(int i) {
+        return mTextures.get(i);
+    }
+
+    public @Nullable SamplerSettings getSampler(int i) {
+        return mSamplers.get(i);
+    }
+
+    public int getProgramCount() {
+        return mPrograms.size();
+    }
+
+    public @NotNull Program getProgram(int i) {
+        return mPrograms.get(i);
+    }
+
+    /**
+     * Give back the program references. Call on the GL thread once the shapes using them have been
+     * created, since a program that nothing else is using is deleted.
+     */
+    @Override
+    public void dispose() {
+        for (int i = 0; i < mPrograms.size(); i++) {
+            mPrograms.get(i).dispose();
+        }
+        mPrograms.clear();
+    }
+}
@@ -0,0 +1,250 @@
+package com.nickstephen.gamelib.assets;
+
+import android.content.Context;
+
+import com.nickstephen.gamelib.opengl.interfaces.IDisposable;
+import com.nickstephen.gamelib.opengl.textures.Texture;
+import com.nickstephen.gamelib.perf.Trace;
+import com.nickstephen.gamelib.run.Game;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Loads everything in a {@link PreloadManifest} before it's needed. Textures are read and
+ * decoded in parallel on a pool of decode threads; programs are compiled and decoded textures
+ * uploaded on the GL thread, as many per frame as fit in the frame budget (at least one), so a
+ * loading screen keeps animating while it works.</p>
+ *
+ * <p>The preloader holds a reference to each texture until {@link #dispose()}, so create the
+ * scene's shapes (which take their own references) before disposing it. {@link Game} can do all
+ * of this and switch to the scene once it's loaded; see
+ * {@link Game#setActiveViewWhenLoaded(com.nickstephen.gamelib.opengl.layout.RootContainer, PreloadManifest, IOnPreloadL)}.</p>
+ * @author Nick Stephen
+ */
+public class Preloader implements IDisposable {
+    /**
+     * The default time spent uploading each frame (ms).
+     */
+    public static final float DEFAULT_FRAME_BUDGET = 4.f;
+
+    private static ExecutorService sDecodePool;
+
+    private static synchronized @NotNull ExecutorService getDecodePool() {
+        if (sDecodePool == null) {
+            sDecodePool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                    new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r, "Decode-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1); // Don't starve the GL thread
+                    return thread;
+                }
+            });
+        }
+        return sDecodePool;
+    }
+
+    private final Context mContext;
+    private final PreloadManifest mManifest;
+    private final Texture[] mTextures;
+    private final ConcurrentLinkedQueue<Texture> mDecoded = new ConcurrentLinkedQueue<Texture>();
+    private final AtomicInteger mFailed = new AtomicInteger();
+    private final int mTotal;
+
+    private IOnPreloadL mListener;
+    private long mBudget = (long) (DEFAULT_FRAME_BUDGET * 1000000);
+    private boolean mStarted;
+    private volatile boolean mDisposed;
+    private int mNextProgram;
+    private int mUploaded;
+    private volatile int mLoaded;
+    private int mReported = -1;
+
+    // Uploads on the GL thread, then queues itself for the next frame until everything's loaded
+    private final Runnable mGLStep = new Runnable() {
+        @Override
+        public void run() {
+            step();
+        }
+    };
+
+    /**
+     * Constructor. Nothing's loaded until {@link #start()}.
+     * @param context The context to load textures with
+     * @param manifest What to load
+     */
+    public Preloader(@NotNull Context context, @NotNull PreloadManifest manifest) {
+        mContext = context;
+        mManifest = manifest;
+        mTextures = new Texture[manifest.getTextureCount()];
+        mTotal = mTextures.length + manifest.getProgramCount();
+    }
+
+    public Preloader setListener(@Nullable IOnPreloadL listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * Set the most time to spend uploading textures and compiling programs each frame. At least one
+     * is done every frame whatever the budget.
+     * @param ms The budget (ms)
+     * @return This object
+     */
+    public Preloader setFrameBudget(float ms) {
+        mBudget = (long) (ms * 1000000);
+        return this;
+    }
+
+    /**
+     * Start loading. Can be called from any thread.
+     */
+    public synchronized void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+
+        final ExecutorService pool = getDecodePool();
+        for (int i = 0; i < mTextures.length; i++) {
+            final Texture texture = Texture.Manager.acquire(mManifest.getTexture(i), mManifest.getSampler(i));
+            mTextures[i] = texture;
+
+            if (texture.isResident()) {
+                mDecoded.add(texture);
+                continue;
+            }
+
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mDisposed) {
+                        return;
+                    }
+
+                    Trace.begin("Preload decode");
+                    if (texture.decode(mContext)) {
+                        mDecoded.add(texture);
+                    } else {
+                        Twig.debug("Preloader", "Couldn't load " + texture.getName());
+                        mFailed.incrementAndGet();
+                    }
+                    Trace.end();
+                }
+            });
+        }
+
+        Game.getInstanceUnsafe().addGLThreadAction(mGLStep);
+    }
+
+    private void step() {
+        if (mDisposed) {
+            return;
+        }
+
+        Trace.begin("Preload upload");
+        final long deadline = System.nanoTime() + mBudget;
+        boolean first = true;
+
+        while (first || System.nanoTime() < deadline) {
+            first = false;
+
+            if (mNextProgram < mManifest.getProgramCount()) {
+                mManifest.getProgram(mNextProgram++).getHandle();
+                continue;
+            }
+
+            final Texture texture = mDecoded.poll();
+            if (texture == null) {
+                break; // Waiting on the decoders
+            }
+
+            if (texture.upload()) {
+                mUploaded++;
+            } else if (texture.isDecoding()) {
+                // A shape's own loader got to it first and is still decoding, try next frame
+                mDecoded.add(texture);
+                break;
+            } else if (texture.upload()) {
+                mUploaded++; // The other decode finished in between
+            } else {
+                // The other decode failed, so nothing will ever be ready to upload
+                Twig.debug("Preloader", "Couldn't load " + texture.getName());
+                mFailed.incrementAndGet();
+            }
+        }
+        Trace.end();
+
+        mLoaded = mNextProgram + mUploaded + mFailed.get();
+
+        if (mLoaded != mReported) {
+            mReported = mLoaded;
+            if (mListener != null) {
+                mListener.onPreloadProgress(this, mLoaded, mTotal);
+            }
+        }
+
+        if (mLoaded >= mTotal) {
+            Twig.debug("Preloader", "Loaded " + mTotal + " resources, " + mFailed.get() + " failed");
+            if (mListener != null) {
+                mListener.onPreloadComplete(this);
+            }
+        } else {
+            Game.getInstanceUnsafe().addGLThreadAction(mGLStep);
+        }
+    }
+
+    /**
+     * Check whether everything has been loaded.
+     * @return True if it has, false otherwise
+     */
+    public boolean isComplete() {
+        return mLoaded >= mTotal;
+    }
+
+    /**
+     * Get how far through loading the preloader is.
+     * @return 0 to 1
+     */
+    public float getProgress() {
+        return mTotal == 0 ? 1.f : (float) mLoaded / mTotal;
+    }
+
+    /**
+     * Get the number of textures that couldn't be loaded. Shapes using them will fail as they would
+     * have without preloading.
+     * @return The number of textures
+     */
+    public int getFailedCount() {
+        return mFailed.get();
+    }
+
+    /**
+     * Give back the preloader's texture references and stop loading. Call on the GL thread.
+     */
+    @Override
+    public synchronized void dispose() {
+        if (mDisposed) {
+            return;
+        }
+        mDisposed = true;
+
+        for (int i = 0; i < mTextures.length; i++) {
+            if (mTextures[i] != null) {
+                Texture.Manager.release(mTextures[i]);
+                mTextures[i] = null;
+            }
+        }
+    }
+}
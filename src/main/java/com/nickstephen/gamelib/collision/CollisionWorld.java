@@ -0,0 +1,295 @@
+package com.nickstephen.gamelib.collision;
+
+import com.nickstephen.gamelib.opengl.bounds.Bounds;
+import com.nickstephen.gamelib.opengl.shapes.Shape;
+import com.nickstephen.gamelib.run.tasking.ITask;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Finds which of a set of shapes overlap each tick and tells listeners when pairs of shapes
+ * start and stop touching. Add it to the game loop with
+ * {@link com.nickstephen.gamelib.run.GameLoop#addTask(com.nickstephen.gamelib.run.tasking.ITask)}
+ * so it runs on the game thread every tick.</p>
+ *
+ * <p>The broadphase is sweep and prune along the x axis. The shapes are kept sorted by the left
+ * edge of their {@link com.nickstephen.gamelib.opengl.bounds.Bounds} with an insertion sort, which
+ * is close to linear when things only move a little between ticks. Pairs whose boxes overlap are
+ * then checked exactly by {@link com.nickstephen.gamelib.collision.Narrowphase}.</p>
+ *
+ * <p>Bounds positions are relative to each shape's parent container, so all of the shapes in a
+ * world should share a parent (or at least a coordinate space).</p>
+ *
+ * <p>All methods must be called from the game thread. Shapes can be added and removed from inside
+ * the contact callbacks.</p>
+ * @author Nick Stephen
+ */
+public class CollisionWorld implements ITask {
+    private final List<IOnContactL> mListeners = new ArrayList<IOnContactL>();
+
+    // Indexed by body id
+    private Shape[] mBodies = new Shape[16];
+    private float[] mMinX = new float[16];
+    private float[] mMaxX = new float[16];
+    private float[] mMinY = new float[16];
+    private float[] mMaxY = new float[16];
+    private int mIdCount;
+
+    // Ids free for reuse. Removed ids wait a tick so the end of their contacts can still be reported.
+    private int[] mFreeIds = new int[16];
+    private int mFreeCount;
+    private int[] mPendingIds = new int[16];
+    private int mPendingCount;
+
+    // Ids of the bodies in the world, sorted by min x
+    private int[] mOrder = new int[16];
+    private int mCount;
+
+    private long[] mPairs = new long[64];
+    private int mPairCount;
+    private long[] mPrevPairs = new long[64];
+    private int mPrevPairCount;
+
+    private boolean mKilled = false;
+
+    public void addContactListener(@NotNull IOnContactL listener) {
+        mListeners.add(listener);
+    }
+
+    public boolean removeContactListener(@NotNull IOnContactL listener) {
+        return mListeners.remove(listener);
+    }
+
+    /**
+     * Add a shape to the world. Its contacts are reported from the next tick.
+     * @param shape The shape
+     */
+    public void add(@NotNull Shape shape) {
+        int id;
+        if (mFreeCount > 0) {
+            id = mFreeIds[--mFreeCount];
+        } else {
+            id = mIdCount++;
+            if (id == mBodies.length) {
+                final int size = id * 2;
+                Shape[] bodies = new Shape[size];
+                System.arraycopy(mBodies, 0, bodies, 0, id);
+                mBodies = bodies;
+                mMinX = grow(mMinX, size);
+                mMaxX = grow(mMaxX, size);
+                mMinY = grow(mMinY, size);
+                mMaxY = grow(mMaxY, size);
+            }
+        }
+
+        mBodies[id] = shape;
+        refresh(id);
+
+        if (mCount == mOrder.length) {
+            mOrder = grow(mOrder, mCount * 2);
+        }
+        mOrder[mCount++] = id; // Sorted into place on the next update
+    }
+
+    /**
+     * Remove a shape from the world. Any contacts it had are ended on the next tick.
+     * @param shape The shape
+     * @return True if the shape was in the world, false otherwise
+     */
+    public boolean remove(@NotNull Shape shape) {
+        for (int i = 0; i < mCount; i++) {
+            final int id = mOrder[i];
+            if (mBodies[id] == shape) {
+                System.arraycopy(mOrder, i + 1, mOrder, i, mCount - i - 1);
+                mCount--;
+
+                if (mPendingCount == mPendingIds.length) {
+                    mPendingIds = grow(mPendingIds, mPendingCount * 2);
+                }
+                mPendingIds[mPendingCount++] = id;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the number of shapes in the world.
+     * @return The number of shapes
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Get the number of pairs of shapes that were overlapping as of the last tick.
+     * @return The number of pairs
+     */
+    public int getContactCount() {
+        return mPrevPairCount;
+    }
+
+    @Override
+    public boolean start() {
+        mKilled = false;
+        return true;
+    }
+
+    @Override
+    public boolean update() {
+        if (mKilled) {
+            return true;
+        }
+
+        // Ids removed before now can be reused once their contacts have been ended this tick
+        final int freeing = mPendingCount;
+
+        for (int i = 0; i < mCount; i++) {
+            refresh(mOrder[i]);
+        }
+        sort();
+        findPairs();
+        Arrays.sort(mPairs, 0, mPairCount);
+        dispatch();
+
+        long[] tmp = mPrevPairs;
+        mPrevPairs = mPairs;
+        mPrevPairCount = mPairCount;
+        mPairs = tmp;
+        mPairCount = 0;
+
+        for (int i = 0; i < freeing; i++) {
+            final int id = mPendingIds[i];
+            mBodies[id] = null;
+
+            if (mFreeCount == mFreeIds.length) {
+                mFreeIds = grow(mFreeIds, mFreeCount * 2);
+            }
+            mFreeIds[mFreeCount++] = id;
+        }
+        System.arraycopy(mPendingIds, freeing, mPendingIds, 0, mPendingCount - freeing);
+        mPendingCount -= freeing;
+
+        return false;
+    }
+
+    @Override
+    public void end() {
+    }
+
+    @Override
+    public void kill() {
+        mKilled = true;
+    }
+
+    // Arrays.copyOf isn't available until API 9
+    private static float[] grow(float[] array, int size) {
+        float[] grown = new float[size];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        int[] grown = new int[size];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static long[] grow(long[] array, int size) {
+        long[] grown = new long[size];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private void refresh(int id) {
+        final Bounds bounds = mBodies[id].getBounds();
+        mMinX[id] = bounds.getMinX();
+        mMaxX[id] = bounds.getMaxX();
+        mMinY[id] = bounds.getMinY();
+        mMaxY[id] = bounds.getMaxY();
+    }
+
+    /**
+     * Insertion sort of the bodies by min x.
+     */
+    private void sort() {
+        final int[] order = mOrder;
+        final float[] minX = mMinX;
+
+        for (int i = 1; i < mCount; i++) {
+            final int id = order[i];
+            final float x = minX[id];
+
+            int j = i - 1;
+            while (j >= 0 && minX[order[j]] > x) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = id;
+        }
+    }
+
+    private void findPairs() {
+        final int[] order = mOrder;
+
+        for (int i = 0; i < mCount; i++) {
+            final int a = order[i];
+            final float maxX = mMaxX[a];
+
+            for (int j = i + 1; j < mCount; j++) {
+                final int b = order[j];
+                if (mMinX[b] >= maxX) {
+                    break; // Everything further along starts even further right
+                }
+
+                if (mMinY[a] < mMaxY[b] && mMinY[b] < mMaxY[a]
+                        && Narrowphase.overlaps(mBodies[a].getBounds(), mBodies[b].getBounds())) {
+                    addPair(a, b);
+                }
+            }
+        }
+    }
+
+    private void addPair(int a, int b) {
+        if (mPairCount == mPairs.length) {
+            mPairs = grow(mPairs, mPairCount * 2);
+        }
+
+        mPairs[mPairCount++] = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * Compare the sorted pairs from this tick with the last and report the differences.
+     */
+    private void dispatch() {
+        int i = 0, j = 0;
+
+        while (i < mPairCount || j < mPrevPairCount) {
+            if (j == mPrevPairCount || (i < mPairCount && mPairs[i] < mPrevPairs[j])) {
+                final long pair = mPairs[i++];
+                final Shape a = mBodies[(int) (pair >>> 32)];
+                final Shape b = mBodies[(int) pair];
+
+                for (int l = mListeners.size() - 1; l >= 0; --l) {
+                    mListeners.get(l).onContactBegin(a, b);
+                }
+            } else if (i == mPairCount || mPrevPairs[j] < mPairs[i]) {
+                final long pair = mPrevPairs[j++];
+                final Shape a = mBodies[(int) (pair >>> 32)];
+                final Shape b = mBodies[(int) pair];
+
+                for (int l = mListeners.size() - 1; l >= 0; --l) {
+                    mListeners.get(l).onContactEnd(a, b);
+                }
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.nickstephen.gamelib.collision;
+
+import com.nickstephen.gamelib.opengl.shapes.Shape;
+
+/**
+ * Listener for shapes starting and stopping touching in a
+ * {@link com.nickstephen.gamelib.collision.CollisionWorld}. Called on the game thread.
+ * @author Nick Stephen
+ */
+public interface IOnContactL {
+    /**
+     * Called on the first tick that two shapes overlap.
+     * @param a One of the shapes
+     * @param b The other shape
+     */
+    public void onContactBegin(Shape a, Shape b);
+
+    /**
+     * Called on the first tick that two shapes that were overlapping no longer overlap, or one of
+     * them has been removed from the world.
+     * @param a One of the shapes
+     * @param b The other shape
+     */
+    public void onContactEnd(Shape a, Shape b);
+}
@@ -0,0 +1,110 @@
+package com.nickstephen.gamelib.collision;
+
+import com.nickstephen.gamelib.opengl.bounds.Bounds;
+import com.nickstephen.gamelib.opengl.bounds.Multiple;
+import com.nickstephen.gamelib.opengl.bounds.Radial;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * <p>Exact overlap tests between pairs of {@link com.nickstephen.gamelib.opengl.bounds.Bounds}.</p>
+ *
+ * <p>{@link com.nickstephen.gamelib.opengl.bounds.Radial} bounds are treated as circles and
+ * everything else as an axis aligned rectangle (see {@link Bounds#getMinX()} etc.).
+ * {@link com.nickstephen.gamelib.opengl.bounds.Multiple} bounds overlap if any of their parts do.
+ * Shapes that are only touching at an edge don't overlap.</p>
+ * @author Nick Stephen
+ */
+public final class Narrowphase {
+    private Narrowphase() {} // Don't use
+
+    /**
+     * Test whether two bounds overlap, picking the right test for their types.
+     * @param a One of the bounds
+     * @param b The other bounds
+     * @return True if they overlap, false otherwise
+     */
+    public static boolean overlaps(@NotNull Bounds a, @NotNull Bounds b) {
+        if (a instanceof Multiple) {
+            List<? extends Bounds> parts = ((Multiple<?>) a).getBounds();
+            if (parts.size() != 0) {
+                for (int i = parts.size() - 1; i >= 0; --i) {
+                    if (overlaps(parts.get(i), b)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        if (b instanceof Multiple) {
+            List<? extends Bounds> parts = ((Multiple<?>) b).getBounds();
+            if (parts.size() != 0) {
+                for (int i = parts.size() - 1; i >= 0; --i) {
+                    if (overlaps(a, parts.get(i))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+
+        if (a instanceof Radial) {
+            if (b instanceof Radial) {
+                return circleCircle((Radial) a, (Radial) b);
+            }
+            return rectCircle(b, (Radial) a);
+        } else if (b instanceof Radial) {
+            return rectCircle(a, (Radial) b);
+        }
+
+        return rectRect(a, b);
+    }
+
+    /**
+     * Test whether the axis aligned boxes around two bounds overlap.
+     * @param a One of the bounds
+     * @param b The other bounds
+     * @return True if they overlap, false otherwise
+     */
+    public static boolean rectRect(@NotNull Bounds a, @NotNull Bounds b) {
+        return a.getMinX() < b.getMaxX() && b.getMinX() < a.getMaxX()
+                && a.getMinY() < b.getMaxY() && b.getMinY() < a.getMaxY();
+    }
+
+    /**
+     * Test whether two circles overlap.
+     * @param a One of the circles
+     * @param b The other circle
+     * @return True if they overlap, false otherwise
+     */
+    public static boolean circleCircle(@NotNull Radial a, @NotNull Radial b) {
+        final float dx = a.getX() - b.getX();
+        final float dy = a.getY() - b.getY();
+        final float r = a.getRadius() + b.getRadius();
+
+        return (dx * dx) + (dy * dy) < r * r;
+    }
+
+    /**
+     * Test whether the axis aligned box around some bounds overlaps a circle.
+     * @param rect The bounds to treat as a rectangle
+     * @param circle The circle
+     * @return True if they overlap, false otherwise
+     */
+    public static boolean rectCircle(@NotNull Bounds rect, @NotNull Radial circle) {
+        final float cx = circle.getX();
+        final float cy = circle.getY();
+
+        // Closest point of the rectangle to the centre of the circle
+        final float px = Math.max(rect.getMinX(), Math.min(cx, rect.getMaxX()));
+        final float py = Math.max(rect.getMinY(), Math.min(cy, rect.getMaxY()));
+
+        final float dx = cx - px;
+        final float dy = cy - py;
+        final float r = circle.getRadius();
+
+        return (dx * dx) + (dy * dy) < r * r;
+    }
+}
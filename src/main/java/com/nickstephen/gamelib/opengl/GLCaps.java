@@ -0,0 +1,107 @@
+package com.nickstephen.gamelib.opengl;
+
+import android.opengl.GLES20;
+
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>The optional features of the current OpenGL context. The extension string is read on the GL
+ * thread, either by {@link #load()} (which {@link com.nickstephen.gamelib.opengl.Renderer} calls
+ * whenever a new context is created, since it may not support the same things as the last one) or
+ * the first time it's needed. Until then every extension is reported as unsupported on other
+ * threads.</p>
+ * @author Nick Stephen
+ */
+public final class GLCaps {
+    public static final String OES_ELEMENT_INDEX_UINT = "GL_OES_element_index_uint";
+    public static final String OES_COMPRESSED_ETC1_RGB8_TEXTURE = "GL_OES_compressed_ETC1_RGB8_texture";
+    public static final String OES_TEXTURE_NPOT = "GL_OES_texture_npot";
+    public static final String EXT_TEXTURE_FILTER_ANISOTROPIC = "GL_EXT_texture_filter_anisotropic";
+
+    /**
+     * GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT from GL_EXT_texture_filter_anisotropic.
+     */
+    private static final int GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT = 0x84FF;
+
+    private static volatile String sExtensions;
+    private static volatile float sMaxAnisotropy; // 0 until read
+
+    private GLCaps() {} // Don't use
+
+    /**
+     * Forget the capabilities of the last context. Call when the GL context is (re)created.
+     */
+    public static void reset() {
+        sExtensions = null;
+        sMaxAnisotropy = 0.f;
+    }
+
+    /**
+     * Read the capabilities of the current context. Called by the renderer on the GL thread when
+     * the context is created, so that the other methods work from any thread afterwards.
+     */
+    public static void load() {
+        reset();
+        hasExtension(OES_ELEMENT_INDEX_UINT);
+        getMaxAnisotropy();
+    }
+
+    /**
+     * Check whether the current context supports an extension. Off the GL thread this is always
+     * false until the extensions have been loaded.
+     * @param name The full name of the extension, e.g. "GL_OES_element_index_uint"
+     * @return True if the extension is supported, false otherwise
+     */
+    public static boolean hasExtension(@NotNull String name) {
+        String extensions = sExtensions;
+        if (extensions == null) {
+            extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+            if (extensions == null) {
+                return false; // No context yet
+            }
+            extensions = " " + extensions.trim() + " ";
+            sExtensions = extensions;
+            Twig.debug("GLCaps", "Extensions:" + extensions);
+        }
+
+        return extensions.contains(" " + name + " ");
+    }
+
+    /**
+     * Check whether 32 bit (GL_UNSIGNED_INT) indices can be used with glDrawElements.
+     * @return True if they can, false otherwise
+     */
+    public static boolean hasElementIndexUint() {
+        return hasExtension(OES_ELEMENT_INDEX_UINT);
+    }
+
+    /**
+     * Check whether non power of two textures can have mipmaps and repeat.
+     * @return True if they can, false otherwise
+     */
+    public static boolean hasNpotTextures() {
+        return hasExtension(OES_TEXTURE_NPOT);
+    }
+
+    /**
+     * Get the most anisotropic filtering textures can use.
+     * @return The maximum anisotropy, or 1 if anisotropic filtering isn't supported
+     */
+    public static float getMaxAnisotropy() {
+        float max = sMaxAnisotropy;
+        if (max == 0.f) {
+            if (!hasExtension(EXT_TEXTURE_FILTER_ANISOTROPIC)) {
+                return 1.f;
+            }
+
+            final float[] value = new float[1];
+            GLES20.glGetFloatv(GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT, value, 0);
+            max = value[0] < 1.f ? 1.f : value[0];
+            sMaxAnisotropy = max;
+        }
+
+        return max;
+    }
+}
@@ -63,6 +63,22 @@ public class OpenGLSurfaceView extends GLSurfaceView {
         this.setRenderer(mRenderer = renderer);
     }
 
+    /**
+     * Set whether frames should only be drawn when something has changed rather than continuously at
+     * the display rate. Saves a lot of battery for mostly static screens like menus. Changes to shapes
+     * in the active {@link com.nickstephen.gamelib.opengl.layout.RootContainer}, running animations
+     * and queued GL thread actions all request a new frame automatically. Must be called after one
+     * of the init methods.
+     * @param onDemand True to render only when needed, false to render continuously
+     */
+    public void setRenderOnDemand(boolean onDemand) {
+        this.setRenderMode(onDemand ? RENDERMODE_WHEN_DIRTY : RENDERMODE_CONTINUOUSLY);
+    }
+
+    public boolean isRenderOnDemand() {
+        return this.getRenderMode() == RENDERMODE_WHEN_DIRTY;
+    }
+
     /**
      * Simple override to onPause that destroys the instance of {@link com.nickstephen.gamelib.opengl.text.TextUtil}
      * so as not to crash on restart. Note that this means you will have to reinitialise it on resume,
@@ -86,16 +102,24 @@ public class OpenGLSurfaceView extends GLSurfaceView {
 
     /**
      * Passes the touch event to the gesture detector, which may then pass it to child containers.
+     * If raw touch input is enabled in {@link com.nickstephen.gamelib.run.Game} the samples are
+     * also written to its touch stream.
      * @param event The motion event
      * @return True always
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        Game game = Game.getInstanceUnsafe();
+
+        if (game.isRawTouchEnabled()) {
+            game.getTouchStream().write(event);
+        }
+
         mGestureDetector.onTouchEvent(event);
 
         int action = event.getActionMasked();
         if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
-            Game.getInstanceUnsafe().addInput(GestureEvent.construct(event, null, GestureEvent.Type.FINISH, 0f, 0f));
+            game.addInput(GestureEvent.construct(event, null, GestureEvent.Type.FINISH, 0f, 0f));
         }
         return true;
     }
@@ -0,0 +1,172 @@
+package com.nickstephen.gamelib.opengl;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES20;
+import android.os.Build;
+
+import com.nickstephen.gamelib.util.BufferPool;
+import com.nickstephen.lib.Twig;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * <p>One index buffer shared by everything that draws lists of quads. Quad n uses the vertices
+ * 4n to 4n + 3, given in order around its edge, as the two triangles 0-1-2 and 2-3-0, so shapes
+ * only need to fill in their vertices.</p>
+ *
+ * <p>The buffer lives on the GPU (API 9 and up) and grows to the next power of two whenever a
+ * bigger draw comes along. Past {@link #MAX_SHORT_QUADS} quads it switches to 32 bit indices if the
+ * driver supports GL_OES_element_index_uint; otherwise draws are clamped to that many quads.</p>
+ *
+ * <p>All methods must be called on the GL thread.</p>
+ * @author Nick Stephen
+ */
+public final class QuadIndices {
+    /**
+     * The most quads 16 bit indices can address.
+     */
+    public static final int MAX_SHORT_QUADS = 65536 / 4;
+    /**
+     * The most quads that will be drawn in one call, even with 32 bit indices.
+     */
+    public static final int MAX_QUADS = 1 << 20;
+
+    private static final int INDICES_PER_QUAD = 6;
+    private static final int MIN_CAPACITY = 64;
+    private static final boolean USE_VBOS = Build.VERSION.SDK_INT >= 9;
+
+    private static int sBuffer;
+    private static int sCapacity;
+    private static int sType = GLES20.GL_UNSIGNED_SHORT;
+    private static ShortBuffer sClientIndices; // Used when VBOs aren't available
+
+    private QuadIndices() {} // Don't use
+
+    /**
+     * Forget the buffer. Called when the GL context is (re)created, since the old one went with the
+     * old context.
+     */
+    public static void reset() {
+        sBuffer = 0;
+        sCapacity = 0;
+        sType = GLES20.GL_UNSIGNED_SHORT;
+    }
+
+    /**
+     * Get the most quads that can be drawn in one call with the current context.
+     * @return The number of quads
+     */
+    public static int getMaxQuads() {
+        return USE_VBOS && GLCaps.hasElementIndexUint() ? MAX_QUADS : MAX_SHORT_QUADS;
+    }
+
+    /**
+     * Draw quads as triangles using the shared indices. The vertex attributes must already be set
+     * up.
+     * @param quads The number of quads to draw, starting at vertex 0
+     */
+    public static void draw(int quads) {
+        if (quads <= 0) {
+            return;
+        }
+
+        final int max = getMaxQuads();
+        if (quads > max) {
+            Twig.debug("QuadIndices", "Can't draw " + quads + " quads at once, drawing " + max);
+            quads = max;
+        }
+
+        if (USE_VBOS) {
+            drawBuffer(quads);
+        } else {
+            if (sClientIndices == null) {
+                sClientIndices = buildShorts(MAX_SHORT_QUADS).asShortBuffer();
+            }
+
+            sClientIndices.position(0);
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, quads * INDICES_PER_QUAD,
+                    GLES20.GL_UNSIGNED_SHORT, sClientIndices);
+        }
+    }
+
+    @TargetApi(9)
+    private static void drawBuffer(int quads) {
+        if (quads > sCapacity || sBuffer == 0) {
+            grow(quads);
+        } else {
+            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, sBuffer);
+        }
+
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, quads * INDICES_PER_QUAD, sType, 0);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Make the GPU buffer big enough for a number of quads and leave it bound.
+     */
+    @TargetApi(9)
+    private static void grow(int quads) {
+        int capacity = Math.max(MIN_CAPACITY, sCapacity);
+        while (capacity < quads) {
+            capacity <<= 1;
+        }
+        if (capacity > MAX_SHORT_QUADS && !GLCaps.hasElementIndexUint()) {
+            capacity = MAX_SHORT_QUADS;
+        }
+
+        if (sBuffer == 0) {
+            final int[] handles = new int[1];
+            GLES20.glGenBuffers(1, handles, 0);
+            sBuffer = handles[0];
+        }
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, sBuffer);
+
+        ByteBuffer data;
+        if (capacity > MAX_SHORT_QUADS) {
+            data = buildInts(capacity);
+            sType = GLES20.GL_UNSIGNED_INT;
+        } else {
+            data = buildShorts(capacity);
+            sType = GLES20.GL_UNSIGNED_SHORT;
+        }
+
+        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, data.limit(), data, GLES20.GL_STATIC_DRAW);
+        BufferPool.release(data);
+
+        sCapacity = capacity;
+    }
+
+    private static ByteBuffer buildShorts(int quads) {
+        ByteBuffer data = BufferPool.acquire(quads * INDICES_PER_QUAD * 2);
+        ShortBuffer indices = data.asShortBuffer();
+
+        for (int i = 0, j = 0; i < quads; i++, j += 4) {
+            indices.put((short) j);
+            indices.put((short) (j + 1));
+            indices.put((short) (j + 2));
+            indices.put((short) (j + 2));
+            indices.put((short) (j + 3));
+            indices.put((short) j);
+        }
+
+        return data;
+    }
+
+    private static ByteBuffer buildInts(int quads) {
+        ByteBuffer data = BufferPool.acquire(quads * INDICES_PER_QUAD * 4);
+        IntBuffer indices = data.asIntBuffer();
+
+        for (int i = 0, j = 0; i < quads; i++, j += 4) {
+            indices.put(j);
+            indices.put(j + 1);
+            indices.put(j + 2);
+            indices.put(j + 2);
+            indices.put(j + 3);
+            indices.put(j);
+        }
+
+        return data;
+    }
+}
@@ -5,6 +5,8 @@ import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import com.nickstephen.gamelib.opengl.layout.RootContainer;
+import com.nickstephen.gamelib.perf.Profiler;
+import com.nickstephen.gamelib.perf.Trace;
 import com.nickstephen.gamelib.run.Game;
 
 import org.jetbrains.annotations.NotNull;
@@ -30,6 +32,7 @@ public class Renderer implements GLSurfaceView.Renderer {
     private float[] mProjMatrix = new float[16];
     private float[] mVPMatrix = new float[16];
     private int mWidth, mHeight;
+    private long mLastFrameStart;
 
     /**
      * Constructor.
@@ -49,6 +52,15 @@ public class Renderer implements GLSurfaceView.Renderer {
      */
     @Override
     public void onDrawFrame(GL10 gl) {
+        Trace.begin("Renderer.onDrawFrame");
+        final long frameStart = Profiler.start();
+        if (frameStart != 0) {
+            if (mLastFrameStart != 0) {
+                Profiler.record(Profiler.Phase.FRAME_INTERVAL, frameStart - mLastFrameStart);
+            }
+            mLastFrameStart = frameStart;
+        }
+
         // Redraw background color
         int clearMask = GLES20.GL_COLOR_BUFFER_BIT;
 
@@ -57,15 +69,26 @@ public class Renderer implements GLSurfaceView.Renderer {
         Matrix.multiplyMM(mVPMatrix, 0, mProjMatrix, 0, mBaseViewMatrix, 0);
 
         onDraw(mProjMatrix, mBaseViewMatrix);
+
+        Profiler.stop(Profiler.Phase.FRAME_TOTAL, frameStart);
+        Trace.end();
     }
 
     public void onDraw(float[] projMatrix, float[] viewMatrix) {
+        long t = Profiler.start();
         {
             Runnable action;
             if ((action = Game.getInstanceUnsafe().getGLThreadAction()) != null) {
+                Trace.begin("GL action");
                 action.run();
+                Trace.end();
+
+                if (Game.getInstanceUnsafe().hasGLThreadActions()) {
+                    mSurface.requestRender(); // Only one action runs per frame
+                }
             }
         }
+        t = Profiler.lap(Profiler.Phase.FRAME_GL_ACTIONS, t);
 
         synchronized (Game.getInstanceUnsafe()) {
             RootContainer root = Game.getInstanceUnsafe().getActiveView();
@@ -73,6 +96,13 @@ public class Renderer implements GLSurfaceView.Renderer {
                 root.draw(projMatrix, viewMatrix);
             }
         }
+
+        if (t != 0) {
+            // The draw calls are timed inside Vertices so separate them from the rest of the walk
+            long tree = System.nanoTime() - t;
+            long drawCalls = Profiler.commit(Profiler.Phase.FRAME_DRAW_CALLS);
+            Profiler.record(Profiler.Phase.FRAME_TREE_WALK, tree - drawCalls);
+        }
     }
 
     /**
@@ -119,6 +149,10 @@ public class Renderer implements GLSurfaceView.Renderer {
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         Game.getInstanceUnsafe().setSurface(mSurface);
 
+        // Anything created in the last context is gone
+        GLCaps.load();
+        QuadIndices.reset();
+
         GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 
         GLES20.glEnable(GLES20.GL_BLEND);
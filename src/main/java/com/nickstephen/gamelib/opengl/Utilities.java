@@ -4,6 +4,7 @@ import android.opengl.GLES20;
 import android.util.Log;
 
 import com.nickstephen.gamelib.opengl.program.AttrVariable;
+import com.nickstephen.gamelib.perf.Trace;
 import com.nickstephen.lib.Twig;
 
 import org.jetbrains.annotations.Nullable;
@@ -67,7 +68,9 @@ public class Utilities {
                 }
             }
 
+            Trace.begin("Program link");
             GLES20.glLinkProgram(mProgram);
+            Trace.end();
 
             final int[] linkStatus = new int[1];
             GLES20.glGetProgramiv(mProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
@@ -105,8 +108,10 @@ public class Utilities {
         if (shaderHandle != 0)
         {
             // add the source code to the shader and compile it
+            Trace.begin("Shader compile");
             GLES20.glShaderSource(shaderHandle, shaderCode);
             GLES20.glCompileShader(shaderHandle);
+            Trace.end();
             checkGlError("glCompileShader");
 
             // Get the compilation status.
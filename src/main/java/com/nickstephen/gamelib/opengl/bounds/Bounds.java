@@ -13,6 +13,13 @@ public abstract class Bounds {
     protected float mX;
     protected float mY;
 
+    /**
+     * The {@link com.nickstephen.gamelib.opengl.bounds.Multiple} these bounds are part of (if any)
+     * and their index in it.
+     */
+    Multiple<?> mOwner;
+    int mOwnerIndex;
+
     protected Bounds(@NotNull Shape shape) {
         mShape = shape;
     }
@@ -23,6 +30,7 @@ public abstract class Bounds {
 
     public Bounds setX(float x) {
         mX = x;
+        onChanged();
         return this;
     }
 
@@ -32,9 +40,20 @@ public abstract class Bounds {
 
     public Bounds setY(float y) {
         mY = y;
+        onChanged();
         return this;
     }
 
+    /**
+     * Called whenever the position or size of these bounds changes. Sub-classes must call it from
+     * their setters.
+     */
+    protected void onChanged() {
+        if (mOwner != null) {
+            mOwner.onBoundChanged(mOwnerIndex);
+        }
+    }
+
     public abstract Bounds setWidth(float width);
     public abstract float getWidth();
 
@@ -43,4 +62,25 @@ public abstract class Bounds {
 
     public abstract boolean withinBounds(float posX, float posY, float touchSlop);
 
+    /**
+     * Get the left edge of the axis aligned box around these bounds, in the same coordinates as
+     * {@link #getX()}. The base implementation treats the width as the full width of the box.
+     * @return The minimum x value
+     */
+    public float getMinX() {
+        return mX - (getWidth() / 2.f);
+    }
+
+    public float getMaxX() {
+        return mX + (getWidth() / 2.f);
+    }
+
+    public float getMinY() {
+        return mY - (getHeight() / 2.f);
+    }
+
+    public float getMaxY() {
+        return mY + (getHeight() / 2.f);
+    }
+
 }
@@ -21,6 +21,7 @@ public class Default extends Bounds {
     public Bounds setWidth(float width) {
         mLeft = width / 2.f;
         mRight = mLeft;
+        onChanged();
         return this;
     }
 
@@ -33,6 +34,7 @@ public class Default extends Bounds {
     public Bounds setHeight(float height) {
         mUp = height / 2.f;
         mDown = mUp;
+        onChanged();
         return this;
     }
 
@@ -41,6 +43,26 @@ public class Default extends Bounds {
         return mUp + mDown;
     }
 
+    @Override
+    public float getMinX() {
+        return mX - mLeft;
+    }
+
+    @Override
+    public float getMaxX() {
+        return mX + mRight;
+    }
+
+    @Override
+    public float getMinY() {
+        return mY - mDown;
+    }
+
+    @Override
+    public float getMaxY() {
+        return mY + mUp;
+    }
+
     @Override
     public boolean withinBounds(float posX, float posY, float touchSlop) {
         float diff;
@@ -9,13 +9,49 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Created by Nick Stephen on 18/07/2014.
+ * <p>Bounds made up of a number of other bounds, e.g. for a
+ * {@link com.nickstephen.gamelib.opengl.shapes.SpriteBatch}.</p>
+ *
+ * <p>The box around all of the parts is kept up to date as they're added, moved and resized so
+ * querying the size is cheap and touches outside of it are rejected straight away. Once there are
+ * enough parts (see {@link #setGridThreshold(int)}) touches are tested against a grid of the parts
+ * instead of every part. The grid is rebuilt on the first touch test after any part changes, so it
+ * suits parts that are mostly still.</p>
+ *
+ * <p>A set of bounds can only be part of one Multiple at a time.</p>
+ * @author Nick Stephen
  */
 public class Multiple<T extends Bounds> extends Bounds {
+    /**
+     * The default number of parts from which touch tests use a grid.
+     */
+    public static final int DEFAULT_GRID_THRESHOLD = 64;
+
+    private static final int MAX_GRID_SIZE = 64;
+
     protected final List<T> mBoundsList;
     protected float mTargetWidth;
     protected float mTargetHeight;
 
+    // minX, minY, maxX, maxY of each part as of the last time it changed
+    private float[] mBoxes = new float[4 * 8];
+    private float mMinX;
+    private float mMinY;
+    private float mMaxX;
+    private float mMaxY;
+    private boolean mUnionDirty = false;
+
+    private int mGridThreshold = DEFAULT_GRID_THRESHOLD;
+    private boolean mGridDirty = true;
+    private int mGridColumns;
+    private int mGridRows;
+    private float mGridMinX;
+    private float mGridMinY;
+    private float mCellWidth;
+    private float mCellHeight;
+    private int[] mCellStarts;
+    private int[] mCellItems;
+
     public Multiple(@NotNull Shape shape) {
         super(shape);
 
@@ -39,14 +75,8 @@ public class Multiple<T extends Bounds> extends Bounds {
             return mTargetWidth;
         }
 
-        T r = getMostRight();
-        T l = getMostLeft();
-
-        if (r == null || l == null) {
-            return 0.f;
-        } else {
-            return (r.getX() + (r.getWidth() / 2.f)) - (l.getX() - (l.getWidth() / 2.f));
-        }
+        updateUnion();
+        return mMaxX - mMinX;
     }
 
     @Override
@@ -66,19 +96,28 @@ public class Multiple<T extends Bounds> extends Bounds {
             return mTargetHeight;
         }
 
-        T t = getTop();
-        T b = getBottom();
-
-        if (t == null || b == null) {
-            return 0.f;
-        } else {
-            return (t.getY() + (t.getHeight() / 2.f)) - (b.getY() - (b.getHeight() / 2.f));
-        }
+        updateUnion();
+        return mMaxY - mMinY;
     }
 
     @Override
     public boolean withinBounds(float posX, float posY, float touchSlop) {
-        for (int i = mBoundsList.size() - 1; i >= 0; --i) {
+        final int size = mBoundsList.size();
+        if (size == 0) {
+            return false;
+        }
+
+        updateUnion();
+        if (posX < mMinX - touchSlop || posX > mMaxX + touchSlop
+                || posY < mMinY - touchSlop || posY > mMaxY + touchSlop) {
+            return false;
+        }
+
+        if (size >= mGridThreshold) {
+            return withinGrid(posX, posY, touchSlop);
+        }
+
+        for (int i = size - 1; i >= 0; --i) {
             if (mBoundsList.get(i).withinBounds(posX, posY, touchSlop)) {
                 return true;
             }
@@ -87,8 +126,292 @@ public class Multiple<T extends Bounds> extends Bounds {
         return false;
     }
 
+    @Override
+    public float getMinX() {
+        if (mBoundsList.size() == 0) {
+            return super.getMinX();
+        }
+
+        updateUnion();
+        return mMinX;
+    }
+
+    @Override
+    public float getMaxX() {
+        if (mBoundsList.size() == 0) {
+            return super.getMaxX();
+        }
+
+        updateUnion();
+        return mMaxX;
+    }
+
+    @Override
+    public float getMinY() {
+        if (mBoundsList.size() == 0) {
+            return super.getMinY();
+        }
+
+        updateUnion();
+        return mMinY;
+    }
+
+    @Override
+    public float getMaxY() {
+        if (mBoundsList.size() == 0) {
+            return super.getMaxY();
+        }
+
+        updateUnion();
+        return mMaxY;
+    }
+
     public void addBound(@NotNull T newBound) {
+        if (newBound.mOwner != null) {
+            throw new IllegalArgumentException("Bounds are already part of another Multiple");
+        }
+
+        final int index = mBoundsList.size();
         mBoundsList.add(newBound);
+        newBound.mOwner = this;
+        newBound.mOwnerIndex = index;
+
+        if (mBoxes.length < (index + 1) * 4) {
+            float[] boxes = new float[mBoxes.length * 2];
+            System.arraycopy(mBoxes, 0, boxes, 0, index * 4);
+            mBoxes = boxes;
+        }
+        storeBox(index, newBound);
+
+        if (index == 0) {
+            mMinX = mBoxes[0];
+            mMinY = mBoxes[1];
+            mMaxX = mBoxes[2];
+            mMaxY = mBoxes[3];
+            mUnionDirty = false;
+        } else if (!mUnionDirty) {
+            expandUnion(index);
+        }
+
+        mGridDirty = true;
+        onChanged();
+    }
+
+    /**
+     * Remove one of the parts of these bounds.
+     * @param bound The part to remove
+     * @return True if it was a part of these bounds, false otherwise
+     */
+    public boolean removeBound(@NotNull T bound) {
+        if (bound.mOwner != this) {
+            return false;
+        }
+
+        final int index = bound.mOwnerIndex;
+        mBoundsList.remove(index);
+        bound.mOwner = null;
+
+        final int size = mBoundsList.size();
+        System.arraycopy(mBoxes, (index + 1) * 4, mBoxes, index * 4, (size - index) * 4);
+        for (int i = index; i < size; i++) {
+            mBoundsList.get(i).mOwnerIndex = i;
+        }
+
+        mUnionDirty = true;
+        mGridDirty = true;
+        onChanged();
+        return true;
+    }
+
+    /**
+     * Remove all of the parts of these bounds.
+     */
+    public void clear() {
+        for (int i = mBoundsList.size() - 1; i >= 0; --i) {
+            mBoundsList.get(i).mOwner = null;
+        }
+        mBoundsList.clear();
+
+        mUnionDirty = false;
+        mGridDirty = true;
+        mCellStarts = null;
+        mCellItems = null;
+        onChanged();
+    }
+
+    /**
+     * Get the bounds that make up these bounds.
+     * @return The list of bounds. Don't modify it.
+     */
+    public @NotNull List<T> getBounds() {
+        return mBoundsList;
+    }
+
+    /**
+     * Set the number of parts from which touch tests use a grid rather than testing every part.
+     * @param count The number of parts, or {@link Integer#MAX_VALUE} to never use a grid
+     * @return This object
+     */
+    public Multiple<T> setGridThreshold(int count) {
+        mGridThreshold = count;
+        return this;
+    }
+
+    public int getGridThreshold() {
+        return mGridThreshold;
+    }
+
+    /**
+     * Called by a part of these bounds when it moves or changes size.
+     * @param index The index of the part
+     */
+    void onBoundChanged(int index) {
+        final int o = index * 4;
+        final float oldMinX = mBoxes[o];
+        final float oldMinY = mBoxes[o + 1];
+        final float oldMaxX = mBoxes[o + 2];
+        final float oldMaxY = mBoxes[o + 3];
+
+        storeBox(index, mBoundsList.get(index));
+        mGridDirty = true;
+
+        if (!mUnionDirty) {
+            if (oldMinX <= mMinX || oldMinY <= mMinY || oldMaxX >= mMaxX || oldMaxY >= mMaxY) {
+                // It was on the edge so the union may have shrunk
+                mUnionDirty = true;
+            } else {
+                expandUnion(index);
+            }
+        }
+
+        onChanged();
+    }
+
+    private void storeBox(int index, @NotNull Bounds bound) {
+        final int o = index * 4;
+        mBoxes[o] = bound.getMinX();
+        mBoxes[o + 1] = bound.getMinY();
+        mBoxes[o + 2] = bound.getMaxX();
+        mBoxes[o + 3] = bound.getMaxY();
+    }
+
+    private void expandUnion(int index) {
+        final int o = index * 4;
+        mMinX = Math.min(mMinX, mBoxes[o]);
+        mMinY = Math.min(mMinY, mBoxes[o + 1]);
+        mMaxX = Math.max(mMaxX, mBoxes[o + 2]);
+        mMaxY = Math.max(mMaxY, mBoxes[o + 3]);
+    }
+
+    private void updateUnion() {
+        if (!mUnionDirty) {
+            return;
+        }
+        mUnionDirty = false;
+
+        mMinX = mBoxes[0];
+        mMinY = mBoxes[1];
+        mMaxX = mBoxes[2];
+        mMaxY = mBoxes[3];
+        for (int i = mBoundsList.size() - 1; i > 0; --i) {
+            expandUnion(i);
+        }
+    }
+
+    private boolean withinGrid(float posX, float posY, float touchSlop) {
+        if (mGridDirty) {
+            buildGrid();
+        }
+
+        final int c0 = column(posX - touchSlop);
+        final int c1 = column(posX + touchSlop);
+        final int r0 = row(posY - touchSlop);
+        final int r1 = row(posY + touchSlop);
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                final int cell = (r * mGridColumns) + c;
+                for (int i = mCellStarts[cell], end = mCellStarts[cell + 1]; i < end; i++) {
+                    if (mBoundsList.get(mCellItems[i]).withinBounds(posX, posY, touchSlop)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Bucket the parts into a grid over the union box, with roughly one part per cell.
+     */
+    private void buildGrid() {
+        mGridDirty = false;
+        updateUnion();
+
+        final int size = mBoundsList.size();
+        final int cells = (int) Math.ceil(Math.sqrt(size));
+        mGridColumns = Math.max(1, Math.min(MAX_GRID_SIZE, cells));
+        mGridRows = mGridColumns;
+        mGridMinX = mMinX;
+        mGridMinY = mMinY;
+        mCellWidth = Math.max((mMaxX - mMinX) / mGridColumns, Float.MIN_VALUE);
+        mCellHeight = Math.max((mMaxY - mMinY) / mGridRows, Float.MIN_VALUE);
+
+        final int cellCount = mGridColumns * mGridRows;
+        if (mCellStarts == null || mCellStarts.length < cellCount + 1) {
+            mCellStarts = new int[cellCount + 1];
+        } else {
+            for (int i = 0; i <= cellCount; i++) {
+                mCellStarts[i] = 0;
+            }
+        }
+
+        // Count the parts in each cell, then turn the counts into start offsets and fill them in
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            final int o = i * 4;
+            final int c0 = column(mBoxes[o]), c1 = column(mBoxes[o + 2]);
+            final int r0 = row(mBoxes[o + 1]), r1 = row(mBoxes[o + 3]);
+
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    mCellStarts[(r * mGridColumns) + c + 1]++;
+                    total++;
+                }
+            }
+        }
+        for (int i = 1; i <= cellCount; i++) {
+            mCellStarts[i] += mCellStarts[i - 1];
+        }
+
+        if (mCellItems == null || mCellItems.length < total) {
+            mCellItems = new int[total];
+        }
+        final int[] fill = new int[cellCount];
+        System.arraycopy(mCellStarts, 0, fill, 0, cellCount);
+
+        for (int i = 0; i < size; i++) {
+            final int o = i * 4;
+            final int c0 = column(mBoxes[o]), c1 = column(mBoxes[o + 2]);
+            final int r0 = row(mBoxes[o + 1]), r1 = row(mBoxes[o + 3]);
+
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    mCellItems[fill[(r * mGridColumns) + c]++] = i;
+                }
+            }
+        }
+    }
+
+    private int column(float x) {
+        final int c = (int) ((x - mGridMinX) / mCellWidth);
+        return c < 0 ? 0 : (c >= mGridColumns ? mGridColumns - 1 : c);
+    }
+
+    private int row(float y) {
+        final int r = (int) ((y - mGridMinY) / mCellHeight);
+        return r < 0 ? 0 : (r >= mGridRows ? mGridRows - 1 : r);
     }
 
     protected @Nullable T getMostLeft() {
@@ -18,6 +18,7 @@ public class Quadrilateral extends Bounds {
     @Override
     public Bounds setWidth(float width) {
         mWidth = width;
+        onChanged();
         return this;
     }
 
@@ -29,6 +30,7 @@ public class Quadrilateral extends Bounds {
     @Override
     public Bounds setHeight(float height) {
         mHeight = height;
+        onChanged();
         return this;
     }
 
@@ -39,9 +41,9 @@ public class Quadrilateral extends Bounds {
 
     @Override
     public boolean withinBounds(float posX, float posY, float touchSlop) {
-        if (Math.abs(posX - mX) > (mWidth + touchSlop)) {
+        if (Math.abs(posX - mX) > ((mWidth / 2.f) + touchSlop)) {
             return false;
-        } else if (Math.abs(posY - mY) > (mHeight + touchSlop)) {
+        } else if (Math.abs(posY - mY) > ((mHeight / 2.f) + touchSlop)) {
             return false;
         }
         return true;
@@ -17,6 +17,7 @@ public class Radial extends Bounds {
     @Override
     public Bounds setWidth(float width) {
         mRadius = width;
+        onChanged();
         return this;
     }
 
@@ -28,6 +29,7 @@ public class Radial extends Bounds {
     @Override
     public Bounds setHeight(float height) {
         mRadius = height;
+        onChanged();
         return this;
     }
 
@@ -36,6 +38,30 @@ public class Radial extends Bounds {
         return mRadius;
     }
 
+    public float getRadius() {
+        return mRadius;
+    }
+
+    @Override
+    public float getMinX() {
+        return mX - mRadius;
+    }
+
+    @Override
+    public float getMaxX() {
+        return mX + mRadius;
+    }
+
+    @Override
+    public float getMinY() {
+        return mY - mRadius;
+    }
+
+    @Override
+    public float getMaxY() {
+        return mY + mRadius;
+    }
+
     @Override
     public boolean withinBounds(float posX, float posY, float touchSlop) {
         return (Math.sqrt(((posX - mX) * (posX - mX)) + ((posY - mY) * (posY - mY))) <=
@@ -2,19 +2,38 @@ package com.nickstephen.gamelib.opengl.gestures;
 
 import android.view.MotionEvent;
 
+import com.nickstephen.gamelib.util.Pool;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
+ * <p>A gesture input passed from the GUI thread to the game thread.</p>
+ *
+ * <p>Events are pooled so that steady-state touch input doesn't allocate. Once an event has been
+ * handed to {@link com.nickstephen.gamelib.run.GameLoop#handleUserInput(GestureEvent)} it's
+ * recycled straight after, so don't hold on to references to it (or its fields' meaning will
+ * change under you). Copy out the values you need instead.</p>
+ *
  * Created by Nick Stephen on 24/04/2014.
  */
 public class GestureEvent {
+    static final int POOL_SIZE = 16;
+
+    private static final Pool<GestureEvent> sPool = new Pool<GestureEvent>(POOL_SIZE) {
+        @NotNull
+        @Override
+        protected GestureEvent newObject() {
+            return new GestureEvent();
+        }
+    };
+
     public static GestureEvent construct(@NotNull MotionEvent e, @Nullable MotionEvent param2, @NotNull Type t, float param4, float param5) {
         switch (t) {
             case SCROLL:
-                return new GestureScroll(e, t, param4, param5);
+                return GestureScroll.obtain(e, param4, param5);
             case FLING:
-                return new GestureFling(e, param4, param5);
+                return GestureFling.obtain(e, param4, param5);
 
             case FINISH:
             case DOWN:
@@ -23,26 +42,98 @@ public class GestureEvent {
             case SINGLE_TAP:
             case DOUBLE_TAP:
             default:
-                return new GestureEvent(e, t);
+                GestureEvent event = sPool.acquire();
+                event.set(e, t);
+                return event;
+        }
+    }
+
+    /**
+     * Construct an event from raw values rather than a motion event, e.g. when replaying recorded
+     * input.
+     * @param t The type of the gesture
+     * @param time The down time of the gesture
+     * @param pointer The pointer id
+     * @param x The x position of the gesture (pixels from the left)
+     * @param y The y position of the gesture (pixels from the top)
+     * @param param1 The {@link GestureScroll#scrollX} for SCROLL or {@link GestureFling#xVelocity} for FLING
+     *               events. Ignored otherwise.
+     * @param param2 The {@link GestureScroll#scrollY} for SCROLL or {@link GestureFling#yVelocity} for FLING
+     *               events. Ignored otherwise.
+     * @return The event
+     */
+    public static GestureEvent construct(@NotNull Type t, long time, int pointer, float x, float y, float param1, float param2) {
+        switch (t) {
+            case SCROLL:
+                return GestureScroll.obtain(time, pointer, x, y, param1, param2);
+            case FLING:
+                return GestureFling.obtain(time, pointer, x, y, param1, param2);
+
+            default:
+                GestureEvent event = sPool.acquire();
+                event.set(t, time, pointer, x, y);
+                return event;
         }
     }
 
+    public Type type;
+
+    public long originalTime;
+
+    public int pointerId;
 
-    public final Type type;
+    public float originalX;
+    public float originalY;
 
-    public final long originalTime;
+    private boolean mRecycled;
 
-    public final int pointerId;
+    protected GestureEvent() {
+    }
 
-    public final float originalX;
-    public final float originalY;
+    /**
+     * (Re)initialise the event from a motion event.
+     * @param e The motion event
+     * @param t The type of the gesture
+     */
+    protected void set(@NotNull MotionEvent e, @NotNull Type t) {
+        set(t, e.getDownTime(), e.getPointerId(0), e.getX(), e.getY());
+    }
 
-    protected GestureEvent(@NotNull MotionEvent e, @NotNull Type t) {
+    /**
+     * (Re)initialise the event from raw values.
+     * @param t The type of the gesture
+     * @param time The down time of the gesture
+     * @param pointer The pointer id
+     * @param x The x position of the gesture (pixels from the left)
+     * @param y The y position of the gesture (pixels from the top)
+     */
+    protected void set(@NotNull Type t, long time, int pointer, float x, float y) {
         type = t;
-        originalTime = e.getDownTime();
-        pointerId = e.getPointerId(0);
-        originalX = e.getX();
-        originalY = e.getY();
+        originalTime = time;
+        pointerId = pointer;
+        originalX = x;
+        originalY = y;
+        mRecycled = false;
+    }
+
+    /**
+     * Return this event to its pool. The event must not be used after calling this. Recycling an
+     * already recycled event is ignored.
+     */
+    public final void recycle() {
+        if (mRecycled) {
+            return;
+        }
+        mRecycled = true;
+
+        release();
+    }
+
+    /**
+     * Put the event back in the pool for its class. Sub-classes with their own pool override this.
+     */
+    protected void release() {
+        sPool.release(this);
     }
 
     public static enum Type {
@@ -3,6 +3,7 @@ package com.nickstephen.gamelib.opengl.gestures;
 import android.view.MotionEvent;
 
 import com.nickstephen.gamelib.util.Direction;
+import com.nickstephen.gamelib.util.Pool;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -10,16 +11,44 @@ import org.jetbrains.annotations.NotNull;
  * Created by Nick Stephen on 25/04/2014.
  */
 public class GestureFling extends GestureEvent {
-    public final float xVelocity;
-    public final float yVelocity;
+    private static final Pool<GestureFling> sPool = new Pool<GestureFling>(POOL_SIZE) {
+        @NotNull
+        @Override
+        protected GestureFling newObject() {
+            return new GestureFling();
+        }
+    };
+
+    static GestureFling obtain(@NotNull MotionEvent e, float xVel, float yVel) {
+        GestureFling fling = sPool.acquire();
+        fling.set(e, Type.FLING);
+        fling.setVelocities(xVel, -yVel);
+        return fling;
+    }
+
+    static GestureFling obtain(long time, int pointer, float x, float y, float xVel, float yVel) {
+        GestureFling fling = sPool.acquire();
+        fling.set(Type.FLING, time, pointer, x, y);
+        fling.setVelocities(xVel, yVel);
+        return fling;
+    }
 
-    public final Direction direction;
+    public float xVelocity;
+    public float yVelocity;
 
-    GestureFling(@NotNull MotionEvent e, float xVel, float yVel) {
-        super(e, Type.FLING);
+    public Direction direction;
 
+    GestureFling() {
+    }
+
+    /**
+     * Set the velocities of the fling and work out the direction from them.
+     * @param xVel The x velocity
+     * @param yVel The y velocity (already flipped to be positive upwards)
+     */
+    void setVelocities(float xVel, float yVel) {
         xVelocity = xVel;
-        yVelocity = -yVel;
+        yVelocity = yVel;
 
         float absX = Math.abs(xVelocity);
         float absY = Math.abs(yVelocity);
@@ -34,4 +63,9 @@ public class GestureFling extends GestureEvent {
             direction = Direction.UP;
         }
     }
+
+    @Override
+    protected void release() {
+        sPool.release(this);
+    }
 }
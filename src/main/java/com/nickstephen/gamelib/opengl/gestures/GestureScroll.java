@@ -2,19 +2,46 @@ package com.nickstephen.gamelib.opengl.gestures;
 
 import android.view.MotionEvent;
 
+import com.nickstephen.gamelib.util.Pool;
+
 import org.jetbrains.annotations.NotNull;
 
 /**
  * Created by Nick Stephen on 24/04/2014.
  */
 public class GestureScroll extends GestureEvent {
-    public final float scrollX;
-    public final float scrollY;
+    private static final Pool<GestureScroll> sPool = new Pool<GestureScroll>(POOL_SIZE) {
+        @NotNull
+        @Override
+        protected GestureScroll newObject() {
+            return new GestureScroll();
+        }
+    };
+
+    static GestureScroll obtain(@NotNull MotionEvent e, float currentScrollX, float currentScrollY) {
+        GestureScroll scroll = sPool.acquire();
+        scroll.set(e, Type.SCROLL);
+        scroll.scrollX = -currentScrollX;
+        scroll.scrollY = currentScrollY;
+        return scroll;
+    }
 
-    GestureScroll(@NotNull MotionEvent e, @NotNull GestureEvent.Type t, float currentScrollX, float currentScrollY) {
-        super(e, t);
+    static GestureScroll obtain(long time, int pointer, float x, float y, float scrollX, float scrollY) {
+        GestureScroll scroll = sPool.acquire();
+        scroll.set(Type.SCROLL, time, pointer, x, y);
+        scroll.scrollX = scrollX;
+        scroll.scrollY = scrollY;
+        return scroll;
+    }
+
+    public float scrollX;
+    public float scrollY;
+
+    GestureScroll() {
+    }
 
-        scrollX = -currentScrollX;
-        scrollY = currentScrollY;
+    @Override
+    protected void release() {
+        sPool.release(this);
     }
 }
@@ -0,0 +1,20 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+/**
+ * Listener for pinch gestures recognised by {@link com.nickstephen.gamelib.opengl.gestures.PinchRecogniser}.
+ * Called on the game thread. Positions are in pixels from the top left of the surface.
+ * @author Nick Stephen
+ */
+public interface IOnPinchL {
+    public void onPinchStart(float focusX, float focusY);
+
+    /**
+     * Called whenever the distance between the two pointers changes.
+     * @param scaleFactor The ratio of the new distance to the previous distance
+     * @param focusX The x position halfway between the pointers
+     * @param focusY The y position halfway between the pointers
+     */
+    public void onPinch(float scaleFactor, float focusX, float focusY);
+
+    public void onPinchEnd();
+}
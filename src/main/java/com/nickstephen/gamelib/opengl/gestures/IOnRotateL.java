@@ -0,0 +1,22 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+/**
+ * Listener for two finger rotation gestures recognised by
+ * {@link com.nickstephen.gamelib.opengl.gestures.RotateRecogniser}. Called on the game thread.
+ * Positions are in pixels from the top left of the surface.
+ * @author Nick Stephen
+ */
+public interface IOnRotateL {
+    public void onRotateStart(float focusX, float focusY);
+
+    /**
+     * Called whenever the angle between the two pointers changes.
+     * @param degrees The change in angle since the last call (degrees, clockwise on screen, so it
+     *                can be passed straight to {@link com.nickstephen.gamelib.opengl.shapes.Shape#setAngle(float)})
+     * @param focusX The x position halfway between the pointers
+     * @param focusY The y position halfway between the pointers
+     */
+    public void onRotate(float degrees, float focusX, float focusY);
+
+    public void onRotateEnd();
+}
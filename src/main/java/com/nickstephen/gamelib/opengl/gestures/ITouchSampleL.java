@@ -0,0 +1,23 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+/**
+ * Listener for raw touch samples read out of a {@link com.nickstephen.gamelib.opengl.gestures.TouchStream}.
+ * Called on the game thread.
+ * @author Nick Stephen
+ */
+public interface ITouchSampleL {
+    /**
+     * Called for every sample, in the order they were produced.
+     * @param pointerId The id of the pointer the sample belongs to
+     * @param action One of the SAMPLE_* constants in {@link com.nickstephen.gamelib.opengl.gestures.TouchStream}
+     * @param x The x position (pixels from the left of the surface)
+     * @param y The y position (pixels from the top of the surface)
+     * @param time The time of the sample (uptime millis)
+     */
+    public void onTouchSample(int pointerId, int action, float x, float y, long time);
+
+    /**
+     * Called once all of the currently available samples have been delivered.
+     */
+    public void onTouchSamplesEnd();
+}
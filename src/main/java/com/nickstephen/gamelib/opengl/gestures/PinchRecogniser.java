@@ -0,0 +1,55 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Recognises pinch (scale) gestures from raw touch samples. Add it as a touch sample listener to
+ * the {@link com.nickstephen.gamelib.run.GameLoop} and turn on raw touch input in
+ * {@link com.nickstephen.gamelib.run.Game}.
+ * @author Nick Stephen
+ */
+public class PinchRecogniser extends TwoPointerRecogniser {
+    /**
+     * Spans smaller than this (pixels) are ignored to avoid dividing by (nearly) zero.
+     */
+    private static final float MIN_SPAN = 1.f;
+
+    private final IOnPinchL mListener;
+    private float mLastSpan;
+
+    public PinchRecogniser(@NotNull IOnPinchL listener) {
+        mListener = listener;
+    }
+
+    @Override
+    protected void onStart() {
+        mLastSpan = getSpan();
+        mListener.onPinchStart(getFocusX(), getFocusY());
+    }
+
+    @Override
+    protected void onUpdate() {
+        float span = getSpan();
+
+        if (span < MIN_SPAN || mLastSpan < MIN_SPAN) {
+            mLastSpan = span;
+            return;
+        }
+
+        if (span != mLastSpan) {
+            mListener.onPinch(span / mLastSpan, getFocusX(), getFocusY());
+            mLastSpan = span;
+        }
+    }
+
+    @Override
+    protected void onEnd() {
+        mListener.onPinchEnd();
+    }
+
+    private float getSpan() {
+        float dx = mX[1] - mX[0];
+        float dy = mY[1] - mY[0];
+        return (float) Math.sqrt((dx * dx) + (dy * dy));
+    }
+}
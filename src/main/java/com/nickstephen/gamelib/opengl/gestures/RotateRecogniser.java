@@ -0,0 +1,56 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Recognises two finger rotation gestures from raw touch samples. Add it as a touch sample listener
+ * to the {@link com.nickstephen.gamelib.run.GameLoop} and turn on raw touch input in
+ * {@link com.nickstephen.gamelib.run.Game}.
+ * @author Nick Stephen
+ */
+public class RotateRecogniser extends TwoPointerRecogniser {
+    private final IOnRotateL mListener;
+    private float mLastAngle;
+
+    public RotateRecogniser(@NotNull IOnRotateL listener) {
+        mListener = listener;
+    }
+
+    @Override
+    protected void onStart() {
+        mLastAngle = getAngle();
+        mListener.onRotateStart(getFocusX(), getFocusY());
+    }
+
+    @Override
+    protected void onUpdate() {
+        float angle = getAngle();
+        float delta = angle - mLastAngle;
+
+        // Take the short way around
+        if (delta > 180.f) {
+            delta -= 360.f;
+        } else if (delta < -180.f) {
+            delta += 360.f;
+        }
+
+        if (delta != 0.f) {
+            mListener.onRotate(delta, getFocusX(), getFocusY());
+            mLastAngle = angle;
+        }
+    }
+
+    @Override
+    protected void onEnd() {
+        mListener.onRotateEnd();
+    }
+
+    /**
+     * Get the angle of the line between the pointers. Screen coordinates have y pointing down so
+     * this increases clockwise.
+     * @return The angle (degrees)
+     */
+    private float getAngle() {
+        return (float) Math.toDegrees(Math.atan2(mY[1] - mY[0], mX[1] - mX[0]));
+    }
+}
@@ -0,0 +1,176 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+import android.view.MotionEvent;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>A raw stream of touch samples passed from the GUI thread to the game thread. Unlike the
+ * gesture events, every pointer and every historical sample in a {@link android.view.MotionEvent}
+ * is kept, so it's suitable for drawing mechanics and multi-touch gestures.</p>
+ *
+ * <p>Samples are packed into primitive arrays in a ring buffer so writing and reading them doesn't
+ * allocate. There must be exactly one writer thread (the GUI thread) and one reader thread (the
+ * game thread), which lets the buffer get away without locking. If the reader falls so far behind
+ * that the buffer fills up, new samples are dropped (see {@link #getDroppedCount()}).</p>
+ * @author Nick Stephen
+ */
+public class TouchStream {
+    public static final int SAMPLE_DOWN = 0;
+    public static final int SAMPLE_MOVE = 1;
+    public static final int SAMPLE_UP = 2;
+    public static final int SAMPLE_CANCEL = 3;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mMask;
+    private final int[] mPointerIds;
+    private final byte[] mActions;
+    private final float[] mX;
+    private final float[] mY;
+    private final long[] mTimes;
+
+    private volatile int mWriteIndex;
+    private volatile int mReadIndex;
+    private volatile int mDropped;
+
+    /**
+     * Constructor that uses {@link #DEFAULT_CAPACITY}.
+     */
+    public TouchStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity The number of samples the buffer can hold. Rounded up to a power of 2.
+     */
+    public TouchStream(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        mMask = size - 1;
+        mPointerIds = new int[size];
+        mActions = new byte[size];
+        mX = new float[size];
+        mY = new float[size];
+        mTimes = new long[size];
+    }
+
+    /**
+     * Write all the samples of a motion event (historical samples first) into the stream. Must only
+     * be called from the writer thread.
+     * @param e The motion event
+     */
+    public void write(@NotNull MotionEvent e) {
+        final int pointers = e.getPointerCount();
+        final int history = e.getHistorySize();
+
+        for (int h = 0; h < history; h++) {
+            long time = e.getHistoricalEventTime(h);
+
+            for (int p = 0; p < pointers; p++) {
+                put(e.getPointerId(p), SAMPLE_MOVE, e.getHistoricalX(p, h), e.getHistoricalY(p, h), time);
+            }
+        }
+
+        final int action = e.getActionMasked();
+        final int actionIndex = e.getActionIndex();
+        final long time = e.getEventTime();
+
+        for (int p = 0; p < pointers; p++) {
+            int sample;
+            switch (action) {
+                case MotionEvent.ACTION_DOWN:
+                    sample = SAMPLE_DOWN;
+                    break;
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    sample = (p == actionIndex) ? SAMPLE_DOWN : SAMPLE_MOVE;
+                    break;
+                case MotionEvent.ACTION_UP:
+                    sample = SAMPLE_UP;
+                    break;
+                case MotionEvent.ACTION_POINTER_UP:
+                    sample = (p == actionIndex) ? SAMPLE_UP : SAMPLE_MOVE;
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    sample = SAMPLE_CANCEL;
+                    break;
+                default:
+                    sample = SAMPLE_MOVE;
+                    break;
+            }
+
+            put(e.getPointerId(p), sample, e.getX(p), e.getY(p), time);
+        }
+    }
+
+    /**
+     * Write a single sample into the stream. Must only be called from the writer thread.
+     * @param pointerId The pointer id
+     * @param action One of the SAMPLE_* constants
+     * @param x The x position
+     * @param y The y position
+     * @param time The time of the sample
+     */
+    public void put(int pointerId, int action, float x, float y, long time) {
+        final int write = mWriteIndex;
+
+        if (write - mReadIndex > mMask) {
+            mDropped++;
+            return;
+        }
+
+        final int i = write & mMask;
+        mPointerIds[i] = pointerId;
+        mActions[i] = (byte) action;
+        mX[i] = x;
+        mY[i] = y;
+        mTimes[i] = time;
+
+        mWriteIndex = write + 1; // Publish the sample to the reader
+    }
+
+    /**
+     * Pass all of the currently available samples to a listener. Must only be called from the
+     * reader thread.
+     * @param listener The listener to give the samples to
+     * @return The number of samples delivered
+     */
+    public int drain(@NotNull ITouchSampleL listener) {
+        final int write = mWriteIndex;
+        int read = mReadIndex;
+
+        if (read == write) {
+            return 0;
+        }
+
+        final int count = write - read;
+        for (; read != write; read++) {
+            final int i = read & mMask;
+            listener.onTouchSample(mPointerIds[i], mActions[i], mX[i], mY[i], mTimes[i]);
+        }
+
+        mReadIndex = read; // Hand the space back to the writer
+        listener.onTouchSamplesEnd();
+
+        return count;
+    }
+
+    /**
+     * Throw away any samples that haven't been read yet. Must only be called from the reader thread.
+     */
+    public void clear() {
+        mReadIndex = mWriteIndex;
+    }
+
+    /**
+     * Get the number of samples that were dropped because the buffer was full.
+     * @return The number of dropped samples
+     */
+    public int getDroppedCount() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,138 @@
+package com.nickstephen.gamelib.opengl.gestures;
+
+/**
+ * <p>Base class for gestures made with two pointers (pinch, rotate, etc.) that are recognised from
+ * the raw samples of a {@link com.nickstephen.gamelib.opengl.gestures.TouchStream}.</p>
+ *
+ * <p>The first two pointers to go down are tracked, any more are ignored. Updates are batched so
+ * that {@link #onUpdate()} is called once per set of samples (i.e. after both pointers have moved)
+ * rather than once per pointer.</p>
+ * @author Nick Stephen
+ */
+public abstract class TwoPointerRecogniser implements ITouchSampleL {
+    private static final int NO_POINTER = -1;
+
+    private final int[] mIds = new int[] { NO_POINTER, NO_POINTER };
+    protected final float[] mX = new float[2];
+    protected final float[] mY = new float[2];
+
+    private boolean mActive;
+    private boolean mPending;
+    private long mPendingTime;
+
+    @Override
+    public void onTouchSample(int pointerId, int action, float x, float y, long time) {
+        if (mPending && time != mPendingTime) {
+            flush();
+        }
+
+        int slot = findSlot(pointerId);
+
+        switch (action) {
+            case TouchStream.SAMPLE_DOWN:
+                if (slot == NO_POINTER) {
+                    slot = findSlot(NO_POINTER);
+                    if (slot == NO_POINTER) {
+                        return;
+                    }
+                    mIds[slot] = pointerId;
+                }
+
+                mX[slot] = x;
+                mY[slot] = y;
+
+                if (!mActive && mIds[0] != NO_POINTER && mIds[1] != NO_POINTER) {
+                    mActive = true;
+                    onStart();
+                }
+                break;
+            case TouchStream.SAMPLE_MOVE:
+                if (slot == NO_POINTER) {
+                    return;
+                }
+
+                mX[slot] = x;
+                mY[slot] = y;
+
+                if (mActive) {
+                    mPending = true;
+                    mPendingTime = time;
+                }
+                break;
+            case TouchStream.SAMPLE_UP:
+            case TouchStream.SAMPLE_CANCEL:
+                if (slot == NO_POINTER) {
+                    return;
+                }
+
+                if (mActive) {
+                    flush();
+                    mActive = false;
+                    onEnd();
+                }
+                mIds[slot] = NO_POINTER;
+                break;
+        }
+    }
+
+    @Override
+    public void onTouchSamplesEnd() {
+        flush();
+    }
+
+    /**
+     * Check whether both pointers are currently down.
+     * @return True if the gesture is in progress, false otherwise
+     */
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * Get the x position halfway between the two pointers.
+     * @return The focus x position (pixels from the left)
+     */
+    protected float getFocusX() {
+        return (mX[0] + mX[1]) / 2.f;
+    }
+
+    /**
+     * Get the y position halfway between the two pointers.
+     * @return The focus y position (pixels from the top)
+     */
+    protected float getFocusY() {
+        return (mY[0] + mY[1]) / 2.f;
+    }
+
+    /**
+     * Called when the second pointer goes down. {@link #mX} and {@link #mY} hold the positions of
+     * both pointers.
+     */
+    protected abstract void onStart();
+
+    /**
+     * Called after the pointers have moved while the gesture is active.
+     */
+    protected abstract void onUpdate();
+
+    /**
+     * Called when either pointer goes up (or the gesture is cancelled).
+     */
+    protected abstract void onEnd();
+
+    private void flush() {
+        if (mPending) {
+            mPending = false;
+            onUpdate();
+        }
+    }
+
+    private int findSlot(int pointerId) {
+        if (mIds[0] == pointerId) {
+            return 0;
+        } else if (mIds[1] == pointerId) {
+            return 1;
+        }
+        return NO_POINTER;
+    }
+}
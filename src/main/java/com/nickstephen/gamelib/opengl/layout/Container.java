@@ -12,6 +12,7 @@ import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
 import com.nickstephen.gamelib.opengl.gestures.GestureFling;
 import com.nickstephen.gamelib.opengl.gestures.GestureScroll;
 import com.nickstephen.gamelib.opengl.interfaces.IContainerDraw;
+import com.nickstephen.gamelib.perf.Trace;
 import com.nickstephen.gamelib.run.GameLoop;
 import com.nickstephen.lib.VersionControl;
 
@@ -41,10 +42,22 @@ import java.util.List;
  * @author Nick Stephen
  */
 public class Container extends Shape implements IContainerDraw {
+    /**
+     * Offset subtracted from the scissor boxes whilst drawing into a render cache, so the cached
+     * container's bottom left corner lines up with the corner of the cache. Only used on the GL thread.
+     */
+    private static int sScissorOffsetX = 0;
+    private static int sScissorOffsetY = 0;
+
     protected final List<Container> mChildContainers;
     protected final List<Shape> mChildren;
 
     protected final float[] mVPMatrix = new float[16];
+    /**
+     * The view matrix translated to the centre of this container (including scrolling). Passed down
+     * to the child containers as their view matrix.
+     */
+    protected final float[] mWorldMatrix = new float[16];
 
     protected final float mTouchSlop;
 
@@ -59,6 +72,17 @@ public class Container extends Shape implements IContainerDraw {
     private float mParentOffsetY;
     private float mScreenHeight;
     private float mScreenWidth;
+    private boolean mCacheEnabled = false;
+    private volatile boolean mCacheDirty = true;
+    private RenderCache mRenderCache;
+    private boolean mDrawnFromCache = false;
+    private volatile boolean mTransformDirty = true;
+    private volatile boolean mAbsoluteCornerDirty = true;
+    private int mAbsoluteX;
+    private int mAbsoluteY;
+    private int mScissorX;
+    private int mScissorY;
+    private final float[] mCacheMatrix = new float[16];
 
     /**
      * Default constructor for {@link com.nickstephen.gamelib.opengl.layout.Container}
@@ -126,6 +150,7 @@ public class Container extends Shape implements IContainerDraw {
     public void setScreenSize(float width, float height) {
         mScreenWidth = width;
         mScreenHeight = height;
+        mCacheDirty = true;
 
         if (mBoundsWidth < mScreenWidth) {
             mBoundsWidth = mScreenWidth;
@@ -138,6 +163,8 @@ public class Container extends Shape implements IContainerDraw {
             mBottom = (int) ((getParent().getScreenHeight() / 2.0f) + mParentOffsetY - (getScreenHeight() / 2.0f));
             mLeft = (int) ((getParent().getScreenWidth() / 2.0f) + mParentOffsetX - (getScreenWidth() / 2.0f));
         }
+
+        invalidateTransform();
     }
 
     /**
@@ -169,29 +196,56 @@ public class Container extends Shape implements IContainerDraw {
      * <p/>
      * Then the glScissor function is applied around the bounds of this container and the child shape's
      * of this container are drawn with the combined projection and translated view matrices.
+     * <p/>
+     * The translated matrices and the scissor box are cached and only recalculated after the
+     * container (or one of its ancestors) moves or changes size. See {@link #invalidateTransform()}.
      *
      * @param projMatrix The projection matrix (passed unmodified from the renderer)
      * @param viewMatrix The view matrix (modified by containers to account for different offsets)
      */
     public void draw(@NotNull float[] projMatrix, @NotNull float[] viewMatrix) {
+        Trace.begin("Container.draw");
+
+        if (mCacheEnabled) {
+            if (!drawFromCache(projMatrix, viewMatrix)) {
+                setDrawnFromCache(false);
+                drawContents(projMatrix, viewMatrix);
+            }
+        } else {
+            setDrawnFromCache(false);
+
+            if (mRenderCache != null) {
+                mRenderCache.release();
+                mRenderCache = null;
+            }
+
+            drawContents(projMatrix, viewMatrix);
+        }
+
+        Trace.end();
+    }
+
+    /**
+     * Draw this container's subtree as normal, shape by shape.
+     *
+     * @param projMatrix The projection matrix
+     * @param viewMatrix The view matrix
+     */
+    private void drawContents(@NotNull float[] projMatrix, @NotNull float[] viewMatrix) {
+        updateTransform(projMatrix, viewMatrix);
+
         if (!VersionControl.IS_RELEASE) {
-            Matrix.translateM(mScratch, 0, viewMatrix, 0, mParentOffsetX + this.getX(), mParentOffsetY + this.getY(), 0);
-            System.arraycopy(mScratch, 0, mVPMatrix, 0, 16);
             draw(projMatrix);
         }
 
-        Matrix.translateM(mScratch, 0, viewMatrix, 0, this.getX() + mParentOffsetX, this.getY() + mParentOffsetY, 0);
-
         int len = mChildContainers.size();
         //noinspection ForLoopReplaceableByForEach
         for (int i = 0; i < len; i++) {
-            mChildContainers.get(i).draw(projMatrix, mScratch);
+            mChildContainers.get(i).draw(projMatrix, mWorldMatrix);
         }
 
-        Matrix.multiplyMM(mVPMatrix, 0, projMatrix, 0, mScratch, 0);
-
         GLES20.glEnable(GLES20.GL_SCISSOR_TEST);
-        GLES20.glScissor((int)(getAbsoluteBLCornerX() + this.getX()), (int)(getAbsoluteBLCornerY() + this.getY()), (int) mScreenWidth, (int) mScreenHeight);
+        applyScissor();
 
         synchronized (mChildren) {
             len = mChildren.size();
@@ -203,6 +257,249 @@ public class Container extends Shape implements IContainerDraw {
         GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
     }
 
+    /**
+     * Recalculate the world matrix, VP matrix and scissor box if they've been invalidated since they
+     * were last calculated.
+     *
+     * @param projMatrix The projection matrix
+     * @param viewMatrix The view matrix of the parent container
+     */
+    void updateTransform(@NotNull float[] projMatrix, @NotNull float[] viewMatrix) {
+        if (mTransformDirty) {
+            // Cleared first so a move during the update isn't lost
+            mTransformDirty = false;
+
+            Matrix.translateM(mWorldMatrix, 0, viewMatrix, 0, this.getX() + mParentOffsetX, this.getY() + mParentOffsetY, 0);
+            Matrix.multiplyMM(mVPMatrix, 0, projMatrix, 0, mWorldMatrix, 0);
+
+            mScissorX = (int)(getAbsoluteBLCornerX() + this.getX());
+            mScissorY = (int)(getAbsoluteBLCornerY() + this.getY());
+        }
+    }
+
+    /**
+     * Set the GL scissor box to the bounds of this container (as of the last
+     * {@link #updateTransform(float[], float[])}).
+     */
+    void applyScissor() {
+        GLES20.glScissor(mScissorX - sScissorOffsetX, mScissorY - sScissorOffsetY, (int) mScreenWidth, (int) mScreenHeight);
+    }
+
+    /**
+     * Get ready to have this container's subtree drawn directly (i.e. not from a render cache)
+     * by a {@link com.nickstephen.gamelib.opengl.layout.DrawList}, which doesn't go through
+     * {@link #draw(float[], float[])}.
+     */
+    void prepareDirectDraw() {
+        setDrawnFromCache(false);
+
+        if (mRenderCache != null) {
+            mRenderCache.release();
+            mRenderCache = null;
+        }
+    }
+
+    /**
+     * Draw this container's subtree from its render cache, first re-rendering the cache if anything
+     * in the subtree has been invalidated.
+     *
+     * @param projMatrix The projection matrix
+     * @param viewMatrix The view matrix
+     * @return True if drawn, false if there's no cache available so the subtree should be drawn normally
+     */
+    private boolean drawFromCache(@NotNull float[] projMatrix, @NotNull float[] viewMatrix) {
+        final int width = (int) mScreenWidth;
+        final int height = (int) mScreenHeight;
+
+        if (mRenderCache != null && (mRenderCache.getWidth() != width || mRenderCache.getHeight() != height)) {
+            mRenderCache.release();
+            mRenderCache = null;
+        }
+
+        if (mRenderCache == null) {
+            mRenderCache = RenderCache.create(mContext, width, height);
+
+            if (mRenderCache == null) {
+                return false;
+            }
+            mCacheDirty = true;
+            invalidateTransform(); // New projection
+        }
+        setDrawnFromCache(true);
+
+        if (mCacheDirty) {
+            // Cleared first so that anything invalidated during the pass (e.g. textures that haven't
+            // loaded yet) causes it to be rendered again next frame
+            mCacheDirty = false;
+
+            final int prevOffsetX = sScissorOffsetX;
+            final int prevOffsetY = sScissorOffsetY;
+            sScissorOffsetX = getAbsoluteBLCornerX();
+            sScissorOffsetY = getAbsoluteBLCornerY();
+
+            // Cancel out the parent offset so the centre of this container is the centre of the cache
+            Matrix.setIdentityM(mCacheMatrix, 0);
+            Matrix.translateM(mCacheMatrix, 0, -mParentOffsetX, -mParentOffsetY, 0);
+
+            mRenderCache.begin();
+            drawContents(mRenderCache.getProjectionMatrix(), mCacheMatrix);
+            mRenderCache.end();
+
+            sScissorOffsetX = prevOffsetX;
+            sScissorOffsetY = prevOffsetY;
+        }
+
+        Matrix.translateM(mCacheMatrix, 0, viewMatrix, 0, mParentOffsetX, mParentOffsetY, 0);
+        Matrix.multiplyMM(mScratch, 0, projMatrix, 0, mCacheMatrix, 0);
+        mRenderCache.draw(mScratch);
+
+        return true;
+    }
+
+    /**
+     * Set whether this container's subtree should be rendered once into an offscreen texture and then
+     * drawn as a single quad until something in it changes. Worthwhile for subtrees that rarely
+     * change, like HUDs, backgrounds and menus. Not worthwhile for subtrees with running animations
+     * since they invalidate the cache every tick.
+     * <p/>
+     * Changes to the position, angle, colour, alpha or texture of any descendant invalidate the cache
+     * automatically. Call {@link #invalidate()} after anything else that changes how the subtree
+     * looks, like adding or removing children. If there isn't enough room under the
+     * {@link RenderCache#setMemoryCap(long) memory cap} the subtree is just drawn normally.
+     *
+     * @param enabled True to cache the subtree, false to draw it normally
+     */
+    public void setCacheEnabled(boolean enabled) {
+        if (mCacheEnabled != enabled) {
+            mCacheEnabled = enabled;
+            invalidateStructure(); // Cached containers are drawn as a whole by a draw list
+        }
+        mCacheDirty = true;
+    }
+
+    public boolean isCacheEnabled() {
+        return mCacheEnabled;
+    }
+
+    /**
+     * Keep track of whether the subtree is being drawn into the render cache or straight to the
+     * screen. The cached transforms are only valid for one or the other so they're recalculated on a
+     * switch.
+     */
+    private void setDrawnFromCache(boolean cached) {
+        if (mDrawnFromCache != cached) {
+            mDrawnFromCache = cached;
+            invalidateTransform();
+        }
+    }
+
+    /**
+     * Mark the cached transforms (world matrix, absolute corner and scissor box) of this container and
+     * every container below it as out of date. Called automatically when the container moves or
+     * changes size.
+     */
+    public void invalidateTransform() {
+        mTransformDirty = true;
+        mAbsoluteCornerDirty = true;
+
+        int len = mChildContainers.size();
+        for (int i = 0; i < len; i++) {
+            mChildContainers.get(i).invalidateTransform();
+        }
+    }
+
+    /**
+     * Add a shape to be drawn by this container.
+     *
+     * @param shape The shape. Its parent should be this container.
+     */
+    public void addChild(@NotNull Shape shape) {
+        synchronized (mChildren) {
+            mChildren.add(shape);
+        }
+
+        invalidateStructure();
+        invalidate();
+    }
+
+    /**
+     * Remove a shape (or a child container) from this container.
+     *
+     * @param shape The shape to remove
+     * @return True if it was a child of this container, false otherwise
+     */
+    public boolean removeChild(@NotNull Shape shape) {
+        boolean removed;
+        synchronized (mChildren) {
+            removed = mChildren.remove(shape);
+        }
+        if (!removed && shape instanceof Container) {
+            removed = mChildContainers.remove(shape);
+        }
+
+        if (removed) {
+            invalidateStructure();
+            invalidate();
+        }
+        return removed;
+    }
+
+    /**
+     * Add a container to be drawn inside this container.
+     *
+     * @param container The container. Its parent should be this container.
+     */
+    public void addChildContainer(@NotNull Container container) {
+        mChildContainers.add(container);
+        container.invalidateTransform();
+
+        invalidateStructure();
+        invalidate();
+    }
+
+    /**
+     * Remove a child container from this container.
+     *
+     * @param container The container to remove
+     * @return True if it was a child of this container, false otherwise
+     */
+    public boolean removeChildContainer(@NotNull Container container) {
+        return removeChild(container);
+    }
+
+    /**
+     * Signal that the tree below this container has changed shape, so that any retained
+     * {@link com.nickstephen.gamelib.opengl.layout.DrawList} (see
+     * {@link RootContainer#setRetainedDrawList(boolean)}) is rebuilt. Called automatically by
+     * {@link #addChild(Shape)}, {@link #removeChild(Shape)} and friends; call it yourself after
+     * modifying {@link #mChildren} or {@link #mChildContainers} directly.
+     */
+    public void invalidateStructure() {
+        Container parent = getParent();
+        if (parent != null) {
+            parent.invalidateStructure();
+        }
+    }
+
+    /**
+     * Mark this container's render cache (if any) as out of date as well as any above it.
+     */
+    @Override
+    public void invalidate() {
+        mCacheDirty = true;
+
+        super.invalidate();
+    }
+
+    /**
+     * Called when a child (or further descendant) has changed how it's drawn.
+     *
+     * @param child The child that changed
+     */
+    public void onChildInvalidated(@NotNull Shape child) {
+        invalidate();
+    }
+
     /**
      * Get the absolute position (in pixels) of the bottom left corner of the container. Used for the
      * glScissor function.
@@ -210,10 +507,10 @@ public class Container extends Shape implements IContainerDraw {
      * @return The x-position of the bottom left corner of the container
      */
     public int getAbsoluteBLCornerX() {
-        if (getParent() == null) {
-            return 0;
+        if (mAbsoluteCornerDirty) {
+            updateAbsoluteCorner();
         }
-        return getParent().getAbsoluteBLCornerX() + mLeft;
+        return mAbsoluteX;
     }
 
     /**
@@ -223,10 +520,23 @@ public class Container extends Shape implements IContainerDraw {
      * @return The y-position of the bottom left corner of the container
      */
     public int getAbsoluteBLCornerY() {
-        if (getParent() == null) {
-            return 0;
+        if (mAbsoluteCornerDirty) {
+            updateAbsoluteCorner();
+        }
+        return mAbsoluteY;
+    }
+
+    private void updateAbsoluteCorner() {
+        mAbsoluteCornerDirty = false;
+
+        Container parent = getParent();
+        if (parent == null) {
+            mAbsoluteX = 0;
+            mAbsoluteY = 0;
+        } else {
+            mAbsoluteX = parent.getAbsoluteBLCornerX() + mLeft;
+            mAbsoluteY = parent.getAbsoluteBLCornerY() + mBottom;
         }
-        return getParent().getAbsoluteBLCornerY() + mBottom;
     }
 
     /**
@@ -304,6 +614,13 @@ public class Container extends Shape implements IContainerDraw {
         this.moveTo(newX, newY);
     }
 
+    @Override
+    public void moveTo(float newX, float newY) {
+        super.moveTo(newX, newY);
+
+        invalidateTransform();
+    }
+
     @Override
     public boolean onGestureEvent(@NotNull GestureEvent e, float relativePosX, float relativePosY) {
         if (e.type == GestureEvent.Type.FINISH) {
@@ -379,7 +696,7 @@ public class Container extends Shape implements IContainerDraw {
      */
     @Override
     public @NotNull float[] getModelMatrix() {
-        return mVPMatrix;
+        return mWorldMatrix;
     }
 
     /**
@@ -473,10 +790,19 @@ public class Container extends Shape implements IContainerDraw {
         return mChildren;
     }
 
+    public List<Container> getChildContainers() {
+        return mChildContainers;
+    }
+
     @Override
     public void dispose() {
         super.dispose();
 
+        if (mRenderCache != null) {
+            mRenderCache.release();
+            mRenderCache = null;
+        }
+
         for (Shape c : mChildren) {
             c.dispose();
         }
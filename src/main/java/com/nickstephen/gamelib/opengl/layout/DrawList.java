@@ -0,0 +1,175 @@
+package com.nickstephen.gamelib.opengl.layout;
+
+import android.opengl.GLES20;
+
+import com.nickstephen.gamelib.opengl.shapes.Shape;
+import com.nickstephen.lib.VersionControl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * <p>A {@link com.nickstephen.gamelib.opengl.layout.Container} tree compiled down to flat arrays, so
+ * that a frame can be drawn with one linear scan instead of recursing through
+ * {@link Container#draw(float[], float[])} and locking every container's children.</p>
+ *
+ * <p>The list holds one group per container (its world/ VP matrices and scissor box are the ones
+ * cached on the container itself, see {@link Container#invalidateTransform()}) and one entry per
+ * thing to draw, in the same order as a recursive draw would. Containers with a render cache
+ * enabled are kept as a single entry and drawn the normal way.</p>
+ *
+ * <p>The list has to be rebuilt whenever the structure of the tree changes. Only used on the GL
+ * thread. See {@link RootContainer#setRetainedDrawList(boolean)}.</p>
+ * @author Nick Stephen
+ */
+final class DrawList {
+    private static final byte ENTRY_SHAPE = 0;
+    private static final byte ENTRY_OUTLINE = 1;
+    private static final byte ENTRY_SUBTREE = 2;
+
+    private Container[] mGroups = new Container[8];
+    private int[] mGroupParents = new int[8];
+    private int mGroupCount;
+
+    private Shape[] mEntries = new Shape[32];
+    private byte[] mEntryTypes = new byte[32];
+    private int[] mEntryGroups = new int[32];
+    private int mEntryCount;
+
+    /**
+     * Compile the tree below (and including) a container into the list, replacing what was there.
+     * @param root The top of the tree
+     */
+    void build(@NotNull Container root) {
+        clear();
+
+        root.prepareDirectDraw();
+        add(root, -1);
+    }
+
+    /**
+     * Empty the list, dropping its references to the shapes.
+     */
+    void clear() {
+        for (int i = 0; i < mGroupCount; i++) {
+            mGroups[i] = null;
+        }
+        for (int i = 0; i < mEntryCount; i++) {
+            mEntries[i] = null;
+        }
+        mGroupCount = 0;
+        mEntryCount = 0;
+    }
+
+    /**
+     * Draw everything in the list.
+     * @param projMatrix The projection matrix (passed unmodified from the renderer)
+     * @param viewMatrix The view matrix of the top of the tree
+     */
+    void draw(@NotNull float[] projMatrix, @NotNull float[] viewMatrix) {
+        // Groups are in tree order so parents are always brought up to date before their children
+        for (int g = 0; g < mGroupCount; g++) {
+            final int parent = mGroupParents[g];
+            mGroups[g].updateTransform(projMatrix, parent < 0 ? viewMatrix : mGroups[parent].mWorldMatrix);
+        }
+
+        int scissorGroup = -1;
+        for (int i = 0; i < mEntryCount; i++) {
+            final int group = mEntryGroups[i];
+
+            if (mEntryTypes[i] == ENTRY_SHAPE) {
+                if (group != scissorGroup) {
+                    if (scissorGroup < 0) {
+                        GLES20.glEnable(GLES20.GL_SCISSOR_TEST);
+                    }
+                    mGroups[group].applyScissor();
+                    scissorGroup = group;
+                }
+
+                mEntries[i].draw(mGroups[group].mVPMatrix);
+            } else {
+                if (scissorGroup >= 0) {
+                    GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
+                    scissorGroup = -1;
+                }
+
+                if (mEntryTypes[i] == ENTRY_OUTLINE) {
+                    mEntries[i].draw(projMatrix);
+                } else {
+                    ((Container) mEntries[i]).draw(projMatrix, mGroups[group].mWorldMatrix);
+                }
+            }
+        }
+
+        if (scissorGroup >= 0) {
+            GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
+        }
+    }
+
+    private void add(@NotNull Container container, int parentGroup) {
+        final int group = addGroup(container, parentGroup);
+
+        if (!VersionControl.IS_RELEASE) {
+            addEntry(container, ENTRY_OUTLINE, group);
+        }
+
+        List<Container> containers = container.getChildContainers();
+        int len = containers.size();
+        for (int i = 0; i < len; i++) {
+            Container child = containers.get(i);
+
+            if (child.isCacheEnabled()) {
+                addEntry(child, ENTRY_SUBTREE, group);
+            } else {
+                child.prepareDirectDraw();
+                add(child, group);
+            }
+        }
+
+        List<Shape> children = container.getChildren();
+        synchronized (children) {
+            len = children.size();
+            for (int i = 0; i < len; i++) {
+                addEntry(children.get(i), ENTRY_SHAPE, group);
+            }
+        }
+    }
+
+    private int addGroup(@NotNull Container container, int parentGroup) {
+        if (mGroupCount == mGroups.length) {
+            Container[] groups = new Container[mGroupCount * 2];
+            System.arraycopy(mGroups, 0, groups, 0, mGroupCount);
+            mGroups = groups;
+
+            int[] parents = new int[mGroupCount * 2];
+            System.arraycopy(mGroupParents, 0, parents, 0, mGroupCount);
+            mGroupParents = parents;
+        }
+
+        mGroups[mGroupCount] = container;
+        mGroupParents[mGroupCount] = parentGroup;
+        return mGroupCount++;
+    }
+
+    private void addEntry(@NotNull Shape shape, byte type, int group) {
+        if (mEntryCount == mEntries.length) {
+            Shape[] entries = new Shape[mEntryCount * 2];
+            System.arraycopy(mEntries, 0, entries, 0, mEntryCount);
+            mEntries = entries;
+
+            byte[] types = new byte[mEntryCount * 2];
+            System.arraycopy(mEntryTypes, 0, types, 0, mEntryCount);
+            mEntryTypes = types;
+
+            int[] groups = new int[mEntryCount * 2];
+            System.arraycopy(mEntryGroups, 0, groups, 0, mEntryCount);
+            mEntryGroups = groups;
+        }
+
+        mEntries[mEntryCount] = shape;
+        mEntryTypes[mEntryCount] = type;
+        mEntryGroups[mEntryCount] = group;
+        mEntryCount++;
+    }
+}
@@ -0,0 +1,269 @@
+package com.nickstephen.gamelib.opengl.layout;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+import com.nickstephen.gamelib.opengl.Utilities;
+import com.nickstephen.gamelib.opengl.program.Program;
+import com.nickstephen.gamelib.opengl.shapes.Shape;
+import com.nickstephen.gamelib.opengl.shapes.Vertices;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>An offscreen framebuffer and texture that a {@link com.nickstephen.gamelib.opengl.layout.Container}
+ * renders its subtree into when caching is enabled (see {@link Container#setCacheEnabled(boolean)}),
+ * so that on later frames the whole subtree can be drawn as a single textured quad.</p>
+ *
+ * <p>All of the caches share a memory cap (see {@link #setMemoryCap(long)}). If creating a cache
+ * would go over the cap, or the device can't render to a texture, the container just draws normally.</p>
+ *
+ * <p>The contents of the cache are stored with premultiplied alpha, which lets translucent shapes
+ * be cached and then blended over the rest of the scene correctly.</p>
+ *
+ * <p>All methods apart from the memory cap accessors must be called from the GL thread.</p>
+ * @author Nick Stephen
+ */
+public class RenderCache {
+    /**
+     * The default limit on the total size of all the caches (bytes).
+     */
+    public static final long DEFAULT_MEMORY_CAP = 16L * 1024L * 1024L;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static long sMemoryCap = DEFAULT_MEMORY_CAP;
+    private static long sMemoryUsed = 0;
+    private static boolean sUnsupported = false;
+    private static int sPassDepth = 0;
+
+    /**
+     * Set the limit on the total size of all the render caches. Caches that already exist are kept
+     * even if they go over the new cap.
+     * @param bytes The maximum number of bytes of texture memory to use for caches
+     */
+    public static synchronized void setMemoryCap(long bytes) {
+        sMemoryCap = bytes;
+    }
+
+    public static synchronized long getMemoryCap() {
+        return sMemoryCap;
+    }
+
+    /**
+     * Get the amount of texture memory currently used by render caches.
+     * @return The number of bytes in use
+     */
+    public static synchronized long getMemoryUsed() {
+        return sMemoryUsed;
+    }
+
+    private static synchronized boolean reserve(long bytes) {
+        if (sMemoryUsed + bytes > sMemoryCap) {
+            return false;
+        }
+
+        sMemoryUsed += bytes;
+        return true;
+    }
+
+    private static synchronized void unreserve(long bytes) {
+        sMemoryUsed -= bytes;
+    }
+
+    /**
+     * Create a cache.
+     * @param context A context
+     * @param width The width of the cache (pixels)
+     * @param height The height of the cache (pixels)
+     * @return The cache, or null if it would go over the memory cap or can't be created
+     */
+    static @Nullable RenderCache create(@NotNull Context context, int width, int height) {
+        if (sUnsupported || width <= 0 || height <= 0) {
+            return null;
+        }
+
+        final long bytes = (long) width * height * BYTES_PER_PIXEL;
+        if (!reserve(bytes)) {
+            return null;
+        }
+
+        final int[] handles = new int[1];
+        GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, handles, 0);
+        final int prevFramebuffer = handles[0];
+
+        GLES20.glGenTextures(1, handles, 0);
+        final int texture = handles[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA,
+                GLES20.GL_UNSIGNED_BYTE, null);
+
+        GLES20.glGenFramebuffers(1, handles, 0);
+        final int framebuffer = handles[0];
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, texture, 0);
+
+        final int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, prevFramebuffer);
+
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            Twig.debug("RenderCache", "Framebuffer incomplete (" + status + "), render caching disabled");
+            sUnsupported = true;
+
+            handles[0] = framebuffer;
+            GLES20.glDeleteFramebuffers(1, handles, 0);
+            handles[0] = texture;
+            GLES20.glDeleteTextures(1, handles, 0);
+            unreserve(bytes);
+            return null;
+        }
+
+        Utilities.checkGlError("RenderCache.create");
+
+        return new RenderCache(context, framebuffer, texture, width, height);
+    }
+
+    private final int mFramebuffer;
+    private final int mTexture;
+    private final int mWidth;
+    private final int mHeight;
+    private final float[] mProjMatrix = new float[16];
+    private final Quad mQuad;
+
+    private final int[] mPrevFramebuffer = new int[1];
+    private final int[] mPrevViewport = new int[4];
+    private final float[] mPrevClearColour = new float[4];
+
+    private RenderCache(@NotNull Context context, int framebuffer, int texture, int width, int height) {
+        mFramebuffer = framebuffer;
+        mTexture = texture;
+        mWidth = width;
+        mHeight = height;
+
+        Matrix.orthoM(mProjMatrix, 0, -width / 2.f, width / 2.f, -height / 2.f, height / 2.f, -1.f, 1.f);
+
+        mQuad = new Quad(context);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Get the projection to draw into the cache with. It maps 1 unit to 1 pixel with the origin
+     * at the centre of the cache.
+     * @return The projection matrix
+     */
+    @NotNull float[] getProjectionMatrix() {
+        return mProjMatrix;
+    }
+
+    /**
+     * Redirect drawing into the cache and clear it. Must be matched by a call to {@link #end()}.
+     */
+    void begin() {
+        GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, mPrevFramebuffer, 0);
+        GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mPrevViewport, 0);
+        GLES20.glGetFloatv(GLES20.GL_COLOR_CLEAR_VALUE, mPrevClearColour, 0);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebuffer);
+        GLES20.glViewport(0, 0, mWidth, mHeight);
+        GLES20.glClearColor(0.f, 0.f, 0.f, 0.f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        // Keep the destination alpha correct so the result is premultiplied
+        GLES20.glBlendFuncSeparate(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA,
+                GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        sPassDepth++;
+    }
+
+    /**
+     * Go back to drawing wherever was being drawn to before {@link #begin()}.
+     */
+    void end() {
+        sPassDepth--;
+        restoreBlend();
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mPrevFramebuffer[0]);
+        GLES20.glViewport(mPrevViewport[0], mPrevViewport[1], mPrevViewport[2], mPrevViewport[3]);
+        GLES20.glClearColor(mPrevClearColour[0], mPrevClearColour[1], mPrevClearColour[2], mPrevClearColour[3]);
+    }
+
+    /**
+     * Draw the contents of the cache as a quad centred on the origin.
+     * @param mvpMatrix The MVP matrix to draw with
+     */
+    void draw(@NotNull float[] mvpMatrix) {
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        mQuad.draw(mvpMatrix);
+        restoreBlend();
+    }
+
+    /**
+     * Delete the framebuffer and texture and give the memory back to the cap.
+     */
+    void release() {
+        final int[] handles = new int[] { mFramebuffer };
+        GLES20.glDeleteFramebuffers(1, handles, 0);
+        handles[0] = mTexture;
+        GLES20.glDeleteTextures(1, handles, 0);
+
+        mQuad.dispose();
+
+        unreserve((long) mWidth * mHeight * BYTES_PER_PIXEL);
+    }
+
+    private static void restoreBlend() {
+        if (sPassDepth > 0) {
+            GLES20.glBlendFuncSeparate(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA,
+                    GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        } else {
+            GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        }
+    }
+
+    /**
+     * The quad the cached texture is drawn with.
+     */
+    private class Quad extends Shape {
+        Quad(@NotNull Context context) {
+            super(context, null, Program.SpriteProgram.create());
+
+            mVertices = new Vertices(this, 1);
+
+            final float w = mWidth / 2.f;
+            final float h = mHeight / 2.f;
+            mVertices.setVertices(new float[] {
+                    -w, h,
+                    w, h,
+                    w, -h,
+                    -w, -h
+            });
+
+            // Framebuffer textures are the right way up in GL's coordinate system
+            mVertices.setTextureCoords(new float[] {
+                    0.f, 1.f,
+                    1.f, 1.f,
+                    1.f, 0.f,
+                    0.f, 0.f
+            });
+        }
+
+        @Override
+        public int getTextureId() {
+            return RenderCache.this.mTexture;
+        }
+    }
+}
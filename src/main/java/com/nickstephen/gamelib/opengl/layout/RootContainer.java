@@ -8,16 +8,26 @@ import android.view.MotionEvent;
 import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
 import com.nickstephen.gamelib.opengl.text.FPSMeter;
 import com.nickstephen.gamelib.opengl.text.Text;
+import com.nickstephen.gamelib.perf.Trace;
 import com.nickstephen.lib.VersionControl;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+
 /**
  * An extension to {@link com.nickstephen.gamelib.opengl.layout.Container} that's used as the root
  * container within the {@link com.nickstephen.gamelib.opengl.Renderer}.
  * @author Nick Stephen
  */
 public class RootContainer extends Container {
+    private volatile boolean mSceneDirty = true;
+    private final float[] mLastProjMatrix = new float[16];
+    private final float[] mLastViewMatrix = new float[16];
+    private boolean mUseDrawList = false;
+    private volatile boolean mStructureDirty = true;
+    private DrawList mDrawList;
+
     /**
      * Calls {@link #RootContainer(android.content.Context, android.opengl.GLSurfaceView, float, float)}.
      * Then adds a {@link com.nickstephen.gamelib.opengl.text.FPSMeter} to the container if the app
@@ -36,7 +46,7 @@ public class RootContainer extends Container {
             Text.Font f = Text.FontManager.getDefaultFont();
             if (f != null) {
                 FPSMeter fps = new FPSMeter(context, this, f);
-                this.mChildren.add(fps);
+                this.addChild(fps);
             }
         }
     }
@@ -55,6 +65,109 @@ public class RootContainer extends Container {
         this.setSurface(surface);
     }
 
+    /**
+     * Clears the scene's dirty flag before drawing, so that anything that changes during or after
+     * this frame will request another one. See {@link #markDirty()}. Also invalidates the cached
+     * transforms of the whole tree if the renderer's matrices have changed (e.g. the surface was
+     * resized).
+     * @param projMatrix The projection matrix (passed unmodified from the renderer)
+     * @param viewMatrix The view matrix
+     */
+    @Override
+    public void draw(@NotNull float[] projMatrix, @NotNull float[] viewMatrix) {
+        mSceneDirty = false;
+
+        if (!Arrays.equals(projMatrix, mLastProjMatrix) || !Arrays.equals(viewMatrix, mLastViewMatrix)) {
+            System.arraycopy(projMatrix, 0, mLastProjMatrix, 0, 16);
+            System.arraycopy(viewMatrix, 0, mLastViewMatrix, 0, 16);
+            invalidateTransform();
+        }
+
+        if (mUseDrawList && !isCacheEnabled()) {
+            if (mStructureDirty) {
+                // Cleared first so a change during the rebuild causes another one
+                mStructureDirty = false;
+                mDrawList.build(this);
+            }
+
+            Trace.begin("DrawList.draw");
+            mDrawList.draw(projMatrix, viewMatrix);
+            Trace.end();
+        } else {
+            super.draw(projMatrix, viewMatrix);
+        }
+    }
+
+    /**
+     * Set whether the tree should be compiled into a flat
+     * {@link com.nickstephen.gamelib.opengl.layout.DrawList} that's drawn with a linear scan each
+     * frame instead of recursing through every container. The list is only rebuilt when the structure
+     * of the tree changes, so worthwhile for deep, mostly static UIs.
+     * <p/>
+     * Children must be added and removed with {@link #addChild(com.nickstephen.gamelib.opengl.shapes.Shape)},
+     * {@link #addChildContainer(Container)} etc. (or followed by a call to {@link #invalidateStructure()})
+     * for the list to notice them. Subclasses that override {@link #draw(float[], float[])} in a
+     * container below the root won't have their override called, except for containers with a render
+     * cache enabled which are always drawn as a whole.
+     *
+     * @param enabled True to use a retained draw list, false to draw the tree recursively
+     */
+    public void setRetainedDrawList(boolean enabled) {
+        if (enabled && mDrawList == null) {
+            mDrawList = new DrawList();
+        } else if (!enabled && mDrawList != null) {
+            mDrawList.clear();
+        }
+
+        mUseDrawList = enabled;
+        mStructureDirty = true;
+        markDirty();
+    }
+
+    public boolean isRetainedDrawList() {
+        return mUseDrawList;
+    }
+
+    @Override
+    public void invalidateStructure() {
+        mStructureDirty = true;
+    }
+
+    /**
+     * Mark the scene as changed since the last frame. The first time this is called after a frame,
+     * a new frame is requested from the surface, which is what keeps the display up to date when the
+     * surface is rendering on demand (see
+     * {@link com.nickstephen.gamelib.opengl.OpenGLSurfaceView#setRenderOnDemand(boolean)}). Called
+     * automatically whenever any shape in the tree is invalidated and on every tick that has a
+     * running animation.
+     */
+    public void markDirty() {
+        if (!mSceneDirty) {
+            mSceneDirty = true;
+
+            GLSurfaceView surface = getSurface();
+            //noinspection ConstantConditions
+            if (surface != null) {
+                surface.requestRender();
+            }
+        }
+    }
+
+    /**
+     * Check whether anything in the scene has changed since the start of the last frame.
+     * @return True if the scene needs drawing again, false otherwise
+     */
+    public boolean isDirty() {
+        return mSceneDirty;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+
+        markDirty();
+    }
+
     /**
      * Simple override that always returns 0. See base method for description.
      * @return 0
@@ -8,7 +8,9 @@ package com.nickstephen.gamelib.opengl.program;
 public enum AttrVariable {
     A_Position(1, Constants.ATTR_PREF + Constants.POS),
     A_TexCoordinate(2, Constants.ATTR_PREF + Constants.TEX_COORD),
-    A_MVPMatrixIndex(3, Constants.ATTR_PREF + Constants.MVP_INDEX);
+    A_MVPMatrixIndex(3, Constants.ATTR_PREF + Constants.MVP_INDEX),
+    A_Colour(4, Constants.ATTR_PREF + Constants.COLOUR),
+    A_Channel(5, Constants.ATTR_PREF + Constants.CHANNEL);
 
     private int mHandle;
     private String mName;
@@ -35,6 +37,8 @@ public enum AttrVariable {
         public static final String POS = "Position";
         public static final String TEX_COORD = "TexCoordinate";
         public static final String MVP_INDEX = "MVPMatrixIndex";
+        public static final String COLOUR = "Colour";
+        public static final String CHANNEL = "Channel";
 
         private Constants() {}
     }
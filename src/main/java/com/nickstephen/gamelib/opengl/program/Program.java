@@ -51,10 +51,48 @@ public class Program implements IDisposable {
             + ", " + VARYING_PREF + AttrVariable.Constants.TEX_COORD + ")";
 
     public static class ProgramCreator {
+        /**
+         * Option for {@link #create(boolean, boolean, boolean, boolean, int, boolean, int)}: take the
+         * colour (including alpha) from a per-vertex attribute instead of the colour and alpha
+         * uniforms, so shapes with different tints and fades can share a batch.
+         */
+        public static final int VERTEX_COLOUR = 1;
+        /**
+         * Option for {@link #create(boolean, boolean, boolean, boolean, int, boolean, int)}: take the
+         * channel balance from a per-vertex attribute instead of a uniform array, so the number of
+         * shapes isn't limited by the number of uniforms.
+         */
+        public static final int VERTEX_CHANNELS = 2;
+
         private ProgramCreator() {}
 
         public static Program create(boolean usesTexture, boolean usesChannels, boolean usesColour, boolean usesAlpha,
                                      int numShapes, boolean textureStencil) {
+            return create(usesTexture, usesChannels, usesColour, usesAlpha, numShapes, textureStencil, 0);
+        }
+
+        /**
+         * Create (or get the existing) program with the given features.
+         * @param usesTexture Whether the program samples a texture
+         * @param usesChannels Whether the texture's channels are weighted by a channel balance
+         * @param usesColour Whether the program uses a colour
+         * @param usesAlpha Whether the program uses an alpha (ignored when usesColour is set)
+         * @param numShapes The number of shapes (MVP matrices) drawn at once
+         * @param textureStencil Whether the texture is only used as a stencil for the colour
+         * @param options Any of {@link #VERTEX_COLOUR} and {@link #VERTEX_CHANNELS}
+         * @return The program
+         */
+        public static Program create(boolean usesTexture, boolean usesChannels, boolean usesColour, boolean usesAlpha,
+                                     int numShapes, boolean textureStencil, int options) {
+            final boolean vertexColour = (options & VERTEX_COLOUR) != 0;
+            final boolean vertexChannels = usesChannels && (options & VERTEX_CHANNELS) != 0;
+            if (vertexColour) {
+                usesColour = true;
+                usesAlpha = false;
+            }
+            final String colourSource = vertexColour ? VARYING_PREF + AttrVariable.Constants.COLOUR
+                    : UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.COLOR;
+
             StringBuilder sb = new StringBuilder();
             sb.append(uniform + mat4 + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.MVP_MAT);
             if (numShapes > 1) {
@@ -62,7 +100,9 @@ public class Program implements IDisposable {
             }
             sb.append(line_end);
 
-            if (usesChannels) {
+            if (vertexChannels) {
+                sb.append(attribute + vec4 + AttrVariable.Constants.ATTR_PREF + AttrVariable.Constants.CHANNEL + line_end);
+            } else if (usesChannels) {
                 sb.append(uniform + vec4 + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.CHANNEL);
 
                 if (numShapes > 1) {
@@ -84,6 +124,10 @@ public class Program implements IDisposable {
             if (usesChannels) {
                 sb.append(varying + vec4 + VARYING_PREF + UniformVariable.Constants.CHANNEL + line_end);
             }
+            if (vertexColour) {
+                sb.append(attribute + vec4 + AttrVariable.Constants.ATTR_PREF + AttrVariable.Constants.COLOUR + line_end);
+                sb.append(varying + vec4 + VARYING_PREF + AttrVariable.Constants.COLOUR + line_end);
+            }
 
             sb.append(func_sign);
 
@@ -97,7 +141,10 @@ public class Program implements IDisposable {
                         AttrVariable.Constants.ATTR_PREF + AttrVariable.Constants.TEX_COORD + line_end);
             }
 
-            if (usesChannels) {
+            if (vertexChannels) {
+                sb.append(VARYING_PREF + UniformVariable.Constants.CHANNEL + eq +
+                        AttrVariable.Constants.ATTR_PREF + AttrVariable.Constants.CHANNEL + line_end);
+            } else if (usesChannels) {
                 sb.append(VARYING_PREF + UniformVariable.Constants.CHANNEL + eq +
                     UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.CHANNEL);
 
@@ -108,6 +155,11 @@ public class Program implements IDisposable {
                 sb.append(line_end);
             }
 
+            if (vertexColour) {
+                sb.append(VARYING_PREF + AttrVariable.Constants.COLOUR + eq +
+                        AttrVariable.Constants.ATTR_PREF + AttrVariable.Constants.COLOUR + line_end);
+            }
+
             sb.append(pos + eq + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.MVP_MAT);
             if (numShapes > 1) {
                 sb.append("[" + AttrVariable.Constants.MVP_INDEX + "]");
@@ -132,7 +184,9 @@ public class Program implements IDisposable {
                 sb.append(varying + vec4 + VARYING_PREF + UniformVariable.Constants.CHANNEL + line_end);
             }
 
-            if (usesColour) {
+            if (vertexColour) {
+                sb.append(varying + vec4 + VARYING_PREF + AttrVariable.Constants.COLOUR + line_end);
+            } else if (usesColour) {
                 sb.append(uniform + vec4 + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.COLOR + line_end);
             } else if (usesAlpha) {
                 sb.append(uniform + flot + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.ALPHA + line_end);
@@ -143,7 +197,7 @@ public class Program implements IDisposable {
             if (usesColour) {
                 if (usesTexture) {
                     if (textureStencil) {
-                        sb.append(colour + eq + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.COLOR + line_end);
+                        sb.append(colour + eq + colourSource + line_end);
 
                         if (usesChannels) {
                             sb.append(colour + ".a" + eq + colour + ".a" + mult + clamp + "(" + dot + "(" + sampleTexStd
@@ -152,10 +206,10 @@ public class Program implements IDisposable {
                             sb.append(colour + ".a" + eq + colour + ".a" + mult + sampleTexStd + line_end);
                         }
                     } else {
-                        sb.append(colour + eq + sampleTexStd + mult + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.COLOR + line_end);
+                        sb.append(colour + eq + sampleTexStd + mult + colourSource + line_end);
                     }
                 } else {
-                    sb.append(colour + eq + UniformVariable.Constants.UNI_PREF + UniformVariable.Constants.COLOR + line_end);
+                    sb.append(colour + eq + colourSource + line_end);
                 }
             } else if (usesTexture) {
                 if (textureStencil) {
@@ -178,50 +232,39 @@ public class Program implements IDisposable {
 
             String fragShader = sb.toString();
 
-            int arrSize = 1;
+            List<AttrVariable> attrs = new ArrayList<AttrVariable>();
+            attrs.add(AttrVariable.A_Position);
             if (usesTexture) {
-                ++arrSize;
+                attrs.add(AttrVariable.A_TexCoordinate);
             }
             if (numShapes > 1) {
-                ++arrSize;
-            }
-            AttrVariable[] attrs = new AttrVariable[arrSize];
-            arrSize = 0;
-            attrs[arrSize++] = AttrVariable.A_Position;
-            if (usesTexture) {
-                attrs[arrSize++] = AttrVariable.A_TexCoordinate;
-            }
-            if (numShapes > 1) {
-                attrs[arrSize] = AttrVariable.A_MVPMatrixIndex;
-            }
-
-            arrSize = 1;
-            if (usesTexture) {
-                ++arrSize;
+                attrs.add(AttrVariable.A_MVPMatrixIndex);
             }
-            if (usesChannels) {
-                ++arrSize;
+            if (vertexColour) {
+                attrs.add(AttrVariable.A_Colour);
             }
-            if (usesColour || usesAlpha) {
-                ++arrSize;
+            if (vertexChannels) {
+                attrs.add(AttrVariable.A_Channel);
             }
 
-            UniformVariable[] unis = new UniformVariable[arrSize];
-            unis[0] = UniformVariable.U_MVPMatrix;
-            arrSize = 1;
+            List<UniformVariable> unis = new ArrayList<UniformVariable>();
+            unis.add(UniformVariable.U_MVPMatrix);
             if (usesTexture) {
-                unis[arrSize++] = UniformVariable.U_Texture;
+                unis.add(UniformVariable.U_Texture);
             }
-            if (usesChannels) {
-                unis[arrSize++] = UniformVariable.U_ChannelBalance;
+            if (usesChannels && !vertexChannels) {
+                unis.add(UniformVariable.U_ChannelBalance);
             }
-            if (usesColour) {
-                unis[arrSize] = UniformVariable.U_Colour;
-            } else if (usesAlpha) {
-                unis[arrSize] = UniformVariable.U_Alpha;
+            if (!vertexColour) { // Otherwise colour and alpha come from the vertices
+                if (usesColour) {
+                    unis.add(UniformVariable.U_Colour);
+                } else if (usesAlpha) {
+                    unis.add(UniformVariable.U_Alpha);
+                }
             }
 
-            return Manager.get(vertexShader, fragShader, attrs, unis);
+            return Manager.get(vertexShader, fragShader, attrs.toArray(new AttrVariable[attrs.size()]),
+                    unis.toArray(new UniformVariable[unis.size()]));
         }
     }
 
@@ -400,6 +443,47 @@ public class Program implements IDisposable {
         }
     }
 
+    public static class ParticleProgram {
+        private static final AttrVariable[] attrVariables = {
+                AttrVariable.A_Position, AttrVariable.A_TexCoordinate, AttrVariable.A_Colour
+        };
+
+        private static final UniformVariable[] uniVariables = { UniformVariable.U_MVPMatrix, UniformVariable.U_Texture,
+                UniformVariable.U_Alpha };
+
+        private static final String vertexShaderCode =
+                "uniform mat4 u_MVPMatrix;      \n"
+                        + "attribute vec4 a_Position;     \n"     // Per-vertex position (already in the emitter's parent space)
+                        + "attribute vec2 a_TexCoordinate;\n"     // Per-vertex texture coordinate of the particle's frame
+                        + "attribute vec4 a_Colour;       \n"     // Per-vertex colour of the particle
+                        + "varying vec2 v_TexCoordinate;  \n"
+                        + "varying vec4 v_Colour;         \n"
+                        + "void main()                    \n"
+                        + "{                              \n"
+                        + "   v_TexCoordinate = a_TexCoordinate; \n"
+                        + "   v_Colour = a_Colour;        \n"
+                        + "   gl_Position = u_MVPMatrix * a_Position; \n"
+                        + "}                              \n";
+
+        private static final String fragmentShaderCode =
+                "uniform sampler2D u_Texture;       \n"
+                        + "precision mediump float;       \n"
+                        + "varying vec2 v_TexCoordinate;  \n"
+                        + "varying vec4 v_Colour;         \n"
+                        + "uniform float u_Alpha;         \n"
+                        + "void main()                    \n"
+                        + "{                              \n"
+                        + "   gl_FragColor = texture2D(u_Texture, v_TexCoordinate) * v_Colour;\n"
+                        + "   gl_FragColor.a = gl_FragColor.a * u_Alpha;\n"
+                        + "}                             \n";
+
+        private ParticleProgram() {}
+
+        public static Program create() {
+            return Manager.get(vertexShaderCode, fragmentShaderCode, attrVariables, uniVariables);
+        }
+    }
+
     public static class Manager {
         private final static Manager sInst = new Manager();
 
@@ -0,0 +1,706 @@
+package com.nickstephen.gamelib.opengl.shapes;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import com.nickstephen.gamelib.opengl.QuadIndices;
+import com.nickstephen.gamelib.opengl.layout.Container;
+import com.nickstephen.gamelib.opengl.program.AttrVariable;
+import com.nickstephen.gamelib.opengl.program.Program;
+import com.nickstephen.gamelib.opengl.program.UniformVariable;
+import com.nickstephen.gamelib.opengl.textures.Texture;
+import com.nickstephen.gamelib.opengl.textures.TextureRegion;
+import com.nickstephen.gamelib.perf.Profiler;
+import com.nickstephen.gamelib.run.GameLoop;
+import com.nickstephen.gamelib.run.tasking.ITask;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>A shape that emits and draws a large number of textured particles. The state of every particle
+ * (position, velocity, life, rotation, colour and animation frame) is kept in primitive arrays
+ * rather than objects, and all of the emitter's particles are drawn with a single draw call.</p>
+ *
+ * <p>The emitter is also an {@link com.nickstephen.gamelib.run.tasking.ITask}; add it to the game
+ * loop with {@link GameLoop#addTask(com.nickstephen.gamelib.run.tasking.ITask)} to have it simulate
+ * on the game thread every tick. With {@link #setParallelUpdate(boolean)} large emitters split the
+ * integration across a shared pool of worker threads.</p>
+ *
+ * <p>Particles are emitted at the emitter's position and then move independently in the emitter's
+ * parent container, so moving the emitter doesn't drag existing particles with it. The texture is
+ * treated as an atlas of animation frames, either a grid (see the constructor) or arbitrary regions
+ * (see {@link #setFrames(com.nickstephen.gamelib.opengl.textures.TextureRegion[], float)}).</p>
+ *
+ * <p>Times are in milliseconds, speeds in pixels per second and angles in degrees.</p>
+ * @author Nick Stephen
+ */
+public class ParticleEmitter extends Shape implements ITask {
+    /**
+     * The largest number of particles one emitter can hold (the limit of 16 bit indices).
+     */
+    public static final int MAX_PARTICLES = 16383;
+
+    /**
+     * The number of live particles from which a parallel update is actually split across threads.
+     */
+    public static final int PARALLEL_THRESHOLD = 2048;
+
+    private static final int VERTICES_PER_PARTICLE = 4;
+    private static final int FLOATS_PER_VERTEX = 8; // x, y, u, v, r, g, b, a
+    private static final int FLOATS_PER_PARTICLE = VERTICES_PER_PARTICLE * FLOATS_PER_VERTEX;
+    private static final int VERTEX_SIZE = FLOATS_PER_VERTEX * 4;
+    private static final float DEG_TO_RAD = (float) (Math.PI / 180.0);
+
+    private static final int HANDLE_UNSET = -1;
+
+    private static ExecutorService sUpdatePool;
+    private static int sUpdateThreads;
+
+    private static synchronized @NotNull ExecutorService getUpdatePool() {
+        if (sUpdatePool == null) {
+            sUpdateThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            sUpdatePool = Executors.newFixedThreadPool(sUpdateThreads, new ThreadFactory() {
+                private int mCount = 0;
+
+                @Override
+                public synchronized Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r, "Particles-" + (++mCount));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sUpdatePool;
+    }
+
+    private final int mCapacity;
+    private final Random mRandom = new Random();
+
+    // Particle state, indexed by particle (colour has 4 entries per particle)
+    private final float[] mPosX;
+    private final float[] mPosY;
+    private final float[] mVelX;
+    private final float[] mVelY;
+    private final float[] mLife;
+    private final float[] mMaxLife;
+    private final float[] mRotation;
+    private final float[] mSpin;
+    private final float[] mColour;
+    private final int[] mFrame;
+    private final int[] mStartFrame;
+    private int mCount;
+
+    // Emitter settings
+    private float mEmitRate = 0.f;
+    private float mEmitRemainder = 0.f;
+    private float mSpreadX = 0.f;
+    private float mSpreadY = 0.f;
+    private float mMinLife = 1000.f;
+    private float mLifeRange = 0.f;
+    private float mMinSpeed = 0.f;
+    private float mSpeedRange = 0.f;
+    private float mMinAngle = 0.f;
+    private float mAngleRange = 360.f;
+    private float mMinSpin = 0.f;
+    private float mSpinRange = 0.f;
+    private float mAccelX = 0.f;
+    private float mAccelY = 0.f;
+    private float mStartSize = 16.f;
+    private float mEndSize = 16.f;
+    private final float[] mStartColour = new float[] { 1.f, 1.f, 1.f, 1.f };
+    private final float[] mEndColour = new float[] { 1.f, 1.f, 1.f, 1.f };
+    private float[] mFrameUVs; // u1, v1, u2, v2 per frame
+    private float mFrameRate = 0.f;
+    private boolean mRandomStartFrame = false;
+    private boolean mParallel = false;
+
+    private long mLastTime = -1;
+    private boolean mKilled = false;
+
+    // Reused by every parallel update. mChunksPending is guarded by mChunkLock.
+    private ChunkUpdate[] mChunkUpdates;
+    private final Object mChunkLock = new Object();
+    private int mChunksPending;
+
+    // Vertex data is built on the game thread then handed over to the GL thread
+    private final Object mLock = new Object();
+    private float[] mStaging;
+    private float[] mPublished;
+    private int mPublishedCount;
+    private boolean mPublishedDirty = false;
+
+    private final FloatBuffer mVertexBuffer;
+    private int mDrawCount;
+
+    private int mMVPMatrixHandle = HANDLE_UNSET;
+    private int mTextureUniformHandle = HANDLE_UNSET;
+    private int mAlphaHandle = HANDLE_UNSET;
+
+    /**
+     * Constructor.
+     * @param context A context
+     * @param parent The container the particles are drawn in
+     * @param textureFile The filename (in assets) of the particle texture
+     * @param framesX The number of columns of frames in the texture
+     * @param framesY The number of rows of frames in the texture
+     * @param capacity The maximum number of live particles (up to {@link #MAX_PARTICLES})
+     */
+    public ParticleEmitter(@NotNull Context context, @NotNull Container parent, @NotNull String textureFile,
+                           int framesX, int framesY, int capacity) {
+        super(context, parent, Program.ParticleProgram.create());
+
+        if (capacity > MAX_PARTICLES) {
+            Twig.debug("ParticleEmitter", "Capacity " + capacity + " too large, using " + MAX_PARTICLES);
+            capacity = MAX_PARTICLES;
+        }
+        mCapacity = capacity;
+
+        mPosX = new float[capacity];
+        mPosY = new float[capacity];
+        mVelX = new float[capacity];
+        mVelY = new float[capacity];
+        mLife = new float[capacity];
+        mMaxLife = new float[capacity];
+        mRotation = new float[capacity];
+        mSpin = new float[capacity];
+        mColour = new float[capacity * 4];
+        mFrame = new int[capacity];
+        mStartFrame = new int[capacity];
+
+        mStaging = new float[capacity * FLOATS_PER_PARTICLE];
+        mPublished = new float[capacity * FLOATS_PER_PARTICLE];
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity * FLOATS_PER_PARTICLE * 4);
+        buffer.order(ByteOrder.nativeOrder());
+        mVertexBuffer = buffer.asFloatBuffer();
+
+        mTexture = Texture.Manager.get(textureFile, this, context).setTextureDimensions(1, 1);
+
+        setFrameGrid(framesX, framesY);
+    }
+
+    /**
+     * Set the number of particles emitted per second while the emitter is running.
+     * @param perSecond The emission rate. 0 to only emit with {@link #burst(int)}.
+     * @return This object
+     */
+    public ParticleEmitter setEmitRate(float perSecond) {
+        mEmitRate = perSecond;
+        return this;
+    }
+
+    /**
+     * Set the size of the box around the emitter's position that particles are emitted in.
+     * @param width The width of the box (pixels)
+     * @param height The height of the box (pixels)
+     * @return This object
+     */
+    public ParticleEmitter setSpread(float width, float height) {
+        mSpreadX = width;
+        mSpreadY = height;
+        return this;
+    }
+
+    public ParticleEmitter setLife(float min, float max) {
+        mMinLife = min;
+        mLifeRange = max - min;
+        return this;
+    }
+
+    public ParticleEmitter setSpeed(float min, float max) {
+        mMinSpeed = min;
+        mSpeedRange = max - min;
+        return this;
+    }
+
+    /**
+     * Set the range of directions particles are emitted in. 0 is along the positive x-axis and
+     * angles increase anti-clockwise.
+     * @param min The minimum angle (degrees)
+     * @param max The maximum angle (degrees)
+     * @return This object
+     */
+    public ParticleEmitter setDirection(float min, float max) {
+        mMinAngle = min;
+        mAngleRange = max - min;
+        return this;
+    }
+
+    public ParticleEmitter setSpin(float min, float max) {
+        mMinSpin = min;
+        mSpinRange = max - min;
+        return this;
+    }
+
+    /**
+     * Set a constant acceleration applied to every particle, e.g. gravity.
+     * @param x The x acceleration (pixels per second squared)
+     * @param y The y acceleration (pixels per second squared)
+     * @return This object
+     */
+    public ParticleEmitter setAcceleration(float x, float y) {
+        mAccelX = x;
+        mAccelY = y;
+        return this;
+    }
+
+    /**
+     * Set the size of the particles, which is interpolated over each particle's life.
+     * @param start The size when emitted (pixels)
+     * @param end The size when it dies (pixels)
+     * @return This object
+     */
+    public ParticleEmitter setSize(float start, float end) {
+        mStartSize = start;
+        mEndSize = end;
+        return this;
+    }
+
+    /**
+     * Set the colour of the particles, which is interpolated over each particle's life and multiplied
+     * with the texture.
+     * @param start The RGBA colour when emitted
+     * @param end The RGBA colour when it dies
+     * @return This object
+     */
+    public ParticleEmitter setParticleColours(@NotNull float[] start, @NotNull float[] end) {
+        System.arraycopy(start, 0, mStartColour, 0, 4);
+        System.arraycopy(end, 0, mEndColour, 0, 4);
+        return this;
+    }
+
+    /**
+     * Use a grid of equally sized frames in the texture.
+     * @param framesX The number of columns
+     * @param framesY The number of rows
+     * @return This object
+     */
+    public ParticleEmitter setFrameGrid(int framesX, int framesY) {
+        final int count = Math.max(1, framesX * framesY);
+        float[] uvs = new float[count * 4];
+
+        for (int j = 0, c = 0; j < framesY; j++) {
+            for (int i = 0; i < framesX; i++, c += 4) {
+                uvs[c] = i / (float) framesX;
+                uvs[c + 1] = j / (float) framesY;
+                uvs[c + 2] = (i + 1) / (float) framesX;
+                uvs[c + 3] = (j + 1) / (float) framesY;
+            }
+        }
+        if (framesX * framesY <= 0) {
+            uvs[2] = 1.f;
+            uvs[3] = 1.f;
+        }
+
+        mFrameUVs = uvs;
+        return this;
+    }
+
+    /**
+     * Use arbitrary regions of the texture as the frames.
+     * @param regions The region of each frame
+     * @param framesPerSecond How fast the particles animate through the frames. 0 for no animation.
+     * @return This object
+     */
+    public ParticleEmitter setFrames(@NotNull TextureRegion[] regions, float framesPerSecond) {
+        float[] uvs = new float[regions.length * 4];
+
+        for (int i = 0; i < regions.length; i++) {
+            uvs[i * 4] = regions[i].u1;
+            uvs[(i * 4) + 1] = regions[i].v1;
+            uvs[(i * 4) + 2] = regions[i].u2;
+            uvs[(i * 4) + 3] = regions[i].v2;
+        }
+
+        mFrameUVs = uvs;
+        mFrameRate = framesPerSecond;
+        return this;
+    }
+
+    public ParticleEmitter setFrameRate(float framesPerSecond) {
+        mFrameRate = framesPerSecond;
+        return this;
+    }
+
+    /**
+     * Set whether each particle starts on a random frame rather than the first.
+     * @param random True to pick a random start frame
+     * @return This object
+     */
+    public ParticleEmitter setRandomStartFrame(boolean random) {
+        mRandomStartFrame = random;
+        return this;
+    }
+
+    /**
+     * Set whether large emitters (at least {@link #PARALLEL_THRESHOLD} live particles) update their
+     * particles across a shared pool of worker threads. The game thread waits for the workers to
+     * finish so the update is still complete at the end of the tick.
+     * @param parallel True to update in parallel
+     * @return This object
+     */
+    public ParticleEmitter setParallelUpdate(boolean parallel) {
+        mParallel = parallel;
+        return this;
+    }
+
+    /**
+     * Get the number of live particles. Only accurate on the game thread.
+     * @return The number of particles
+     */
+    public int getParticleCount() {
+        return mCount;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Emit a number of particles at once. Must be called from the game thread.
+     * @param count The number of particles to emit
+     */
+    public void burst(int count) {
+        for (int i = 0; i < count && mCount < mCapacity; i++) {
+            spawn();
+        }
+    }
+
+    /**
+     * Remove all of the particles. Must be called from the game thread.
+     */
+    public void clearParticles() {
+        mCount = 0;
+        mEmitRemainder = 0.f;
+        publish();
+    }
+
+    @Override
+    public boolean start() {
+        mKilled = false;
+        mLastTime = -1;
+        return true;
+    }
+
+    @Override
+    public boolean update() {
+        if (mKilled) {
+            return true;
+        }
+
+        final long now = GameLoop.getInstanceUnsafe().getTime();
+        final float dt = mLastTime < 0 ? 0.f : (now - mLastTime);
+        mLastTime = now;
+
+        step(dt);
+        return false;
+    }
+
+    @Override
+    public void end() {
+    }
+
+    @Override
+    public void kill() {
+        mKilled = true;
+    }
+
+    /**
+     * Advance the simulation. Called every tick by {@link #update()}.
+     * @param dt The time since the last step (millis)
+     */
+    public void step(float dt) {
+        final boolean hadParticles = mCount > 0;
+
+        removeDead();
+
+        if (mEmitRate > 0.f) {
+            mEmitRemainder += mEmitRate * dt / 1000.f;
+            while (mEmitRemainder >= 1.f && mCount < mCapacity) {
+                spawn();
+                mEmitRemainder -= 1.f;
+            }
+            if (mCount == mCapacity) {
+                mEmitRemainder = 0.f;
+            }
+        }
+
+        final int count = mCount;
+        if (mParallel && count >= PARALLEL_THRESHOLD) {
+            updateParallel(count, dt);
+        } else {
+            updateRange(0, count, dt);
+        }
+
+        if (count > 0 || hadParticles) {
+            publish();
+        }
+    }
+
+    private void updateParallel(int count, float dt) {
+        final ExecutorService pool = getUpdatePool();
+        final int chunks = sUpdateThreads;
+        final int chunkSize = (count + chunks - 1) / chunks;
+
+        if (mChunkUpdates == null || mChunkUpdates.length != chunks - 1) {
+            mChunkUpdates = new ChunkUpdate[chunks - 1];
+            for (int c = 0; c < mChunkUpdates.length; c++) {
+                mChunkUpdates[c] = new ChunkUpdate();
+            }
+        }
+
+        synchronized (mChunkLock) {
+            mChunksPending = chunks - 1;
+        }
+
+        for (int c = 1; c < chunks; c++) {
+            final ChunkUpdate update = mChunkUpdates[c - 1];
+            update.mFrom = Math.min(count, c * chunkSize);
+            update.mTo = Math.min(count, update.mFrom + chunkSize);
+            update.mDt = dt;
+            pool.execute(update);
+        }
+
+        updateRange(0, Math.min(count, chunkSize), dt); // First chunk on this thread
+
+        // The workers are writing into the staging array, so it can't be published until they've all
+        // finished, even if this thread is interrupted
+        boolean interrupted = false;
+        synchronized (mChunkLock) {
+            while (mChunksPending > 0) {
+                try {
+                    mChunkLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Updates one chunk of particles on the update pool. Reused every step so the parallel update
+     * doesn't allocate.
+     */
+    private class ChunkUpdate implements Runnable {
+        // Set on the game thread before each execute, which publishes them to the worker
+        int mFrom;
+        int mTo;
+        float mDt;
+
+        @Override
+        public void run() {
+            try {
+                updateRange(mFrom, mTo, mDt);
+            } finally {
+                synchronized (mChunkLock) {
+                    if (--mChunksPending == 0) {
+                        mChunkLock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Move, age and build the vertices for a range of particles. Only touches the entries of that
+     * range so separate ranges can be updated at the same time.
+     */
+    private void updateRange(int from, int to, float dt) {
+        final float seconds = dt / 1000.f;
+        final float ax = mAccelX * seconds;
+        final float ay = mAccelY * seconds;
+        final float[] uvs = mFrameUVs;
+        final int frames = uvs.length / 4;
+        final float[] out = mStaging;
+
+        for (int i = from; i < to; i++) {
+            mVelX[i] += ax;
+            mVelY[i] += ay;
+            mPosX[i] += mVelX[i] * seconds;
+            mPosY[i] += mVelY[i] * seconds;
+            mRotation[i] += mSpin[i] * seconds;
+            mLife[i] -= dt;
+
+            int o = i * FLOATS_PER_PARTICLE;
+            if (mLife[i] <= 0.f) {
+                // Removed next step, until then draw nothing
+                for (int k = 0; k < FLOATS_PER_PARTICLE; k++) {
+                    out[o + k] = 0.f;
+                }
+                continue;
+            }
+
+            final float t = 1.f - (mLife[i] / mMaxLife[i]);
+            final int c = i * 4;
+            final float r = mColour[c] = mStartColour[0] + ((mEndColour[0] - mStartColour[0]) * t);
+            final float g = mColour[c + 1] = mStartColour[1] + ((mEndColour[1] - mStartColour[1]) * t);
+            final float b = mColour[c + 2] = mStartColour[2] + ((mEndColour[2] - mStartColour[2]) * t);
+            final float a = mColour[c + 3] = mStartColour[3] + ((mEndColour[3] - mStartColour[3]) * t);
+
+            int frame = mStartFrame[i];
+            if (mFrameRate > 0.f) {
+                frame += (int) ((mMaxLife[i] - mLife[i]) * mFrameRate / 1000.f);
+            }
+            frame = mFrame[i] = frame % frames;
+
+            final float half = (mStartSize + ((mEndSize - mStartSize) * t)) / 2.f;
+            final float angle = mRotation[i] * DEG_TO_RAD;
+            final float cos = (float) Math.cos(angle) * half;
+            final float sin = (float) Math.sin(angle) * half;
+            final float x = mPosX[i];
+            final float y = mPosY[i];
+            final float u1 = uvs[frame * 4], v1 = uvs[(frame * 4) + 1];
+            final float u2 = uvs[(frame * 4) + 2], v2 = uvs[(frame * 4) + 3];
+
+            // Bottom left, bottom right, top right, top left
+            o = putVertex(out, o, x - cos + sin, y - sin - cos, u1, v2, r, g, b, a);
+            o = putVertex(out, o, x + cos + sin, y + sin - cos, u2, v2, r, g, b, a);
+            o = putVertex(out, o, x + cos - sin, y + sin + cos, u2, v1, r, g, b, a);
+            putVertex(out, o, x - cos - sin, y - sin + cos, u1, v1, r, g, b, a);
+        }
+    }
+
+    private static int putVertex(float[] out, int o, float x, float y, float u, float v, float r, float g,
+                                 float b, float a) {
+        out[o] = x;
+        out[o + 1] = y;
+        out[o + 2] = u;
+        out[o + 3] = v;
+        out[o + 4] = r;
+        out[o + 5] = g;
+        out[o + 6] = b;
+        out[o + 7] = a;
+        return o + FLOATS_PER_VERTEX;
+    }
+
+    private void spawn() {
+        final int i = mCount++;
+        final Random random = mRandom;
+
+        mPosX[i] = getX() + ((random.nextFloat() - 0.5f) * mSpreadX);
+        mPosY[i] = getY() + ((random.nextFloat() - 0.5f) * mSpreadY);
+
+        final float angle = (mMinAngle + (random.nextFloat() * mAngleRange)) * DEG_TO_RAD;
+        final float speed = mMinSpeed + (random.nextFloat() * mSpeedRange);
+        mVelX[i] = (float) Math.cos(angle) * speed;
+        mVelY[i] = (float) Math.sin(angle) * speed;
+
+        mLife[i] = mMaxLife[i] = Math.max(1.f, mMinLife + (random.nextFloat() * mLifeRange));
+        mRotation[i] = 0.f;
+        mSpin[i] = mMinSpin + (random.nextFloat() * mSpinRange);
+        mStartFrame[i] = mRandomStartFrame ? random.nextInt(mFrameUVs.length / 4) : 0;
+    }
+
+    /**
+     * Swap dead particles with the last live one.
+     */
+    private void removeDead() {
+        for (int i = mCount - 1; i >= 0; --i) {
+            if (mLife[i] <= 0.f) {
+                final int last = --mCount;
+                if (i != last) {
+                    mPosX[i] = mPosX[last];
+                    mPosY[i] = mPosY[last];
+                    mVelX[i] = mVelX[last];
+                    mVelY[i] = mVelY[last];
+                    mLife[i] = mLife[last];
+                    mMaxLife[i] = mMaxLife[last];
+                    mRotation[i] = mRotation[last];
+                    mSpin[i] = mSpin[last];
+                    System.arraycopy(mColour, last * 4, mColour, i * 4, 4);
+                    mFrame[i] = mFrame[last];
+                    mStartFrame[i] = mStartFrame[last];
+                }
+            }
+        }
+    }
+
+    /**
+     * Hand the vertices built this step over to the GL thread.
+     */
+    private void publish() {
+        synchronized (mLock) {
+            float[] tmp = mPublished;
+            mPublished = mStaging;
+            mStaging = tmp;
+            mPublishedCount = mCount;
+            mPublishedDirty = true;
+        }
+
+        invalidate();
+    }
+
+    @Override
+    public void draw(@NotNull float[] vpMatrix) {
+        final long start = Profiler.start();
+
+        synchronized (mLock) {
+            if (mPublishedDirty) {
+                mVertexBuffer.clear();
+                mVertexBuffer.put(mPublished, 0, mPublishedCount * FLOATS_PER_PARTICLE);
+                mVertexBuffer.flip();
+                mDrawCount = mPublishedCount;
+                mPublishedDirty = false;
+            }
+        }
+
+        if (mDrawCount == 0) {
+            return;
+        }
+
+        final int texId = getTextureId();
+        if (texId == Texture.TEX_ID_UNASSIGNED) {
+            invalidate(); // Not loaded yet
+            Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
+            return;
+        }
+
+        final int program = mProgram.getHandle();
+        GLES20.glUseProgram(program);
+
+        if (mMVPMatrixHandle == HANDLE_UNSET) {
+            mMVPMatrixHandle = GLES20.glGetUniformLocation(program, UniformVariable.U_MVPMatrix.getName());
+            mTextureUniformHandle = GLES20.glGetUniformLocation(program, UniformVariable.U_Texture.getName());
+            mAlphaHandle = GLES20.glGetUniformLocation(program, UniformVariable.U_Alpha.getName());
+        }
+        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, vpMatrix, 0);
+        GLES20.glUniform1f(mAlphaHandle, getAlpha());
+
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texId);
+        GLES20.glUniform1i(mTextureUniformHandle, 0);
+
+        final int position = AttrVariable.A_Position.getHandle();
+        final int texCoord = AttrVariable.A_TexCoordinate.getHandle();
+        final int colour = AttrVariable.A_Colour.getHandle();
+
+        mVertexBuffer.position(0);
+        GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, VERTEX_SIZE, mVertexBuffer);
+        GLES20.glEnableVertexAttribArray(position);
+        mVertexBuffer.position(2);
+        GLES20.glVertexAttribPointer(texCoord, 2, GLES20.GL_FLOAT, false, VERTEX_SIZE, mVertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoord);
+        mVertexBuffer.position(4);
+        GLES20.glVertexAttribPointer(colour, 4, GLES20.GL_FLOAT, false, VERTEX_SIZE, mVertexBuffer);
+        GLES20.glEnableVertexAttribArray(colour);
+
+        QuadIndices.draw(mDrawCount);
+
+        GLES20.glDisableVertexAttribArray(texCoord);
+        GLES20.glDisableVertexAttribArray(colour);
+
+        Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
+    }
+}
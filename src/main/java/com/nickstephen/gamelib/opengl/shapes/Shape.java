@@ -56,6 +56,7 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
 
     private float mAlpha = 1.0f;
     private float mAngle;
+    private boolean mHasColour;
 
     protected Bounds mBoundsChecker;
 
@@ -116,6 +117,8 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
     public void setAlpha(float alpha) {
         mAlpha = alpha;
         mColour[3] = alpha;
+
+        invalidate();
     }
 
     /**
@@ -134,6 +137,7 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
         mAngle = angle;
 
         mModelMatrixInvalidated = true;
+        invalidate();
     }
 
     public @Nullable float[] getChannel() {
@@ -156,6 +160,15 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
         return mColour;
     }
 
+    /**
+     * Check whether the shape has been given a colour with one of the setColour methods. Until it
+     * has, {@link #getColour()} is transparent black apart from the alpha.
+     * @return True if a colour has been set, false otherwise
+     */
+    public boolean hasColour() {
+        return mHasColour;
+    }
+
     /**
      * Set the colour to be used with this shape. The argument must be non-null and of length 4
      * (at the moment).
@@ -167,6 +180,9 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
         }
 
         System.arraycopy(colour, 0, mColour, 0, 4);
+        mHasColour = true;
+
+        invalidate();
     }
 
     /**
@@ -182,6 +198,9 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
         mColour[1] = g;
         mColour[2] = b;
         mColour[3] = a;
+        mHasColour = true;
+
+        invalidate();
     }
 
     /**
@@ -191,6 +210,10 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
     public void dispose() {
         mProgram.dispose();
 
+        if (mVertices != null) {
+            mVertices.release();
+        }
+
         if (mTexture != null) {
             mTexture.dispose();
         }
@@ -246,6 +269,19 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
         mBoundsChecker.setY(newY);
 
         mModelMatrixInvalidated = true;
+        invalidate();
+    }
+
+    /**
+     * Signal that the way this shape is drawn has changed, so that any cached container above it
+     * (see {@link com.nickstephen.gamelib.opengl.layout.Container#setCacheEnabled(boolean)}) is
+     * rendered again. Called automatically by the setters of this class; call it yourself from any
+     * other method that changes the shape's appearance.
+     */
+    public void invalidate() {
+        if (mParent != null) {
+            mParent.onChildInvalidated(this);
+        }
     }
 
     public boolean giveGestureEvent(@NotNull GestureEvent e) {
@@ -364,11 +400,17 @@ public abstract class Shape implements IGestures, IDraw, IDisposable {
         return mProgram;
     }
 
+    /**
+     * Get the bounds of this shape, as used for touch handling and collision detection.
+     * @return The bounds
+     */
+    public @NotNull Bounds getBounds() {
+        return mBoundsChecker;
+    }
+
     public void removeFromParent() {
         if (mParent != null) {
-            synchronized (mParent.getChildren()) {
-                mParent.getChildren().remove(this);
-            }
+            mParent.removeChild(this);
         }
     }
 
@@ -1,7 +1,6 @@
 package com.nickstephen.gamelib.opengl.shapes;
 
 import android.content.Context;
-import android.opengl.GLES20;
 
 import com.nickstephen.gamelib.opengl.textures.TextureRegion;
 import com.nickstephen.gamelib.opengl.bounds.Quadrilateral;
@@ -24,12 +23,11 @@ public class Sprite extends Shape {
     public Sprite(@NotNull Context context, @NotNull Container parent, @NotNull String textureFile, @NotNull Program program, float width, float height) {
         super(context, parent, program);
 
-        mVertices = new Vertices(this, 4, 6, GLES20.GL_TRIANGLES);
+        mVertices = new Vertices(this, 1);
         mBoundsChecker = new Quadrilateral(this).setWidth(width).setHeight(height);
 
         mTexture = Texture.Manager.get(textureFile, this, context).setTextureDimensions(1, 1);
 
-        setIndices();
         setVertices();
     }
 
@@ -37,26 +35,14 @@ public class Sprite extends Shape {
                      float width, float height, int spritesX, int spritesY) {
         super(context, parent, Program.SpriteProgram.create());
 
-        mVertices = new Vertices(this, 4, 6, GLES20.GL_TRIANGLES);
+        mVertices = new Vertices(this, 1);
         mBoundsChecker = new Quadrilateral(this).setWidth(width).setHeight(height);
 
         mTexture = Texture.Manager.get(textureFile, this, context).setTextureDimensions(spritesX, spritesY);
 
-        setIndices();
         setVertices();
     }
 
-    protected void setIndices() {
-        short[] indices = new short[6];
-
-        indices[1] = 2;
-        indices[2] = 1;
-        indices[4] = 3;
-        indices[5] = 2;
-
-        mVertices.setIndices(indices, 0, 6);
-    }
-
     protected void setVertices() {
         float[] vertexMatrix = new float[NUM_SIDES * Vertices.POSITION_CNT_2D];
 
@@ -88,7 +74,8 @@ public class Sprite extends Shape {
         coords[6] = region.u1;        // Add U for Vertex 3
         coords[7] = region.v2;          // Add V for Vertex 3
 
-        mVertices.resetFloatBuffer();
+        mVertices.updateTextureCoords(0, NUM_SIDES);
+        invalidate();
     }
 
     TextureRegion getCurrentTextureRegion() {
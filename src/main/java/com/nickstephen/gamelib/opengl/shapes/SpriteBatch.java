@@ -17,9 +17,22 @@ import java.util.List;
  */
 public class SpriteBatch extends Shape {
     protected final List<Sprite> mSprites;
+    private final float[] mScratchColour = new float[4];
 
     public SpriteBatch(@NotNull Context context, @NotNull Container parent) {
-        super(context, parent, Program.TestTextProgram.create());
+        this(context, parent, Program.TestTextProgram.create());
+    }
+
+    /**
+     * Constructor for a batch drawn with a particular program. Use a program with per-vertex colours
+     * (e.g. {@code ProgramCreator.create(true, false, false, false, SpriteHelper.MAX_SPRITES, false,
+     * ProgramCreator.VERTEX_COLOUR)}) to let sprites with different tints and alphas share the batch.
+     * @param context A context
+     * @param parent The container to draw the batch in
+     * @param program The program
+     */
+    public SpriteBatch(@NotNull Context context, @NotNull Container parent, @NotNull Program program) {
+        super(context, parent, program);
 
         mVertices = new SpriteHelper(this);
         mBoundsChecker = new Multiple<Quadrilateral>(this);
@@ -32,11 +45,40 @@ public class SpriteBatch extends Shape {
         ((Multiple<Quadrilateral>) mBoundsChecker).addBound(quadBounds);
 
         ((SpriteHelper) mVertices).addSpriteToBatch(0, 0, quadBounds.getWidth(), quadBounds.getHeight(),
-                sprite.getCurrentTextureRegion(), sprite.getModelMatrix());
+                sprite.getCurrentTextureRegion(), sprite.getModelMatrix(), getVertexColour(sprite));
 
         mSprites.add(sprite);
     }
 
+    /**
+     * Copy the current colours and alphas of the sprites into the batch, without rebuilding it.
+     * Only has an effect with a per-vertex colour program.
+     */
+    public void refreshColours() {
+        SpriteHelper helper = (SpriteHelper) mVertices;
+        for (int i = mSprites.size() - 1; i >= 0; --i) {
+            helper.setSpriteColour(i, getVertexColour(mSprites.get(i)));
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Get the colour a sprite's vertices should have: its colour if it's been given one, otherwise
+     * white with its alpha (so untinted sprites draw as they would on their own).
+     * @param sprite The sprite
+     * @return The colour, which may be a scratch array that's only good until the next call
+     */
+    private @NotNull float[] getVertexColour(@NotNull Sprite sprite) {
+        if (sprite.hasColour()) {
+            return sprite.getColour();
+        }
+
+        mScratchColour[0] = mScratchColour[1] = mScratchColour[2] = 1.f;
+        mScratchColour[3] = sprite.getAlpha();
+        return mScratchColour;
+    }
+
     public void clear(boolean alsoDispose) {
         if (alsoDispose) {
             for (int i = mSprites.size() - 1; i >= 0; --i) {
@@ -45,11 +87,13 @@ public class SpriteBatch extends Shape {
         }
 
         mSprites.clear();
+        ((Multiple<Quadrilateral>) mBoundsChecker).clear();
         ((SpriteHelper) mVertices).reset();
     }
 
     public void refresh() {
         ((SpriteHelper) mVertices).finishAddingSprites();
+        invalidate();
     }
 
     @Override
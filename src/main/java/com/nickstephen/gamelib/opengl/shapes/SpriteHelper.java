@@ -1,13 +1,14 @@
 package com.nickstephen.gamelib.opengl.shapes;
 
-import android.opengl.GLES20;
 import android.opengl.Matrix;
 
+import com.nickstephen.gamelib.opengl.program.AttrVariable;
 import com.nickstephen.gamelib.opengl.program.Program;
 import com.nickstephen.gamelib.opengl.textures.TextureRegion;
 import com.nickstephen.lib.Twig;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * <p>An extension to {@link Vertices} that is used just for batch rendering
@@ -21,9 +22,9 @@ import org.jetbrains.annotations.NotNull;
 public class SpriteHelper extends Vertices {
     public static final int MAX_SPRITES = 24;
 
-    private static final int INDICES_PER_SPRITE = 6;
     private static final int MAT4_SIZE = 16;
     private static final int VERTICES_PER_SPRITE = 4;
+    private static final float[] WHITE = new float[] { 1.f, 1.f, 1.f, 1.f };
 
     private int mMaxSprites;
     private float[] mModelMatrices;
@@ -45,10 +46,7 @@ public class SpriteHelper extends Vertices {
      * @param maxSprites The maximum number of sprites to render at once
      */
     public SpriteHelper(@NotNull Shape shape, int maxSprites) {
-        super(shape,
-                VERTICES_PER_SPRITE * ((maxSprites > MAX_SPRITES) ? MAX_SPRITES : maxSprites),
-                INDICES_PER_SPRITE * ((maxSprites > MAX_SPRITES) ? MAX_SPRITES : maxSprites),
-                GLES20.GL_TRIANGLES);
+        super(shape, (maxSprites > MAX_SPRITES) ? MAX_SPRITES : maxSprites, compactLayout(shape.getProgram()));
 
         if (!mUsesMVPIndex || !mUsesTextureCoords || !mUsesTexture) {
             throw new IllegalArgumentException("Program must use MVP indices, texture coordinates and textures to use SpriteHelper!");
@@ -62,19 +60,62 @@ public class SpriteHelper extends Vertices {
         mTexCoords = new float[mNumVertices * Vertices.TEXCOORD_CNT];
         mMVPIndices = new float[mNumVertices * VERTICES_PER_SPRITE];
 
-        setupIndices();
+        mScratch = new float[MAT4_SIZE * mMaxSprites];
 
-        if ((mNumSprites * MAT4_SIZE) > mNumVertices * mVertexStride) {
-            mScratch = new float[mNumSprites * MAT4_SIZE];
+        setupVertexArrays();
+    }
+
+    /**
+     * The vertex layout sprite batches use. Texture coordinates are normalised shorts and MVP
+     * indices are bytes (there are at most {@link #MAX_SPRITES} matrices). Positions are half
+     * floats when the GPU supports them, since they're offsets within the batch and don't need much
+     * precision; that makes a vertex 12 bytes instead of 20. Without half floats it's 16.
+     * @param program The batch's program
+     * @return A new layout
+     */
+    public static @NotNull VertexLayout compactLayout(@NotNull Program program) {
+        VertexLayout layout = new VertexLayout()
+                .add(AttrVariable.A_Position, POSITION_CNT_2D,
+                        VertexLayout.supportsHalfFloat() ? VertexLayout.Format.HALF_FLOAT : VertexLayout.Format.FLOAT)
+                .add(AttrVariable.A_TexCoordinate, TEXCOORD_CNT, VertexLayout.Format.USHORT_NORM);
+
+        if (program.usesVariable(AttrVariable.A_MVPMatrixIndex)) {
+            layout.add(AttrVariable.A_MVPMatrixIndex, MVP_MATRIX_INDEX_CNT, VertexLayout.Format.UBYTE);
         }
+        if (program.usesVariable(AttrVariable.A_Colour)) {
+            layout.add(AttrVariable.A_Colour, COLOUR_CNT, VertexLayout.Format.UBYTE_NORM);
+        }
+        if (program.usesVariable(AttrVariable.A_Channel)) {
+            layout.add(AttrVariable.A_Channel, CHANNEL_CNT, VertexLayout.Format.UBYTE_NORM);
+        }
+
+        return layout;
     }
 
     protected SpriteHelper(@NotNull SpriteHelper prev, @NotNull Program program) {
-        super(prev, program);
+        super(prev, program, prev.mLayout.matches(program) ? prev.mLayout : compactLayout(program));
 
         mNumSprites = prev.mNumSprites;
         mModelMatrices = prev.mModelMatrices;
         mMaxSprites = prev.mMaxSprites;
+
+        setupVertexArrays();
+    }
+
+    /**
+     * Create the per-vertex colour and channel arrays if the layout has them and they don't exist
+     * yet. Colours start white and opaque.
+     */
+    private void setupVertexArrays() {
+        if (mColours == null && mLayout.find(AttrVariable.A_Colour) != null) {
+            mColours = new float[mNumVertices * COLOUR_CNT];
+            for (int i = 0; i < mColours.length; i++) {
+                mColours[i] = 1.f;
+            }
+        }
+        if (mChannels == null && mLayout.find(AttrVariable.A_Channel) != null) {
+            mChannels = new float[mNumVertices * CHANNEL_CNT];
+        }
     }
 
     @NotNull
@@ -91,6 +132,7 @@ public class SpriteHelper extends Vertices {
 
         if (maxSprites * MAT4_SIZE > mModelMatrices.length) {
             mModelMatrices = new float[MAT4_SIZE * maxSprites];
+            mScratch = new float[MAT4_SIZE * maxSprites];
         }
 
         mMaxSprites = maxSprites;
@@ -107,6 +149,22 @@ public class SpriteHelper extends Vertices {
      */
     public void addSpriteToBatch(float x, float y, float width, float height, TextureRegion region,
                                  float[] modelMatrix) {
+        addSpriteToBatch(x, y, width, height, region, modelMatrix, null);
+    }
+
+    /**
+     * Add a sprite to be displayed with its own colour. The colour is only used if the program takes
+     * per-vertex colours (see {@link com.nickstephen.gamelib.opengl.program.Program.ProgramCreator#VERTEX_COLOUR}).
+     * @param x The centre x offset of this sprite
+     * @param y The centre y offset of this sprite
+     * @param width The width of the sprite
+     * @param height The height of the sprite
+     * @param region The region of the texture associated with this sprite
+     * @param modelMatrix The model matrix to apply to this sprite
+     * @param colour The RGBA colour (alpha included) of the sprite, or null for opaque white
+     */
+    public void addSpriteToBatch(float x, float y, float width, float height, TextureRegion region,
+                                 float[] modelMatrix, @Nullable float[] colour) {
         if (mNumSprites >= mMaxSprites) {
             Twig.debug("SpriteHelper", "Max sprites reached, ignoring this new one");
             return;
@@ -151,9 +209,59 @@ public class SpriteHelper extends Vertices {
         index = mNumSprites * MAT4_SIZE;
         System.arraycopy(modelMatrix, 0, mModelMatrices, index, MAT4_SIZE);
 
+        if (mColours != null) {
+            writeQuad(mColours, mNumSprites, colour != null ? colour : WHITE);
+        }
+
         mNumSprites++;
     }
 
+    /**
+     * Change the colour of a sprite that's already in the batch. Only that sprite's vertices are
+     * rewritten. Does nothing unless the program takes per-vertex colours.
+     * @param sprite The index of the sprite in the batch
+     * @param colour The RGBA colour (alpha included)
+     */
+    public void setSpriteColour(int sprite, @NotNull float[] colour) {
+        if (sprite < 0 || sprite >= mNumSprites) {
+            Twig.debug("SpriteHelper", "No sprite " + sprite + " in the batch, ignoring colour");
+            return;
+        }
+
+        if (mColours != null) {
+            writeQuad(mColours, sprite, colour);
+            updateColours(sprite * VERTICES_PER_SPRITE, VERTICES_PER_SPRITE);
+        }
+    }
+
+    /**
+     * Set the channel balance of a sprite in the batch. Only that sprite's vertices are rewritten.
+     * Does nothing unless the program takes per-vertex channels (see
+     * {@link com.nickstephen.gamelib.opengl.program.Program.ProgramCreator#VERTEX_CHANNELS}).
+     * @param sprite The index of the sprite in the batch
+     * @param channel The weights of the texture's RGBA channels
+     */
+    public void setSpriteChannel(int sprite, @NotNull float[] channel) {
+        if (sprite < 0 || sprite >= mNumSprites) {
+            Twig.debug("SpriteHelper", "No sprite " + sprite + " in the batch, ignoring channel");
+            return;
+        }
+
+        if (mChannels != null) {
+            writeQuad(mChannels, sprite, channel);
+            updateChannels(sprite * VERTICES_PER_SPRITE, VERTICES_PER_SPRITE);
+        }
+    }
+
+    /**
+     * Copy a 4 component value to each vertex of a sprite.
+     */
+    private static void writeQuad(float[] dst, int sprite, float[] value) {
+        for (int v = 0, i = sprite * VERTICES_PER_SPRITE * 4; v < VERTICES_PER_SPRITE; v++, i += 4) {
+            System.arraycopy(value, 0, dst, i, 4);
+        }
+    }
+
     /**
      * Overridden in order to generate all the MVP matrices associated with the sprites given a
      * view/projection matrix.
@@ -185,24 +293,4 @@ public class SpriteHelper extends Vertices {
     public void reset() {
         mNumSprites = 0;
     }
-
-    /**
-     * Convenience method for setting up the indices. Should only be called from the constructor.
-     */
-    private void setupIndices() {
-        int len = INDICES_PER_SPRITE * mMaxSprites;
-        short[] indices = new short[len];
-
-        short j = 0;                                    // Counter
-        for ( int i = 0; i < len; i+= INDICES_PER_SPRITE, j += VERTICES_PER_SPRITE )  {  // FOR Each Index Set (Per Sprite)
-            indices[i + 0] = (short)( j + 0 );           // Calculate Index 0
-            indices[i + 1] = (short)( j + 1 );           // Calculate Index 1
-            indices[i + 2] = (short)( j + 2 );           // Calculate Index 2
-            indices[i + 3] = (short)( j + 2 );           // Calculate Index 3
-            indices[i + 4] = (short)( j + 3 );           // Calculate Index 4
-            indices[i + 5] = (short)( j + 0 );           // Calculate Index 5
-        }
-
-        setIndices(indices, 0, len);
-    }
 }
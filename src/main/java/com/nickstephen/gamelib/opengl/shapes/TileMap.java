@@ -0,0 +1,495 @@
+package com.nickstephen.gamelib.opengl.shapes;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.os.Build;
+
+import com.nickstephen.gamelib.opengl.QuadIndices;
+import com.nickstephen.gamelib.opengl.bounds.Quadrilateral;
+import com.nickstephen.gamelib.opengl.layout.Container;
+import com.nickstephen.gamelib.opengl.program.AttrVariable;
+import com.nickstephen.gamelib.opengl.program.Program;
+import com.nickstephen.gamelib.opengl.program.UniformVariable;
+import com.nickstephen.gamelib.opengl.textures.Texture;
+import com.nickstephen.gamelib.opengl.textures.TextureRegion;
+import com.nickstephen.gamelib.perf.Profiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * <p>A shape that draws a large grid of tiles from a texture atlas. The map is split into chunks of
+ * {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} tiles, each with its own static vertex buffer, so a frame
+ * only costs one draw call per chunk that's actually on screen. Chunks are built the first time they
+ * become visible and rebuilt only when one of their tiles changes. The chunks are drawn with the
+ * shared {@link com.nickstephen.gamelib.opengl.QuadIndices}.</p>
+ *
+ * <p>The map is centred on the shape's position with row 0 at the top and column 0 on the left.
+ * Culling is done against the screen box of the parent container (taking its scrolling into account)
+ * and ignores the map's angle, so tile maps shouldn't be rotated.</p>
+ *
+ * <p>Vertex buffer objects need API 9. On older devices each chunk keeps its vertices in a client
+ * side buffer instead. Call {@link #invalidateAll()} after the GL context is lost so the buffers are
+ * recreated.</p>
+ * @author Nick Stephen
+ */
+public class TileMap extends Shape {
+    /**
+     * The width and height of a chunk (tiles).
+     */
+    public static final int CHUNK_SIZE = 32;
+
+    /**
+     * The tile value of an empty cell.
+     */
+    public static final short EMPTY = -1;
+
+    private static final int TILES_PER_CHUNK = CHUNK_SIZE * CHUNK_SIZE;
+    private static final int FLOATS_PER_VERTEX = 4; // x, y, u, v
+    private static final int FLOATS_PER_TILE = FLOATS_PER_VERTEX * 4;
+    private static final int VERTEX_SIZE = FLOATS_PER_VERTEX * 4;
+
+    private static final boolean USE_VBOS = Build.VERSION.SDK_INT >= 9;
+    private static final int HANDLE_UNSET = -1;
+
+    private final int mColumns;
+    private final int mRows;
+    private final float mTileWidth;
+    private final float mTileHeight;
+    private final short[] mTiles;
+
+    private final int mChunksX;
+    private final int mChunksY;
+    private final boolean[] mChunkDirty;
+    private final int[] mChunkBuffers;     // VBO handles (0 = not created)
+    private final FloatBuffer[] mChunkVertices; // Client side vertices when VBOs aren't available
+    private final int[] mChunkTiles;       // Number of non-empty tiles in each chunk as of the last build
+
+    private float[] mFrameUVs; // u1, v1, u2, v2 per atlas region
+    private float[] mScratch4 = new float[4];
+    private final float[] mMVPMatrix = new float[16];
+
+    // Shared by all chunks, used only on the GL thread
+    private float[] mBuildScratch;
+    private FloatBuffer mBuildBuffer;
+
+    private int mMVPMatrixHandle = HANDLE_UNSET;
+    private int mTextureUniformHandle = HANDLE_UNSET;
+    private int mAlphaHandle = HANDLE_UNSET;
+
+    private int mLastDrawCalls;
+
+    /**
+     * Constructor. All tiles start empty.
+     * @param context A context
+     * @param parent The container to draw the map in
+     * @param atlasFile The filename (in assets) of the tile atlas texture
+     * @param atlasX The number of columns of tiles in the atlas
+     * @param atlasY The number of rows of tiles in the atlas
+     * @param columns The width of the map (tiles)
+     * @param rows The height of the map (tiles)
+     * @param tileWidth The width of a tile (pixels)
+     * @param tileHeight The height of a tile (pixels)
+     */
+    public TileMap(@NotNull Context context, @NotNull Container parent, @NotNull String atlasFile,
+                   int atlasX, int atlasY, int columns, int rows, float tileWidth, float tileHeight) {
+        super(context, parent, Program.SpriteProgram.create());
+
+        mColumns = columns;
+        mRows = rows;
+        mTileWidth = tileWidth;
+        mTileHeight = tileHeight;
+        mTiles = new short[columns * rows];
+        for (int i = 0; i < mTiles.length; i++) {
+            mTiles[i] = EMPTY;
+        }
+
+        mChunksX = (columns + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        mChunksY = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final int chunks = mChunksX * mChunksY;
+        mChunkDirty = new boolean[chunks];
+        mChunkBuffers = new int[chunks];
+        mChunkVertices = new FloatBuffer[chunks];
+        mChunkTiles = new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            mChunkDirty[i] = true;
+        }
+
+        mBoundsChecker = new Quadrilateral(this).setWidth(columns * tileWidth).setHeight(rows * tileHeight);
+
+        mTexture = Texture.Manager.get(atlasFile, this, context).setTextureDimensions(1, 1);
+        setAtlasGrid(atlasX, atlasY);
+    }
+
+    /**
+     * Use a grid of equally sized tiles in the atlas. Tile values index the grid left to right, top
+     * to bottom.
+     * @param atlasX The number of columns
+     * @param atlasY The number of rows
+     * @return This object
+     */
+    public TileMap setAtlasGrid(int atlasX, int atlasY) {
+        float[] uvs = new float[Math.max(1, atlasX * atlasY) * 4];
+
+        for (int j = 0, c = 0; j < atlasY; j++) {
+            for (int i = 0; i < atlasX; i++, c += 4) {
+                uvs[c] = i / (float) atlasX;
+                uvs[c + 1] = j / (float) atlasY;
+                uvs[c + 2] = (i + 1) / (float) atlasX;
+                uvs[c + 3] = (j + 1) / (float) atlasY;
+            }
+        }
+
+        mFrameUVs = uvs;
+        rebuildAll();
+        return this;
+    }
+
+    /**
+     * Use arbitrary regions of the atlas as the tiles.
+     * @param regions The region of each tile value
+     * @return This object
+     */
+    public TileMap setAtlasRegions(@NotNull TextureRegion[] regions) {
+        float[] uvs = new float[regions.length * 4];
+
+        for (int i = 0; i < regions.length; i++) {
+            uvs[i * 4] = regions[i].u1;
+            uvs[(i * 4) + 1] = regions[i].v1;
+            uvs[(i * 4) + 2] = regions[i].u2;
+            uvs[(i * 4) + 3] = regions[i].v2;
+        }
+
+        mFrameUVs = uvs;
+        rebuildAll();
+        return this;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    /**
+     * Get the tile at a cell.
+     * @param column The column of the cell
+     * @param row The row of the cell
+     * @return The tile value, or {@link #EMPTY}
+     */
+    public short getTile(int column, int row) {
+        return mTiles[(row * mColumns) + column];
+    }
+
+    /**
+     * Set the tile at a cell. Only the chunk containing the cell is rebuilt.
+     * @param column The column of the cell
+     * @param row The row of the cell
+     * @param tile The tile value (index into the atlas), or {@link #EMPTY}
+     */
+    public void setTile(int column, int row, int tile) {
+        synchronized (mTiles) {
+            mTiles[(row * mColumns) + column] = (short) tile;
+            mChunkDirty[((row / CHUNK_SIZE) * mChunksX) + (column / CHUNK_SIZE)] = true;
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Set every tile of the map at once.
+     * @param tiles The tile values, row by row from the top. Must be columns * rows long.
+     */
+    public void setTiles(@NotNull short[] tiles) {
+        if (tiles.length != mTiles.length) {
+            throw new IllegalArgumentException("Invalid tile array size!");
+        }
+
+        synchronized (mTiles) {
+            System.arraycopy(tiles, 0, mTiles, 0, tiles.length);
+        }
+        rebuildAll();
+    }
+
+    /**
+     * Get the column of the cell at a position.
+     * @param x The x position, in the same coordinates as the map's position
+     * @return The column, which may be outside of the map
+     */
+    public int getColumnAt(float x) {
+        return (int) Math.floor((x - getX() + (mColumns * mTileWidth / 2.f)) / mTileWidth);
+    }
+
+    /**
+     * Get the row of the cell at a position.
+     * @param y The y position, in the same coordinates as the map's position
+     * @return The row, which may be outside of the map
+     */
+    public int getRowAt(float y) {
+        return (int) Math.floor(((mRows * mTileHeight / 2.f) - (y - getY())) / mTileHeight);
+    }
+
+    /**
+     * Mark every chunk as needing to be rebuilt. The chunks keep their vertex buffers, which are
+     * filled again as they're drawn.
+     */
+    private void rebuildAll() {
+        synchronized (mTiles) {
+            for (int i = 0; i < mChunkDirty.length; i++) {
+                mChunkDirty[i] = true;
+            }
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Mark every chunk as needing to be rebuilt and forget the vertex buffers. Call after the GL
+     * context has been lost (the buffers went with it).
+     */
+    public void invalidateAll() {
+        synchronized (mTiles) {
+            for (int i = 0; i < mChunkDirty.length; i++) {
+                mChunkDirty[i] = true;
+                mChunkBuffers[i] = 0;
+                mChunkVertices[i] = null;
+            }
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Get the number of chunks that were drawn in the last frame.
+     * @return The number of draw calls
+     */
+    public int getLastDrawCalls() {
+        return mLastDrawCalls;
+    }
+
+    @Override
+    public void draw(@NotNull float[] vpMatrix) {
+        final long start = Profiler.start();
+        mLastDrawCalls = 0;
+
+        final int texId = getTextureId();
+        if (texId == Texture.TEX_ID_UNASSIGNED) {
+            invalidate(); // Not loaded yet
+            Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
+            return;
+        }
+
+        // Work out which chunks overlap the parent's screen box, in map coordinates (origin at the
+        // top left corner of the map, y down)
+        final float mapLeft = getX() - (mColumns * mTileWidth / 2.f);
+        final float mapTop = getY() + (mRows * mTileHeight / 2.f);
+        int c0 = 0, c1 = mChunksX - 1, r0 = 0, r1 = mChunksY - 1;
+
+        Container parent = getParent();
+        if (parent != null) {
+            final float viewX = -parent.getX();
+            final float viewY = -parent.getY();
+            final float halfW = parent.getScreenWidth() / 2.f;
+            final float halfH = parent.getScreenHeight() / 2.f;
+            final float chunkW = CHUNK_SIZE * mTileWidth;
+            final float chunkH = CHUNK_SIZE * mTileHeight;
+
+            c0 = Math.max(c0, (int) Math.floor((viewX - halfW - mapLeft) / chunkW));
+            c1 = Math.min(c1, (int) Math.floor((viewX + halfW - mapLeft) / chunkW));
+            r0 = Math.max(r0, (int) Math.floor((mapTop - (viewY + halfH)) / chunkH));
+            r1 = Math.min(r1, (int) Math.floor((mapTop - (viewY - halfH)) / chunkH));
+        }
+
+        if (c0 > c1 || r0 > r1) {
+            Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
+            return;
+        }
+
+        Matrix.multiplyMM(mMVPMatrix, 0, vpMatrix, 0, getModelMatrix(), 0);
+
+        final int program = mProgram.getHandle();
+        GLES20.glUseProgram(program);
+
+        if (mMVPMatrixHandle == HANDLE_UNSET) {
+            mMVPMatrixHandle = GLES20.glGetUniformLocation(program, UniformVariable.U_MVPMatrix.getName());
+            mTextureUniformHandle = GLES20.glGetUniformLocation(program, UniformVariable.U_Texture.getName());
+            mAlphaHandle = GLES20.glGetUniformLocation(program, UniformVariable.U_Alpha.getName());
+        }
+        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        GLES20.glUniform1f(mAlphaHandle, getAlpha());
+
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texId);
+        GLES20.glUniform1i(mTextureUniformHandle, 0);
+
+        final int position = AttrVariable.A_Position.getHandle();
+        final int texCoord = AttrVariable.A_TexCoordinate.getHandle();
+        GLES20.glEnableVertexAttribArray(position);
+        GLES20.glEnableVertexAttribArray(texCoord);
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                drawChunk((r * mChunksX) + c, position, texCoord);
+            }
+        }
+
+        if (USE_VBOS) {
+            unbindBuffers();
+        }
+        GLES20.glDisableVertexAttribArray(texCoord);
+
+        Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
+    }
+
+    private void drawChunk(int chunk, int position, int texCoord) {
+        boolean dirty;
+        synchronized (mTiles) {
+            dirty = mChunkDirty[chunk];
+            if (dirty) {
+                mChunkDirty[chunk] = false;
+                buildChunk(chunk);
+            }
+        }
+
+        final int tiles = mChunkTiles[chunk];
+        if (tiles == 0) {
+            return;
+        }
+
+        if (USE_VBOS) {
+            drawChunkBuffer(chunk, tiles, position, texCoord);
+        } else {
+            FloatBuffer vertices = mChunkVertices[chunk];
+            vertices.position(0);
+            GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, VERTEX_SIZE, vertices);
+            vertices.position(2);
+            GLES20.glVertexAttribPointer(texCoord, 2, GLES20.GL_FLOAT, false, VERTEX_SIZE, vertices);
+
+            QuadIndices.draw(tiles);
+        }
+
+        mLastDrawCalls++;
+    }
+
+    @TargetApi(9)
+    private void drawChunkBuffer(int chunk, int tiles, int position, int texCoord) {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mChunkBuffers[chunk]);
+        GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, VERTEX_SIZE, 0);
+        GLES20.glVertexAttribPointer(texCoord, 2, GLES20.GL_FLOAT, false, VERTEX_SIZE, 2 * 4);
+
+        QuadIndices.draw(tiles);
+    }
+
+    @TargetApi(9)
+    private static void unbindBuffers() {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Write the vertices of a chunk's non-empty tiles into its buffer. Called with the tiles locked.
+     */
+    private void buildChunk(int chunk) {
+        if (mBuildScratch == null) {
+            mBuildScratch = new float[TILES_PER_CHUNK * FLOATS_PER_TILE];
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(TILES_PER_CHUNK * FLOATS_PER_TILE * 4);
+            buffer.order(ByteOrder.nativeOrder());
+            mBuildBuffer = buffer.asFloatBuffer();
+        }
+
+        final float[] out = mBuildScratch;
+        final float[] uvs = mFrameUVs;
+        final int frames = uvs.length / 4;
+        final int firstColumn = (chunk % mChunksX) * CHUNK_SIZE;
+        final int firstRow = (chunk / mChunksX) * CHUNK_SIZE;
+        final int lastColumn = Math.min(mColumns, firstColumn + CHUNK_SIZE);
+        final int lastRow = Math.min(mRows, firstRow + CHUNK_SIZE);
+        final float left = -(mColumns * mTileWidth / 2.f);
+        final float top = mRows * mTileHeight / 2.f;
+
+        int tiles = 0;
+        int o = 0;
+        for (int row = firstRow; row < lastRow; row++) {
+            final float y2 = top - (row * mTileHeight);
+            final float y1 = y2 - mTileHeight;
+
+            for (int column = firstColumn; column < lastColumn; column++) {
+                final int tile = mTiles[(row * mColumns) + column];
+                if (tile < 0 || tile >= frames) {
+                    continue;
+                }
+
+                final float x1 = left + (column * mTileWidth);
+                final float x2 = x1 + mTileWidth;
+                final int t = tile * 4;
+
+                // Bottom left, bottom right, top right, top left
+                out[o++] = x1; out[o++] = y1; out[o++] = uvs[t];     out[o++] = uvs[t + 3];
+                out[o++] = x2; out[o++] = y1; out[o++] = uvs[t + 2]; out[o++] = uvs[t + 3];
+                out[o++] = x2; out[o++] = y2; out[o++] = uvs[t + 2]; out[o++] = uvs[t + 1];
+                out[o++] = x1; out[o++] = y2; out[o++] = uvs[t];     out[o++] = uvs[t + 1];
+                tiles++;
+            }
+        }
+
+        mChunkTiles[chunk] = tiles;
+
+        if (USE_VBOS) {
+            mBuildBuffer.clear();
+            mBuildBuffer.put(out, 0, o);
+            mBuildBuffer.flip();
+            uploadChunk(chunk, o);
+        } else {
+            FloatBuffer vertices = mChunkVertices[chunk];
+            if (vertices == null && tiles > 0) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(TILES_PER_CHUNK * FLOATS_PER_TILE * 4);
+                buffer.order(ByteOrder.nativeOrder());
+                vertices = mChunkVertices[chunk] = buffer.asFloatBuffer();
+            }
+            if (vertices != null) {
+                vertices.clear();
+                vertices.put(out, 0, o);
+                vertices.flip();
+            }
+        }
+    }
+
+    private void uploadChunk(int chunk, int floats) {
+        if (mChunkBuffers[chunk] == 0) {
+            if (floats == 0) {
+                return;
+            }
+
+            final int[] handles = new int[1];
+            GLES20.glGenBuffers(1, handles, 0);
+            mChunkBuffers[chunk] = handles[0];
+        }
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mChunkBuffers[chunk]);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * 4, floats == 0 ? null : mBuildBuffer,
+                GLES20.GL_STATIC_DRAW);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+
+        if (USE_VBOS) {
+            final int[] handles = new int[1];
+            for (int i = 0; i < mChunkBuffers.length; i++) {
+                if (mChunkBuffers[i] != 0) {
+                    handles[0] = mChunkBuffers[i];
+                    GLES20.glDeleteBuffers(1, handles, 0);
+                    mChunkBuffers[i] = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.nickstephen.gamelib.opengl.shapes;
+
+import android.opengl.GLES20;
+
+import com.nickstephen.gamelib.opengl.GLCaps;
+import com.nickstephen.gamelib.opengl.program.AttrVariable;
+import com.nickstephen.gamelib.opengl.program.Program;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Describes how the attributes of a vertex are packed into an interleaved buffer: which
+ * attributes there are, in what order, how many components each has and what type each component
+ * is stored as. {@link Vertices} uses one of these to write and bind its buffer.</p>
+ *
+ * <p>Attributes are added in order with {@link #add(AttrVariable, int, Format)}. Each one starts
+ * on a 4 byte boundary and the stride is rounded up to a multiple of 4 bytes, which is what most
+ * GPUs want.</p>
+ *
+ * <pre>
+ * VertexLayout layout = new VertexLayout()
+ *         .add(AttrVariable.A_Position, 2, VertexLayout.Format.FLOAT)
+ *         .add(AttrVariable.A_TexCoordinate, 2, VertexLayout.Format.USHORT_NORM);</pre>
+ * @author Nick Stephen
+ */
+public final class VertexLayout {
+    /**
+     * GL_HALF_FLOAT_OES from GL_OES_vertex_half_float, which isn't in {@link android.opengl.GLES20}.
+     */
+    public static final int GL_HALF_FLOAT_OES = 0x8D61;
+    public static final String OES_VERTEX_HALF_FLOAT = "GL_OES_vertex_half_float";
+
+    /**
+     * The ways a component can be stored.
+     */
+    public enum Format {
+        /**
+         * 32 bit float.
+         */
+        FLOAT(4, GLES20.GL_FLOAT, false),
+        /**
+         * 16 bit float. Needs GL_OES_vertex_half_float (see {@link #supportsHalfFloat()}). About 3
+         * significant figures, so positions over 1024 are only accurate to the nearest pixel.
+         */
+        HALF_FLOAT(2, GL_HALF_FLOAT_OES, false),
+        /**
+         * 16 bit unsigned integer mapping 0 to 1. Good for texture coordinates.
+         */
+        USHORT_NORM(2, GLES20.GL_UNSIGNED_SHORT, true),
+        /**
+         * 8 bit unsigned integer, 0 to 255. Good for batch (MVP matrix) indices.
+         */
+        UBYTE(1, GLES20.GL_UNSIGNED_BYTE, false),
+        /**
+         * 8 bit unsigned integer mapping 0 to 1. Good for colours.
+         */
+        UBYTE_NORM(1, GLES20.GL_UNSIGNED_BYTE, true);
+
+        /**
+         * The size of one component (bytes).
+         */
+        public final int size;
+        public final int glType;
+        public final boolean normalised;
+
+        private Format(int size, int glType, boolean normalised) {
+            this.size = size;
+            this.glType = glType;
+            this.normalised = normalised;
+        }
+    }
+
+    /**
+     * One attribute within a layout.
+     */
+    public static final class Element {
+        public final AttrVariable attribute;
+        public final int components;
+        public final Format format;
+        /**
+         * The offset of the attribute from the start of a vertex (bytes).
+         */
+        public final int offset;
+
+        private Element(AttrVariable attribute, int components, Format format, int offset) {
+            this.attribute = attribute;
+            this.components = components;
+            this.format = format;
+            this.offset = offset;
+        }
+    }
+
+    private Element[] mElements = new Element[4];
+    private int mCount;
+    private int mSize; // Unpadded size of a vertex
+
+    /**
+     * The default layout for a program: every attribute it uses as floats, except colours and
+     * channel balances which are packed into 4 bytes. Attributes go in the order position, texture
+     * coordinates, MVP index, colour, channel balance.
+     * @param program The program
+     * @return A new layout
+     */
+    public static @NotNull VertexLayout forProgram(@NotNull Program program) {
+        VertexLayout layout = new VertexLayout()
+                .add(AttrVariable.A_Position, Vertices.POSITION_CNT_2D, Format.FLOAT);
+
+        if (program.usesVariable(AttrVariable.A_TexCoordinate)) {
+            layout.add(AttrVariable.A_TexCoordinate, Vertices.TEXCOORD_CNT, Format.FLOAT);
+        }
+        if (program.usesVariable(AttrVariable.A_MVPMatrixIndex)) {
+            layout.add(AttrVariable.A_MVPMatrixIndex, Vertices.MVP_MATRIX_INDEX_CNT, Format.FLOAT);
+        }
+        if (program.usesVariable(AttrVariable.A_Colour)) {
+            layout.add(AttrVariable.A_Colour, Vertices.COLOUR_CNT, Format.UBYTE_NORM);
+        }
+        if (program.usesVariable(AttrVariable.A_Channel)) {
+            layout.add(AttrVariable.A_Channel, Vertices.CHANNEL_CNT, Format.UBYTE_NORM);
+        }
+
+        return layout;
+    }
+
+    /**
+     * Check whether half float attributes can be used. Returns false until the GL context's
+     * extensions have been read on the GL thread.
+     * @return True if {@link Format#HALF_FLOAT} can be used, false otherwise
+     */
+    public static boolean supportsHalfFloat() {
+        return GLCaps.hasExtension(OES_VERTEX_HALF_FLOAT);
+    }
+
+    /**
+     * Add an attribute after the ones already in the layout.
+     * @param attribute The attribute
+     * @param components The number of components
+     * @param format How each component is stored
+     * @return This object
+     */
+    public VertexLayout add(@NotNull AttrVariable attribute, int components, @NotNull Format format) {
+        if (find(attribute) != null) {
+            throw new IllegalArgumentException(attribute.getName() + " is already in the layout!");
+        }
+
+        if (mCount == mElements.length) {
+            Element[] grown = new Element[mCount * 2];
+            System.arraycopy(mElements, 0, grown, 0, mCount);
+            mElements = grown;
+        }
+
+        final int offset = align(mSize, 4);
+        mElements[mCount++] = new Element(attribute, components, format, offset);
+        mSize = offset + (components * format.size);
+        return this;
+    }
+
+    /**
+     * Get the number of attributes in the layout.
+     * @return The number of attributes
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    public @NotNull Element get(int i) {
+        if (i < 0 || i >= mCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        return mElements[i];
+    }
+
+    /**
+     * Find the element for an attribute.
+     * @param attribute The attribute
+     * @return The element, or null if the attribute isn't in the layout
+     */
+    public @Nullable Element find(@NotNull AttrVariable attribute) {
+        for (int i = 0; i < mCount; i++) {
+            if (mElements[i].attribute == attribute) {
+                return mElements[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the size of a vertex, including padding.
+     * @return The number of bytes
+     */
+    public int getStride() {
+        return align(mSize, 4);
+    }
+
+    /**
+     * Check whether the layout has exactly the vertex attributes a program uses.
+     * @param program The program
+     * @return True if it does, false otherwise
+     */
+    public boolean matches(@NotNull Program program) {
+        final AttrVariable[] attributes = AttrVariable.values();
+        for (int i = 0; i < attributes.length; i++) {
+            if (program.usesVariable(attributes[i]) != (find(attributes[i]) != null)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Write a component into a buffer.
+     * @param buffer The buffer
+     * @param index The byte index to write at
+     * @param format How to store the value
+     * @param value The value
+     */
+    static void write(@NotNull ByteBuffer buffer, int index, @NotNull Format format, float value) {
+        switch (format) {
+            case FLOAT:
+                buffer.putFloat(index, value);
+                break;
+            case HALF_FLOAT:
+                buffer.putShort(index, toHalf(value));
+                break;
+            case USHORT_NORM:
+                buffer.putShort(index, (short) (int) ((clamp(value) * 65535.f) + 0.5f));
+                break;
+            case UBYTE:
+                buffer.put(index, (byte) (int) value);
+                break;
+            case UBYTE_NORM:
+                buffer.put(index, (byte) (int) ((clamp(value) * 255.f) + 0.5f));
+                break;
+        }
+    }
+
+    private static float clamp(float value) {
+        return value < 0.f ? 0.f : (value > 1.f ? 1.f : value);
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * Convert a float to the bits of the nearest half float (round to nearest even).
+     */
+    static short toHalf(float value) {
+        final int bits = Float.floatToIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent >= 0x1F) {
+            if (((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0) {
+                return (short) (sign | 0x7E00); // NaN
+            }
+            return (short) (sign | 0x7C00); // Too big, or infinite
+        } else if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign; // Too small, round to zero
+            }
+
+            // Subnormal
+            mantissa |= 0x800000;
+            final int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            final int rest = mantissa & ((1 << shift) - 1);
+            final int halfway = 1 << (shift - 1);
+            if (rest > halfway || (rest == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        int half = (exponent << 10) | (mantissa >> 13);
+        final int rest = mantissa & 0x1FFF;
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+            half++; // May carry into the exponent, which is still correct
+        }
+        return (short) (sign | half);
+    }
+}
@@ -2,28 +2,37 @@ package com.nickstephen.gamelib.opengl.shapes;
 
 import android.opengl.GLES20;
 
+import com.nickstephen.gamelib.opengl.QuadIndices;
 import com.nickstephen.gamelib.opengl.Utilities;
 import com.nickstephen.gamelib.opengl.program.AttrVariable;
 import com.nickstephen.gamelib.opengl.program.Program;
 import com.nickstephen.gamelib.opengl.program.UniformVariable;
 import com.nickstephen.gamelib.opengl.shapes.Shape;
 import com.nickstephen.gamelib.opengl.textures.Texture;
+import com.nickstephen.gamelib.perf.Profiler;
+import com.nickstephen.gamelib.util.BufferPool;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
- * Class for containing all the low level OpenGL stuff about a shape. Also handles the raw drawing.
+ * <p>Class for containing all the low level OpenGL stuff about a shape. Also handles the raw drawing.</p>
+ *
+ * <p>The attributes are stored interleaved in a single buffer, packed as described by a
+ * {@link com.nickstephen.gamelib.opengl.shapes.VertexLayout}. By default that's
+ * {@link VertexLayout#forProgram(com.nickstephen.gamelib.opengl.program.Program)}, but compact
+ * layouts (e.g. normalised shorts for texture coordinates) can be given to cut the memory and
+ * bandwidth used per vertex. The attribute values are always set as floats.</p>
  * @author Nick Stephen
  */
 public class Vertices {
     public static final int MVP_MATRIX_INDEX_CNT = 1; // Number of Components in MVP matrix index
     public final static int TEXCOORD_CNT = 2;                 // Number of Components in Vertex Texture Coords
     public final static int POSITION_CNT_2D = 2;              // Number of Components in Vertex Position for 2D
+    public final static int COLOUR_CNT = 4;                   // Number of Components in Vertex Colours
+    public final static int CHANNEL_CNT = 4;                  // Number of Components in Vertex Channel Balances
 
     private final static int INDEX_SIZE = Short.SIZE / 8;      // Index Byte Size (Short.SIZE = bits)
 
@@ -40,23 +49,28 @@ public class Vertices {
     protected final boolean mUsesTexture;
     protected final boolean mUsesTextureCoords;
     protected final boolean mUsesChannelBalance;
-    protected final int mVertexStride;
+    protected final VertexLayout mLayout;
 
-    private final ShortBuffer mIndices;
-    private final int mMVPIndexHandle;
+    private ShortBuffer mIndices;
     private final int mNumIndices;
-    private final int mPositionHandle;
+    /**
+     * Number of quads drawn with the shared {@link com.nickstephen.gamelib.opengl.QuadIndices}, or 0
+     */
+    private final int mNumQuads;
     private final int mPrimitiveType;
     private final Shape mShape;
-    private final int mTextureCoordinateHandle;
     private final boolean mUsesColour;
     /**
-     * Bytesize of a single vertex (stride * bytes in float)
+     * Bytesize of a single vertex
      */
     private final int mVertexSize;
 
-    private final FloatBuffer mVertices;
+    // Borrowed from the buffer pool. Null once released (or handed over to a reset copy).
+    private ByteBuffer mVertices;
+    private ByteBuffer mIndexBytes;
 
+    protected float[] mChannels;
+    protected float[] mColours;
     protected float[] mMVPIndices;
     protected int mNumMVPMatrices = 1;
     protected float[] mTexCoords;
@@ -77,12 +91,39 @@ public class Vertices {
      * @param glPrimitive The OpenGL primitive type to use when drawing
      */
     public Vertices(@NotNull Shape shape, int numVertices, int numIndices, int glPrimitive) {
+        this(shape, numVertices, numIndices, glPrimitive, 0, VertexLayout.forProgram(shape.getProgram()));
+    }
+
+    /**
+     * Constructor for a list of quads. Each quad is 4 vertices given in order around its edge and is
+     * drawn using the shared {@link com.nickstephen.gamelib.opengl.QuadIndices} rather than an index
+     * buffer of its own.
+     * @param shape The shape associated with these vertices
+     * @param numQuads The number of quads to use
+     */
+    public Vertices(@NotNull Shape shape, int numQuads) {
+        this(shape, numQuads, VertexLayout.forProgram(shape.getProgram()));
+    }
+
+    /**
+     * Constructor for a list of quads packed with a particular layout.
+     * @param shape The shape associated with these vertices
+     * @param numQuads The number of quads to use
+     * @param layout The layout of a vertex. Must have exactly the attributes the shape's program uses.
+     */
+    public Vertices(@NotNull Shape shape, int numQuads, @NotNull VertexLayout layout) {
+        this(shape, numQuads * 4, 0, GLES20.GL_TRIANGLES, numQuads, layout);
+    }
+
+    private Vertices(@NotNull Shape shape, int numVertices, int numIndices, int glPrimitive, int numQuads,
+                     @NotNull VertexLayout layout) {
         mShape = shape;
         mProgram = shape.getProgram();
         mPositionCount = POSITION_CNT_2D;  // Set Position Component Count
 
         mNumVertices = numVertices;
         mNumIndices = numIndices;
+        mNumQuads = numQuads;
 
         mUsesColour = mProgram.usesVariable(UniformVariable.U_Colour);
         mUsesTexture = mProgram.usesVariable(UniformVariable.U_Texture);
@@ -91,46 +132,46 @@ public class Vertices {
         mUsesAlpha = mProgram.usesVariable(UniformVariable.U_Alpha);
         mUsesChannelBalance = mProgram.usesVariable(UniformVariable.U_ChannelBalance);
 
-        mVertexStride = mPositionCount +
-                (mUsesMVPIndex ? MVP_MATRIX_INDEX_CNT : 0) +
-                (mUsesTextureCoords ? TEXCOORD_CNT : 0);
-                // Calculate Vertex Stride
-        mVertexSize = mVertexStride * 4;        // Calculate Vertex Byte Size
+        if (!layout.matches(mProgram)) {
+            throw new IllegalArgumentException("Vertex layout doesn't match the program's attributes!");
+        }
+        mLayout = layout;
+        mVertexSize = layout.getStride();        // Vertex Byte Size
         mPrimitiveType = glPrimitive;
 
-        ByteBuffer buffer = ByteBuffer.allocateDirect( numVertices * mVertexSize);  // Allocate Buffer for Vertices (Max)
-        buffer.order( ByteOrder.nativeOrder() );        // Set Native Byte Order
-        mVertices = buffer.asFloatBuffer();           // Save Vertex Buffer
+        // Zeroed so quads that haven't been written yet are empty rather than a previous owner's data
+        mVertices = BufferPool.acquire( numVertices * mVertexSize, true);  // Borrow Buffer for Vertices (Max)
 
         if ( numIndices > 0 )  {                        // IF Indices Required
-            buffer = ByteBuffer.allocateDirect( numIndices * INDEX_SIZE );  // Allocate Buffer for Indices (MAX)
-            buffer.order( ByteOrder.nativeOrder() );     // Set Native Byte Order
-            mIndices = buffer.asShortBuffer();       // Save Index Buffer
+            mIndexBytes = BufferPool.acquire( numIndices * INDEX_SIZE, true );  // Borrow Buffer for Indices (MAX)
+            mIndices = mIndexBytes.asShortBuffer();       // Save Index Buffer
         }
         else                                            // ELSE Indices Not Required
             mIndices = null;                              // No Index Buffer
 
-
-
-        // initialize the shader attribute handles
-        mTextureCoordinateHandle = AttrVariable.A_TexCoordinate.getHandle();
-        mMVPIndexHandle = AttrVariable.A_MVPMatrixIndex.getHandle();
-        mPositionHandle = AttrVariable.A_Position.getHandle();
-
         if (mUsesTextureCoords) {
             mTexCoords = new float[TEXCOORD_CNT * mNumVertices];
         }
-
-        mScratch = new float[mNumVertices * mVertexStride];
     }
 
     protected Vertices(@NotNull Vertices prev, @NotNull Program program) {
+        this(prev, program, prev.mLayout.matches(program) ? prev.mLayout : VertexLayout.forProgram(program));
+    }
+
+    /**
+     * Copy constructor for switching program, taking over the buffers of the previous vertices.
+     * @param prev The vertices to take over
+     * @param program The new program
+     * @param layout The layout to use with the new program
+     */
+    protected Vertices(@NotNull Vertices prev, @NotNull Program program, @NotNull VertexLayout layout) {
         mShape = prev.mShape;
         mProgram = program;
         mPositionCount = prev.mPositionCount;  // Set Position Component Count
 
         mNumVertices = prev.mNumVertices;
         mNumIndices = prev.mNumIndices;
+        mNumQuads = prev.mNumQuads;
 
         mUsesColour = mProgram.usesVariable(UniformVariable.U_Colour);
         mUsesTexture = mProgram.usesVariable(UniformVariable.U_Texture);
@@ -139,29 +180,40 @@ public class Vertices {
         mUsesAlpha = mProgram.usesVariable(UniformVariable.U_Alpha);
         mUsesChannelBalance = mProgram.usesVariable(UniformVariable.U_ChannelBalance);
 
-        mVertexStride = mPositionCount +
-                (mUsesMVPIndex ? MVP_MATRIX_INDEX_CNT : 0) +
-                (mUsesTextureCoords ? TEXCOORD_CNT : 0);
-        // Calculate Vertex Stride
-        mVertexSize = mVertexStride * 4;        // Calculate Vertex Byte Size
+        if (!layout.matches(program)) {
+            throw new IllegalArgumentException("Vertex layout doesn't match the program's attributes!");
+        }
+        final boolean sameLayout = layout == prev.mLayout;
+        mLayout = layout;
+        mVertexSize = mLayout.getStride();        // Vertex Byte Size
         mPrimitiveType = prev.mPrimitiveType;
 
-        mVertices = prev.mVertices;
-        mIndices = prev.mIndices;
-
-        // initialize the shader attribute handles
-        mTextureCoordinateHandle = AttrVariable.A_TexCoordinate.getHandle();
-        mMVPIndexHandle = AttrVariable.A_MVPMatrixIndex.getHandle();
-        mPositionHandle = AttrVariable.A_Position.getHandle();
+        synchronized (prev) {
+            // The new copy owns the pooled buffers now
+            mVertices = prev.mVertices;
+            mIndices = prev.mIndices;
+            mIndexBytes = prev.mIndexBytes;
+            prev.mVertices = null;
+            prev.mIndices = null;
+            prev.mIndexBytes = null;
+        }
 
-        if (mUsesTextureCoords) {
-            mTexCoords = prev.mTexCoords;
+        if (mVertices != null && (!sameLayout || mVertices.capacity() < mNumVertices * mVertexSize)) {
+            // Start from zeroes, since the old bytes mean something else in the new layout
+            BufferPool.release(mVertices);
+            mVertices = BufferPool.acquire(mNumVertices * mVertexSize, true);
         }
 
         mScratch = prev.mScratch;
         mVertexCoords = prev.mVertexCoords;
         mMVPIndices = prev.mMVPIndices;
         mTexCoords = prev.mTexCoords;
+        mColours = prev.mColours;
+        mChannels = prev.mChannels;
+
+        if (!sameLayout && mVertexCoords != null) {
+            resetFloatBuffer(); // Repack in the new layout
+        }
     }
 
     public @NotNull Vertices reset(@NotNull Program program) {
@@ -180,11 +232,17 @@ public class Vertices {
         }
         GLES20.glUniformMatrix4fv(mMVPMatrixHandle, mNumMVPMatrices, false, mvpMatrix, 0);
 
-        // bind vertex position pointer
-        mVertices.position(0);                         // Set Vertex Buffer to Position
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionCount,
-                GLES20.GL_FLOAT, false, mVertexSize, mVertices);
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        // bind the attribute pointers
+        for (int i = 0; i < mLayout.getCount(); i++) {
+            final VertexLayout.Element element = mLayout.get(i);
+            final int handle = element.attribute.getHandle();
+
+            mVertices.position(element.offset);
+            GLES20.glVertexAttribPointer(handle, element.components, element.format.glType,
+                    element.format.normalised, mVertexSize, mVertices);
+            GLES20.glEnableVertexAttribArray(handle);
+        }
+        mVertices.position(0);
 
         if (mUsesColour) {
             if (mColourHandle == HANDLE_UNSET) {
@@ -208,17 +266,6 @@ public class Vertices {
             }
         }
 
-        if (mUsesTextureCoords) {
-            // bind texture position pointer
-            mVertices.position(mPositionCount);  // Set Vertex Buffer to Texture Coords (NOTE: position based on whether color is also specified)
-            GLES20.glVertexAttribPointer(mTextureCoordinateHandle, TEXCOORD_CNT,
-                    GLES20.GL_FLOAT, false, mVertexSize, mVertices);
-            GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
-            mVertices.position(mPositionCount + TEXCOORD_CNT);
-        } else {
-            mVertices.position(mPositionCount);
-        }
-
         if (mUsesAlpha) {
             if (mAlphaHandle == HANDLE_UNSET) {
                 mAlphaHandle = GLES20.glGetUniformLocation(mProgram.getHandle(), UniformVariable.U_Alpha.getName());
@@ -238,13 +285,6 @@ public class Vertices {
             }
         }
 
-        // bind MVP Matrix index position handle
-        if (mUsesMVPIndex) {
-            GLES20.glVertexAttribPointer(mMVPIndexHandle, MVP_MATRIX_INDEX_CNT,
-                    GLES20.GL_FLOAT, false, mVertexSize, mVertices);
-            GLES20.glEnableVertexAttribArray(mMVPIndexHandle);
-        }
-
         return true;
     }
 
@@ -252,13 +292,24 @@ public class Vertices {
      * Draw the currently bound vertices in the vertex/ index buffers
      * @param mvpMatrix The full MVP matrix to use
      */
-    public void draw(@NotNull float[] mvpMatrix) {
+    public synchronized void draw(@NotNull float[] mvpMatrix) {
+        if (mVertices == null) {
+            return; // Released
+        }
+
+        final long start = Profiler.start();
+
         if (!bind(mvpMatrix)) {
             unbind();
+            mShape.invalidate(); // Not ready yet, so make sure a cached parent tries again
+            Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
             return;
         }
 
-        if (mIndices != null)  {                       // IF Indices Exist
+        if (mNumQuads > 0) {                           // IF Quads
+            QuadIndices.draw(mNumQuads);
+        }
+        else if (mIndices != null)  {                  // ELSE IF Indices Exist
             synchronized (mIndices) {
                 mIndices.position(0);                  // Set Index Buffer to Specified Offset
                 //draw indexed
@@ -272,6 +323,24 @@ public class Vertices {
         }
 
         unbind();
+        Profiler.accumulate(Profiler.Phase.FRAME_DRAW_CALLS, start);
+    }
+
+    /**
+     * Give the vertex and index buffers back to the {@link com.nickstephen.gamelib.util.BufferPool}.
+     * Called when the shape is disposed; the vertices won't draw after this.
+     */
+    public synchronized void release() {
+        if (mVertices != null) {
+            BufferPool.release(mVertices);
+            mVertices = null;
+        }
+        if (mIndexBytes != null) {
+            BufferPool.release(mIndexBytes);
+            mIndexBytes = null;
+        }
+
+        mIndices = null;
     }
 
     /**
@@ -281,6 +350,10 @@ public class Vertices {
      * @param length Number of indices in array
      */
     public void setIndices(@NotNull short[] indices, int offset, int length) {
+        if (mIndices == null) {
+            return; // Released
+        }
+
         synchronized (mIndices) {
             mIndices.clear();
             mIndices.put(indices, offset, length);
@@ -304,29 +377,146 @@ public class Vertices {
 
     /**
      * Use the currently stored values for vertex coords, tex coords, etc, to populate the
-     * float buffer actually used for OpenGL calls. Make sure to call before drawing when the
+     * vertex buffer actually used for OpenGL calls. Make sure to call before drawing when the
      * shape's properties change.
      */
     public synchronized void resetFloatBuffer() {
-        for (int c = 0, i = 0, j = 0, k = 0; i < mNumVertices * mVertexStride; c++) {
-            for (; j < (c + 1) * mPositionCount;) {
-                mScratch[i++] = mVertexCoords[j++];
-            }
+        if (mVertices == null) {
+            return; // Released
+        }
 
-            if (mUsesTextureCoords) {
-                for (; k < (c + 1) * TEXCOORD_CNT ;) {
-                    mScratch[i++] = mTexCoords[k++];
-                }
-            }
+        for (int i = 0; i < mLayout.getCount(); i++) {
+            final VertexLayout.Element element = mLayout.get(i);
+            final float[] src = getSource(element.attribute);
 
-            if (mUsesMVPIndex) {
-                mScratch[i++] = mMVPIndices[c];
+            if (src != null) {
+                writeLane(src, element, 0, mNumVertices);
             }
         }
 
         mVertices.clear();
-        mVertices.put(mScratch, 0, mNumVertices * mVertexStride);
-        mVertices.flip();
+        mVertices.limit(mNumVertices * mVertexSize);
+    }
+
+    /**
+     * Copy the positions of some vertices from the stored vertex coords straight into the vertex
+     * buffer, leaving the other attributes alone. Much cheaper than {@link #resetFloatBuffer()}
+     * when only a few vertices have moved. The buffer must have been fully populated once already.
+     * @param firstVertex The first vertex that changed
+     * @param count The number of vertices that changed
+     */
+    public synchronized void updatePositions(int firstVertex, int count) {
+        updateLane(AttrVariable.A_Position, firstVertex, count);
+    }
+
+    /**
+     * Copy the texture coordinates of some vertices from {@link #getTextureCoords()} straight into
+     * the vertex buffer, leaving the other attributes alone. A sprite changing frame only touches
+     * its 8 texture coordinates this way. The buffer must have been fully populated once already.
+     * @param firstVertex The first vertex that changed
+     * @param count The number of vertices that changed
+     */
+    public synchronized void updateTextureCoords(int firstVertex, int count) {
+        updateLane(AttrVariable.A_TexCoordinate, firstVertex, count);
+    }
+
+    /**
+     * Copy the MVP matrix indices of some vertices straight into the vertex buffer, leaving the
+     * other attributes alone. The buffer must have been fully populated once already.
+     * @param firstVertex The first vertex that changed
+     * @param count The number of vertices that changed
+     */
+    public synchronized void updateMVPIndices(int firstVertex, int count) {
+        updateLane(AttrVariable.A_MVPMatrixIndex, firstVertex, count);
+    }
+
+    /**
+     * Copy the colours of some vertices from {@link #getColours()} straight into the vertex
+     * buffer, leaving the other attributes alone. The buffer must have been fully populated once
+     * already.
+     * @param firstVertex The first vertex that changed
+     * @param count The number of vertices that changed
+     */
+    public synchronized void updateColours(int firstVertex, int count) {
+        updateLane(AttrVariable.A_Colour, firstVertex, count);
+    }
+
+    /**
+     * Copy the channel balances of some vertices straight into the vertex buffer, leaving the
+     * other attributes alone. The buffer must have been fully populated once already.
+     * @param firstVertex The first vertex that changed
+     * @param count The number of vertices that changed
+     */
+    public synchronized void updateChannels(int firstVertex, int count) {
+        updateLane(AttrVariable.A_Channel, firstVertex, count);
+    }
+
+    private void updateLane(AttrVariable attribute, int firstVertex, int count) {
+        final VertexLayout.Element element = mLayout.find(attribute);
+        if (element == null) {
+            throw new UnsupportedOperationException("Program doesn't use " + attribute.getName() + "!");
+        }
+
+        final float[] src = getSource(attribute);
+        if (src != null) {
+            writeLane(src, element, firstVertex, count);
+        }
+    }
+
+    /**
+     * Get the stored values of an attribute.
+     */
+    private float[] getSource(AttrVariable attribute) {
+        switch (attribute) {
+            case A_Position:
+                return mVertexCoords;
+            case A_TexCoordinate:
+                return mTexCoords;
+            case A_MVPMatrixIndex:
+                return mMVPIndices;
+            case A_Colour:
+                return mColours;
+            case A_Channel:
+                return mChannels;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Write one attribute of a run of vertices into the interleaved vertex buffer.
+     * @param src The per-attribute array to copy from
+     * @param element Where and how the attribute is stored
+     * @param firstVertex The first vertex to write
+     * @param count The number of vertices to write
+     */
+    private void writeLane(float[] src, VertexLayout.Element element, int firstVertex, int count) {
+        if (mVertices == null) {
+            return; // Released
+        }
+
+        final int end = firstVertex + count;
+        if (firstVertex < 0 || end > mNumVertices) {
+            throw new IndexOutOfBoundsException("Vertices " + firstVertex + " to " + end + " out of " + mNumVertices);
+        }
+
+        final int components = element.components;
+        final VertexLayout.Format format = element.format;
+        final ByteBuffer vertices = mVertices;
+
+        for (int v = firstVertex, s = firstVertex * components; v < end; v++) {
+            int dst = (v * mVertexSize) + element.offset;
+
+            if (format == VertexLayout.Format.FLOAT) {
+                for (int c = 0; c < components; c++, dst += 4) {
+                    vertices.putFloat(dst, src[s++]);
+                }
+            } else {
+                for (int c = 0; c < components; c++, dst += format.size) {
+                    VertexLayout.write(vertices, dst, format, src[s++]);
+                }
+            }
+        }
     }
 
     public @NotNull float[] getTextureCoords() {
@@ -347,17 +537,39 @@ public class Vertices {
         resetFloatBuffer();
     }
 
+    /**
+     * Get the per-vertex colours, 4 (RGBA) per vertex. Null until set.
+     * @return The colour array
+     */
+    public float[] getColours() {
+        return mColours;
+    }
+
+    /**
+     * Set the per-vertex colours of the shape.
+     * @param colours The colours, 4 (RGBA) per vertex
+     */
+    public void setColours(@NotNull float[] colours) {
+        if (colours.length != COLOUR_CNT * mNumVertices) {
+            throw new IllegalArgumentException("Invalid colour array size!");
+        } else if (mLayout.find(AttrVariable.A_Colour) == null) {
+            throw new UnsupportedOperationException("Program doesn't use vertex colours!");
+        }
+        mColours = colours;
+        resetFloatBuffer();
+    }
+
     /**
      * Perform any necessary disabling settings here
      */
     private void unbind() {
-        if (mUsesTextureCoords) {
-            GLES20.glDisableVertexAttribArray(mTextureCoordinateHandle);
-            Utilities.checkGlError("glDisableVertexAttribArray/TexCoord");
-        }
-        if (mUsesMVPIndex) {
-            GLES20.glDisableVertexAttribArray(mMVPIndexHandle);
-            Utilities.checkGlError("glDisableVertexAttribArray/MVPIndex");
+        for (int i = 0; i < mLayout.getCount(); i++) {
+            final AttrVariable attribute = mLayout.get(i).attribute;
+
+            if (attribute != AttrVariable.A_Position) {
+                GLES20.glDisableVertexAttribArray(attribute.getHandle());
+                Utilities.checkGlError("glDisableVertexAttribArray/" + attribute.getName());
+            }
         }
     }
 
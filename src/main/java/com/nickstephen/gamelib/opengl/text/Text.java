@@ -104,7 +104,6 @@ public class Text extends SpriteBatch {
     private final Object mTextLock = new Object();
     private String mText;
     private boolean mTextInvalidated = false;
-    protected float[] mChannelArr;
     protected float mCharSize = DEFAULT_FONT_SIZE;
     protected boolean mCentered = true;
 
@@ -123,6 +122,8 @@ public class Text extends SpriteBatch {
             mText = text;
             mTextInvalidated = true;
         }
+
+        invalidate();
     }
 
     public void setFontSize(float s) {
@@ -351,18 +352,19 @@ public class Text extends SpriteBatch {
                 clear(true);
 
                 if (mTexture.getId() == Texture.TEX_ID_UNASSIGNED) {
+                    invalidate();
                     return;
                 }
 
                 final int len = mText.length();
 
                 mProgram.dispose();
-                mProgram = Program.ProgramCreator.create(true, true, true, false, len, true);
+                mProgram = Program.ProgramCreator.create(true, true, true, false, len, true,
+                        Program.ProgramCreator.VERTEX_CHANNELS);
                 mVertices = mVertices.reset(mProgram);
                 ((SpriteHelper) mVertices).setMaxSprites(len);
 
                 float adjust = (len % 2 == 0) ? mCharSize / 2.f : 0.f;
-                mChannelArr = new float[Utilities.QUAD_CHANNEL * len];
 
                 for (int i = 0; i < len; ++i) {
                     char c = mText.charAt(i);
@@ -385,8 +387,7 @@ public class Text extends SpriteBatch {
                     }
 
                     addSpriteToBatch(s);
-
-                    System.arraycopy(containingChannel(c), 0, mChannelArr, Utilities.QUAD_CHANNEL * i, Utilities.QUAD_CHANNEL);
+                    ((SpriteHelper) mVertices).setSpriteChannel(i, containingChannel(c));
                 }
 
                 refresh();
@@ -396,10 +397,4 @@ public class Text extends SpriteBatch {
             super.draw(vpMatrix);
         }
     }
-
-    @Nullable
-    @Override
-    public float[] getChannel() {
-        return mChannelArr;
-    }
 }
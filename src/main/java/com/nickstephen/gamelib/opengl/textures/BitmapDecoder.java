@@ -0,0 +1,431 @@
+package com.nickstephen.gamelib.opengl.textures;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import com.nickstephen.gamelib.assets.AssetPack;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>Decodes texture bitmaps from the assets (or mounted {@link AssetPack}s) as cheaply as it
+ * can:</p>
+ * <ul>
+ *     <li>Opaque images (JPEGs, and PNGs without an alpha channel or transparent colour) are
+ *     decoded as RGB_565, half the memory of ARGB_8888, unless the sampler settings ask for full
+ *     colour.</li>
+ *     <li>Stencils (see {@link SamplerSettings#setAlphaOnly(boolean)}) are kept as ALPHA_8, a
+ *     quarter of the memory.</li>
+ *     <li>If the assets were drawn for a denser screen than the device's (see
+ *     {@link #setAssetDensity(int)}) they're downsampled by a power of two while decoding.</li>
+ *     <li>Uploaded bitmaps are given back with {@link #release(Bitmap)} and their memory reused
+ *     by later decodes (API 11 and up), so loading a level doesn't churn the heap.</li>
+ * </ul>
+ * <p>Font textures pack glyphs into separate colour channels, so they have alpha and always stay
+ * ARGB_8888.</p>
+ *
+ * <p>All methods are thread-safe.</p>
+ * @author Nick Stephen
+ */
+public final class BitmapDecoder {
+    /**
+     * The most memory held by bitmaps waiting to be reused (bytes).
+     */
+    public static final int MAX_POOLED_BYTES = 8 << 20;
+
+    private static final boolean CAN_REUSE = Build.VERSION.SDK_INT >= 11;
+    private static final boolean REUSE_ANY_SIZE = Build.VERSION.SDK_INT >= 19;
+    private static final int MAX_POOLED = 4;
+
+    private static final int PNG_ALPHA_MASK = 4; // Set in the colour types with an alpha channel
+    private static final int PNG_IHDR = ('I' << 24) | ('H' << 16) | ('D' << 8) | 'R';
+    private static final int PNG_TRNS = ('t' << 24) | ('R' << 16) | ('N' << 8) | 'S';
+    private static final int PNG_IDAT = ('I' << 24) | ('D' << 16) | ('A' << 8) | 'T';
+
+    private static final Object sLock = new Object();
+    private static final Bitmap[] sPool = new Bitmap[MAX_POOLED];
+    private static int sPooledBytes;
+    private static int sAssetDensity;
+
+    /**
+     * A decoded bitmap and the size of the image it came from, which is bigger if it was
+     * downsampled.
+     */
+    public static final class Decoded {
+        public final Bitmap bitmap;
+        public final int width;
+        public final int height;
+
+        private Decoded(@NotNull Bitmap bitmap, int width, int height) {
+            this.bitmap = bitmap;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * What can be found out about an image from its header.
+     */
+    private static final class Header {
+        int width;
+        int height;
+        boolean opaque;
+    }
+
+    private BitmapDecoder() {} // Don't use
+
+    /**
+     * Set the screen density the texture assets were drawn for. On devices with a lower density
+     * textures are downsampled by the largest power of two that keeps them at least as sharp as
+     * the screen. Texture regions are still given in the assets' pixels.
+     * @param dpi The density (e.g. 320 for xhdpi), or 0 never to downsample (the default)
+     */
+    public static void setAssetDensity(int dpi) {
+        sAssetDensity = dpi;
+    }
+
+    public static int getAssetDensity() {
+        return sAssetDensity;
+    }
+
+    /**
+     * Work out how much to downsample by on this device.
+     * @param context A context
+     * @return The sample size, a power of two
+     */
+    public static int getSampleSize(@NotNull Context context) {
+        final int assetDensity = sAssetDensity;
+        final int deviceDensity = context.getResources().getDisplayMetrics().densityDpi;
+        int sample = 1;
+
+        if (assetDensity > 0 && deviceDensity > 0) {
+            while (assetDensity / (sample * 2) >= deviceDensity) {
+                sample *= 2;
+            }
+        }
+
+        return sample;
+    }
+
+    /**
+     * Decode a texture's bitmap. Blocks, so call off the GL and main threads.
+     * @param context The context to read the assets with
+     * @param name The name of the image
+     * @param sampler The texture's settings
+     * @return The bitmap, or null if the image couldn't be read
+     */
+    public static @Nullable Decoded decode(@NotNull Context context, @NotNull String name,
+                                           @NotNull SamplerSettings sampler) {
+        final Header header = readHeader(context, name);
+        if (header == null) {
+            return null;
+        }
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inSampleSize = getSampleSize(context);
+
+        final Bitmap.Config wanted;
+        if (sampler.getAlphaOnly()) {
+            wanted = Bitmap.Config.ALPHA_8;
+        } else if (header.opaque && sampler.getReducedColour()) {
+            wanted = Bitmap.Config.RGB_565;
+            options.inDither = true;
+        } else {
+            wanted = Bitmap.Config.ARGB_8888;
+        }
+        options.inPreferredConfig = wanted;
+
+        Bitmap bitmap = null;
+        if (CAN_REUSE) {
+            bitmap = decodeReusing(context, name, header, options);
+        }
+        if (bitmap == null) {
+            bitmap = decodeStream(context, name, options);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+
+        if (wanted == Bitmap.Config.ALPHA_8 && bitmap.getConfig() != Bitmap.Config.ALPHA_8) {
+            // Not every decoder can produce alpha only bitmaps
+            final Bitmap alpha = bitmap.extractAlpha();
+            release(bitmap);
+            bitmap = alpha;
+        }
+
+        return new Decoded(bitmap, header.width, header.height);
+    }
+
+    @TargetApi(11)
+    private static @Nullable Bitmap decodeReusing(@NotNull Context context, @NotNull String name,
+                                                  @NotNull Header header, @NotNull BitmapFactory.Options options) {
+        final int sample = options.inSampleSize;
+        final int width = (header.width + sample - 1) / sample;
+        final int height = (header.height + sample - 1) / sample;
+        final Bitmap.Config config = options.inPreferredConfig == Bitmap.Config.RGB_565
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        final Bitmap reuse = takeReusable(width, height, config, sample);
+        if (reuse == null) {
+            options.inMutable = true; // So it can be reused afterwards
+            return null;
+        }
+
+        options.inBitmap = reuse;
+        options.inMutable = true;
+        try {
+            Bitmap bitmap = decodeStream(context, name, options);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        } catch (IllegalArgumentException e) {
+            Twig.debug("BitmapDecoder", "Couldn't reuse a bitmap for " + name + ": " + e.getMessage());
+        }
+
+        options.inBitmap = null;
+        reuse.recycle();
+        return null;
+    }
+
+    private static @Nullable Bitmap decodeStream(@NotNull Context context, @NotNull String name,
+                                                 @NotNull BitmapFactory.Options options) {
+        InputStream is = open(context, name);
+        if (is == null) {
+            return null;
+        }
+
+        try {
+            return BitmapFactory.decodeStream(is, null, options);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                Twig.printStackTrace(e);
+            }
+        }
+    }
+
+    private static @Nullable InputStream open(@NotNull Context context, @NotNull String name) {
+        // Asset packs are read straight from their mapping
+        InputStream is = AssetPack.Manager.openStream(name);
+        if (is == null) {
+            try {
+                is = context.getAssets().open(name);
+            } catch (IOException e) {
+                Twig.printStackTrace(e);
+                return null;
+            }
+        }
+        return is;
+    }
+
+    /**
+     * Find an image's size and whether it's opaque. PNG and JPEG headers are read directly (which
+     * also tells us whether a PNG has any transparency); other formats are asked of BitmapFactory
+     * and assumed to have alpha.
+     */
+    private static @Nullable Header readHeader(@NotNull Context context, @NotNull String name) {
+        InputStream is = open(context, name);
+        if (is == null) {
+            return null;
+        }
+
+        final Header header = new Header();
+        try {
+            if (readPngHeader(is, header)) {
+                return header;
+            }
+        } catch (IOException e) {
+            Twig.printStackTrace(e);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                Twig.printStackTrace(e);
+            }
+        }
+
+        final BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decodeStream(context, name, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        header.width = bounds.outWidth;
+        header.height = bounds.outHeight;
+        header.opaque = "image/jpeg".equals(bounds.outMimeType);
+        return header;
+    }
+
+    /**
+     * Read a PNG's chunks up to the image data.
+     * @return False if it isn't a PNG
+     */
+    private static boolean readPngHeader(@NotNull InputStream is, @NotNull Header header) throws IOException {
+        final byte[] buf = new byte[13];
+        if (!readFully(is, buf, 8) || (buf[0] & 0xFF) != 0x89 || buf[1] != 'P' || buf[2] != 'N' || buf[3] != 'G') {
+            return false;
+        }
+
+        boolean transparent = false;
+        int colourType = -1;
+
+        while (readFully(is, buf, 8)) {
+            final int length = readInt(buf, 0);
+            final int type = readInt(buf, 4);
+
+            if (type == PNG_IHDR) {
+                if (length < 13 || !readFully(is, buf, 13)) {
+                    return false;
+                }
+                header.width = readInt(buf, 0);
+                header.height = readInt(buf, 4);
+                colourType = buf[9];
+                skipFully(is, length - 13 + 4); // Rest and CRC
+            } else if (type == PNG_TRNS) {
+                transparent = true;
+                break;
+            } else if (type == PNG_IDAT) {
+                break; // Anything that matters comes before the data
+            } else {
+                skipFully(is, length + 4);
+            }
+        }
+
+        if (colourType < 0) {
+            return false;
+        }
+
+        // Grey, RGB and palette images are only transparent with a tRNS chunk
+        header.opaque = !transparent && (colourType & PNG_ALPHA_MASK) == 0;
+        return true;
+    }
+
+    private static boolean readFully(@NotNull InputStream is, @NotNull byte[] buf, int count) throws IOException {
+        int read = 0;
+        while (read < count) {
+            final int n = is.read(buf, read, count - read);
+            if (n < 0) {
+                return false;
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    private static void skipFully(@NotNull InputStream is, long count) throws IOException {
+        while (count > 0) {
+            final long skipped = is.skip(count);
+            if (skipped <= 0) {
+                if (is.read() < 0) {
+                    throw new IOException("Unexpected end of image");
+                }
+                count--;
+            } else {
+                count -= skipped;
+            }
+        }
+    }
+
+    private static int readInt(@NotNull byte[] buf, int offset) {
+        return ((buf[offset] & 0xFF) << 24) | ((buf[offset + 1] & 0xFF) << 16)
+                | ((buf[offset + 2] & 0xFF) << 8) | (buf[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Take a pooled bitmap that a decode can write into. Before KitKat it has to be exactly the
+     * same size and config, with no downsampling; after, it just has to be big enough.
+     */
+    private static @Nullable Bitmap takeReusable(int width, int height, @NotNull Bitmap.Config config, int sample) {
+        final int needed = width * height * (config == Bitmap.Config.RGB_565 ? 2 : 4);
+
+        synchronized (sLock) {
+            for (int i = 0; i < MAX_POOLED; i++) {
+                final Bitmap bitmap = sPool[i];
+                if (bitmap == null) {
+                    continue;
+                }
+
+                final boolean fits;
+                if (REUSE_ANY_SIZE) {
+                    fits = byteCount(bitmap) >= needed;
+                } else {
+                    fits = sample == 1 && bitmap.getWidth() == width && bitmap.getHeight() == height
+                            && bitmap.getConfig() == config;
+                }
+
+                if (fits) {
+                    sPool[i] = null;
+                    sPooledBytes -= byteCount(bitmap);
+                    return bitmap;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Give back a bitmap once it's been uploaded. It's kept for reuse if it can be, otherwise it's
+     * recycled straight away.
+     * @param bitmap The bitmap, which mustn't be used afterwards
+     */
+    public static void release(@NotNull Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+
+        if (CAN_REUSE && bitmap.isMutable() && bitmap.getConfig() != Bitmap.Config.ALPHA_8) {
+            final int bytes = byteCount(bitmap);
+
+            synchronized (sLock) {
+                if (sPooledBytes + bytes <= MAX_POOLED_BYTES) {
+                    for (int i = 0; i < MAX_POOLED; i++) {
+                        if (sPool[i] == null) {
+                            sPool[i] = bitmap;
+                            sPooledBytes += bytes;
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        bitmap.recycle();
+    }
+
+    /**
+     * Recycle every bitmap waiting to be reused, e.g. once a level has loaded or when memory is
+     * low.
+     */
+    public static void trim() {
+        synchronized (sLock) {
+            for (int i = 0; i < MAX_POOLED; i++) {
+                if (sPool[i] != null) {
+                    sPool[i].recycle();
+                    sPool[i] = null;
+                }
+            }
+            sPooledBytes = 0;
+        }
+    }
+
+    /**
+     * The size of a bitmap's pixels. Once a bitmap has been reused for a smaller image on KitKat this
+     * is less than its real allocation (getAllocationByteCount() isn't available when compiling
+     * against API 18), which only makes the pool a little more cautious.
+     */
+    private static int byteCount(@NotNull Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
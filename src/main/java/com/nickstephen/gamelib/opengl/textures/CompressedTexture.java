@@ -0,0 +1,376 @@
+package com.nickstephen.gamelib.opengl.textures;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+
+import com.nickstephen.gamelib.opengl.GLCaps;
+import com.nickstephen.gamelib.util.BufferPool;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>An ETC1 compressed texture read from a PKM or KTX file. ETC1 is 4 bits per pixel against the
+ * 32 of a decoded bitmap and goes to the GPU as is, so there's no decode step when loading. It
+ * has no alpha channel, so only use it for opaque images.</p>
+ *
+ * <p>Files are memory mapped from the assets where possible. Assets that were compressed into the
+ * APK can't be mapped and are streamed instead, so add "pkm" and "ktx" to aaptOptions.noCompress
+ * (the data doesn't compress well anyway).</p>
+ *
+ * <p>Each file should have a PNG with the same name next to it ("ground.pkm" and "ground.png") for
+ * devices without GL_OES_compressed_ETC1_RGB8_texture; {@link Texture} falls back to it when the
+ * compressed version can't be used.</p>
+ *
+ * <p>{@link CompressedTextureCheck} checks converted files without needing a device.</p>
+ * @author Nick Stephen
+ */
+public final class CompressedTexture {
+    public static final String PKM_EXTENSION = ".pkm";
+    public static final String KTX_EXTENSION = ".ktx";
+    public static final String FALLBACK_EXTENSION = ".png";
+
+    /**
+     * GL_ETC1_RGB8_OES from GL_OES_compressed_ETC1_RGB8_texture.
+     */
+    public static final int GL_ETC1_RGB8_OES = 0x8D64;
+
+    private static final int PKM_HEADER_SIZE = 16;
+    private static final int PKM_FORMAT_ETC1 = 0;
+    private static final int KTX_HEADER_SIZE = 64;
+    private static final int KTX_ENDIANNESS = 0x04030201;
+    private static final byte[] KTX_IDENTIFIER = new byte[] {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+    private static final int ETC1_BLOCK_SIZE = 8; // Bytes per 4x4 block
+    private static final int STREAM_CHUNK = 16 * 1024;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final ByteBuffer[] mLevels;
+    private ByteBuffer mPooled; // Non-null if the data was streamed into a pooled buffer
+
+    private CompressedTexture(int width, int height, @NotNull ByteBuffer[] levels) {
+        mWidth = width;
+        mHeight = height;
+        mLevels = levels;
+    }
+
+    /**
+     * Check whether a file name is for a compressed texture, going by its extension.
+     * @param name The file name
+     * @return True if it ends in {@link #PKM_EXTENSION} or {@link #KTX_EXTENSION}
+     */
+    public static boolean isCompressedName(@NotNull String name) {
+        final String lower = name.toLowerCase();
+        return lower.endsWith(PKM_EXTENSION) || lower.endsWith(KTX_EXTENSION);
+    }
+
+    /**
+     * Get the name of the bitmap to use instead of a compressed texture.
+     * @param name The name of the compressed texture
+     * @return The same name with a {@link #FALLBACK_EXTENSION} extension
+     */
+    public static @NotNull String getFallbackName(@NotNull String name) {
+        final int dot = name.lastIndexOf('.');
+        return (dot >= 0 ? name.substring(0, dot) : name) + FALLBACK_EXTENSION;
+    }
+
+    /**
+     * Check whether the current GL context can use ETC1 textures. False until the context's
+     * extensions have been read (see {@link GLCaps}).
+     * @return True if it can, false otherwise
+     */
+    public static boolean isSupported() {
+        return GLCaps.hasExtension(GLCaps.OES_COMPRESSED_ETC1_RGB8_TEXTURE);
+    }
+
+    /**
+     * Read a compressed texture from the assets. Can be called from any thread.
+     * @param assets The asset manager
+     * @param name The name of the PKM or KTX file
+     * @return The texture
+     * @throws IOException If the file can't be read or isn't a valid ETC1 texture
+     */
+    public static @NotNull CompressedTexture load(@NotNull AssetManager assets, @NotNull String name) throws IOException {
+        ByteBuffer data;
+        ByteBuffer pooled = null;
+
+        try {
+            data = map(assets.openFd(name));
+        } catch (FileNotFoundException e) {
+            // Compressed in the APK, so it has to be inflated
+            InputStream is = assets.open(name);
+            try {
+                pooled = data = stream(is);
+            } finally {
+                is.close();
+            }
+        }
+
+        try {
+            CompressedTexture texture = parse(data);
+            texture.mPooled = pooled;
+            return texture;
+        } catch (IOException e) {
+            if (pooled != null) {
+                BufferPool.release(pooled);
+            }
+            throw new IOException(name + ": " + e.getMessage());
+        }
+    }
+
+    private static @NotNull ByteBuffer map(@NotNull AssetFileDescriptor fd) throws IOException {
+        FileInputStream is = fd.createInputStream();
+        try {
+            return is.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+        } finally {
+            is.close(); // The mapping stays valid
+        }
+    }
+
+    private static @NotNull ByteBuffer stream(@NotNull InputStream is) throws IOException {
+        // Asset streams know how much is left, so this is normally right first time
+        ByteBuffer data = BufferPool.acquire(Math.max(is.available(), PKM_HEADER_SIZE));
+        final byte[] chunk = new byte[STREAM_CHUNK];
+        int read;
+        int size = 0;
+
+        while ((read = is.read(chunk)) != -1) {
+            if (size + read > data.capacity()) {
+                ByteBuffer grown = BufferPool.acquire(Math.max(data.capacity() * 2, size + read));
+                data.limit(size);
+                data.position(0);
+                grown.put(data);
+                BufferPool.release(data);
+                data = grown;
+            }
+            data.limit(size + read);
+            data.position(size);
+            data.put(chunk, 0, read);
+            size += read;
+        }
+
+        data.position(0);
+        data.limit(size);
+        return data;
+    }
+
+    /**
+     * Read a compressed texture from the contents of a PKM or KTX file. The texture keeps slices
+     * of the buffer rather than copying it.
+     * @param data The file contents, from position 0 to the limit
+     * @return The texture
+     * @throws IOException If the data isn't a valid ETC1 texture
+     */
+    public static @NotNull CompressedTexture parse(@NotNull ByteBuffer data) throws IOException {
+        data = data.duplicate();
+        data.position(0);
+
+        if (data.limit() >= 4 && data.get(0) == 'P' && data.get(1) == 'K' && data.get(2) == 'M'
+                && data.get(3) == ' ') {
+            return parsePkm(data);
+        }
+
+        if (data.limit() >= KTX_IDENTIFIER.length) {
+            boolean ktx = true;
+            for (int i = 0; i < KTX_IDENTIFIER.length; i++) {
+                if (data.get(i) != KTX_IDENTIFIER[i]) {
+                    ktx = false;
+                    break;
+                }
+            }
+
+            if (ktx) {
+                return parseKtx(data);
+            }
+        }
+
+        throw new IOException("Not a PKM or KTX file");
+    }
+
+    private static @NotNull CompressedTexture parsePkm(@NotNull ByteBuffer data) throws IOException {
+        if (data.limit() < PKM_HEADER_SIZE) {
+            throw new IOException("Truncated PKM header");
+        }
+        if (data.get(4) != '1' || data.get(5) != '0') {
+            throw new IOException("Unsupported PKM version " + (char) data.get(4) + (char) data.get(5));
+        }
+
+        data.order(ByteOrder.BIG_ENDIAN);
+        final int format = data.getShort(6) & 0xFFFF;
+        final int paddedWidth = data.getShort(8) & 0xFFFF;
+        final int paddedHeight = data.getShort(10) & 0xFFFF;
+        final int width = data.getShort(12) & 0xFFFF;
+        final int height = data.getShort(14) & 0xFFFF;
+
+        if (format != PKM_FORMAT_ETC1) {
+            throw new IOException("Unsupported PKM format " + format + " (only ETC1 is supported)");
+        }
+        if (width == 0 || height == 0 || paddedWidth != align4(width) || paddedHeight != align4(height)) {
+            throw new IOException("Bad PKM size " + width + "x" + height + " (padded " + paddedWidth
+                    + "x" + paddedHeight + ")");
+        }
+
+        return new CompressedTexture(width, height,
+                new ByteBuffer[] { level(data, PKM_HEADER_SIZE, width, height) });
+    }
+
+    private static @NotNull CompressedTexture parseKtx(@NotNull ByteBuffer data) throws IOException {
+        if (data.limit() < KTX_HEADER_SIZE) {
+            throw new IOException("Truncated KTX header");
+        }
+
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getInt(12) != KTX_ENDIANNESS) {
+            data.order(ByteOrder.BIG_ENDIAN);
+            if (data.getInt(12) != KTX_ENDIANNESS) {
+                throw new IOException("Bad KTX endianness marker");
+            }
+        }
+
+        final int glType = data.getInt(16);
+        final int glFormat = data.getInt(24);
+        final int internalFormat = data.getInt(28);
+        final int width = data.getInt(36);
+        final int height = data.getInt(40);
+        final int depth = data.getInt(44);
+        final int arrayElements = data.getInt(48);
+        final int faces = data.getInt(52);
+        final int mipLevels = Math.max(1, data.getInt(56));
+        final int keyValueBytes = data.getInt(60);
+
+        if (glType != 0 || glFormat != 0 || internalFormat != GL_ETC1_RGB8_OES) {
+            throw new IOException("Unsupported KTX format 0x" + Integer.toHexString(internalFormat)
+                    + " (only ETC1 is supported)");
+        }
+        if (width <= 0 || height <= 0 || depth != 0 || arrayElements != 0 || faces != 1) {
+            throw new IOException("Only plain 2D KTX textures are supported");
+        }
+        if (mipLevels > 1 && (1 << (mipLevels - 1)) > Math.max(width, height)) {
+            throw new IOException("Too many mipmap levels (" + mipLevels + ") for " + width + "x" + height);
+        }
+
+        final ByteBuffer[] levels = new ByteBuffer[mipLevels];
+        int offset = KTX_HEADER_SIZE + keyValueBytes;
+
+        for (int i = 0; i < mipLevels; i++) {
+            if (offset < 0 || offset + 4 > data.limit()) {
+                throw new IOException("Truncated KTX data at level " + i);
+            }
+
+            final int levelWidth = Math.max(1, width >> i);
+            final int levelHeight = Math.max(1, height >> i);
+            final int imageSize = data.getInt(offset);
+            if (imageSize != dataSize(levelWidth, levelHeight)) {
+                throw new IOException("Bad KTX image size " + imageSize + " at level " + i);
+            }
+
+            levels[i] = level(data, offset + 4, levelWidth, levelHeight);
+            offset += 4 + imageSize; // ETC1 levels are multiples of 8 bytes, so never padded
+        }
+
+        return new CompressedTexture(width, height, levels);
+    }
+
+    private static @NotNull ByteBuffer level(@NotNull ByteBuffer data, int offset, int width, int height) throws IOException {
+        final int size = dataSize(width, height);
+        if (offset + size > data.limit()) {
+            throw new IOException("Truncated image data (" + (data.limit() - offset) + " of " + size + " bytes)");
+        }
+
+        ByteBuffer level = data.duplicate();
+        level.limit(offset + size);
+        level.position(offset);
+        return level.slice();
+    }
+
+    private static int align4(int value) {
+        return (value + 3) & ~3;
+    }
+
+    private static int dataSize(int width, int height) {
+        return (align4(width) / 4) * (align4(height) / 4) * ETC1_BLOCK_SIZE;
+    }
+
+    /**
+     * Upload to the bound GL_TEXTURE_2D. Must be called on the GL thread.
+     * @param mipmaps True to upload every level, false for just the first
+     */
+    public void upload(boolean mipmaps) {
+        final int levels = mipmaps ? mLevels.length : 1;
+        for (int i = 0; i < levels; i++) {
+            final int width = Math.max(1, mWidth >> i);
+            final int height = Math.max(1, mHeight >> i);
+            GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, i, GL_ETC1_RGB8_OES, width, height, 0,
+                    mLevels[i].remaining(), mLevels[i]);
+        }
+    }
+
+    /**
+     * Let go of the data. Call once the texture's been uploaded.
+     */
+    public void release() {
+        if (mPooled != null) {
+            BufferPool.release(mPooled);
+            mPooled = null;
+        }
+    }
+
+    /**
+     * Get the width of the image (the data is padded to a multiple of 4 pixels).
+     * @return The width (pixels)
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Get the height of the image (the data is padded to a multiple of 4 pixels).
+     * @return The height (pixels)
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Get the number of mipmap levels in the file. Always 1 for PKM files.
+     * @return The number of levels
+     */
+    public int getLevelCount() {
+        return mLevels.length;
+    }
+
+    /**
+     * Check whether the file has every mipmap level, down to 1x1. GL won't sample a texture with
+     * some missing.
+     * @return True if it has them all, false otherwise
+     */
+    public boolean hasFullMipChain() {
+        int levels = 1;
+        for (int size = Math.max(mWidth, mHeight); size > 1; size >>= 1) {
+            levels++;
+        }
+        return mLevels.length == levels;
+    }
+
+    /**
+     * Get the size of the data that goes to the GPU.
+     * @return The number of bytes, over all levels
+     */
+    public int getDataSize() {
+        int size = 0;
+        for (int i = 0; i < mLevels.length; i++) {
+            size += mLevels[i].remaining();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,60 @@
+package com.nickstephen.gamelib.opengl.textures;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Checks textures converted for {@link CompressedTexture} (with etc1tool or similar) on a
+ * desktop JVM, so it can be run as part of the asset build rather than finding out on a device.
+ * Doesn't touch any Android classes.</p>
+ * @author Nick Stephen
+ */
+public final class CompressedTextureCheck {
+    private CompressedTextureCheck() {} // Don't use
+
+    /**
+     * Every file named on the command line is parsed, and its size and levels printed. Problems are
+     * printed to stderr, and the exit status is 1 if any of the files can't be used (2 if none were
+     * given).
+     * <pre>java -cp gamelib.jar com.nickstephen.gamelib.opengl.textures.CompressedTextureCheck assets/*.pkm</pre>
+     * @param args The files to check
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: CompressedTextureCheck <file>...");
+            System.exit(2);
+        }
+
+        boolean ok = true;
+
+        for (String arg : args) {
+            final File file = new File(arg);
+            try {
+                FileInputStream is = new FileInputStream(file);
+                try {
+                    CompressedTexture texture = CompressedTexture.parse(
+                            is.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+                    System.out.println(arg + ": ETC1 " + texture.getWidth() + "x" + texture.getHeight() + ", "
+                            + texture.getLevelCount() + " level(s), " + texture.getDataSize() + " bytes ("
+                            + (texture.getWidth() * texture.getHeight() * 4) + " as a bitmap)");
+                } finally {
+                    is.close();
+                }
+
+                if (!new File(CompressedTexture.getFallbackName(arg)).exists()) {
+                    System.err.println(arg + ": warning, no " + CompressedTexture.getFallbackName(file.getName())
+                            + " for devices without ETC1");
+                }
+            } catch (IOException e) {
+                System.err.println(arg + ": " + e.getMessage());
+                ok = false;
+            }
+        }
+
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
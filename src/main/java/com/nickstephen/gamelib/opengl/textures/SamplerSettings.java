@@ -0,0 +1,257 @@
+package com.nickstephen.gamelib.opengl.textures;
+
+import android.opengl.GLES20;
+
+import com.nickstephen.gamelib.opengl.GLCaps;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>How a texture is sampled: its filters, wrapping, whether it has mipmaps and how much
+ * anisotropic filtering to use, and how a bitmap texture is stored (see {@link BitmapDecoder}).
+ * Given to {@link Texture.Manager#get(String, com.nickstephen.gamelib.opengl.shapes.Shape, android.content.Context, SamplerSettings)}
+ * and applied when the texture is uploaded.</p>
+ *
+ * <p>Mipmaps are worth having for anything drawn smaller than its real size (sprites in a zoomed
+ * out container, for example): each pixel then samples a level close to its own size, which looks
+ * better and is much kinder to the GPU's texture cache. They cost a third more memory. Bitmaps get
+ * their mipmaps generated on upload; compressed textures can't be, so they need the levels in the
+ * KTX file.</p>
+ *
+ * <p>OpenGL ES 2.0 only allows mipmaps and repeat wrapping on power of two textures unless the
+ * driver has GL_OES_texture_npot. Where they aren't allowed they're quietly turned off.</p>
+ * @author Nick Stephen
+ */
+public class SamplerSettings {
+    /**
+     * GL_TEXTURE_MAX_ANISOTROPY_EXT from GL_EXT_texture_filter_anisotropic.
+     */
+    public static final int GL_TEXTURE_MAX_ANISOTROPY_EXT = 0x84FE;
+
+    private int mMinFilter = GLES20.GL_LINEAR;
+    private int mMagFilter = GLES20.GL_LINEAR;
+    private int mWrapS = GLES20.GL_CLAMP_TO_EDGE;
+    private int mWrapT = GLES20.GL_CLAMP_TO_EDGE;
+    private boolean mMipmaps;
+    private float mAnisotropy = 1.f;
+    private boolean mReducedColour = true;
+    private boolean mAlphaOnly;
+
+    /**
+     * Linear filtering, clamped to the edges and no mipmaps. What textures used before there were
+     * settings.
+     */
+    public SamplerSettings() {
+    }
+
+    public SamplerSettings(@NotNull SamplerSettings other) {
+        mMinFilter = other.mMinFilter;
+        mMagFilter = other.mMagFilter;
+        mWrapS = other.mWrapS;
+        mWrapT = other.mWrapT;
+        mMipmaps = other.mMipmaps;
+        mAnisotropy = other.mAnisotropy;
+        mReducedColour = other.mReducedColour;
+        mAlphaOnly = other.mAlphaOnly;
+    }
+
+    /**
+     * Settings for textures that get drawn smaller than they are: trilinear filtering with mipmaps.
+     * @return New settings
+     */
+    public static @NotNull SamplerSettings mipmapped() {
+        return new SamplerSettings().setMipmaps(true);
+    }
+
+    /**
+     * Settings for pixel art and tile atlases: nearest filtering with no mipmaps, so neighbouring
+     * pixels never bleed into each other.
+     * @return New settings
+     */
+    public static @NotNull SamplerSettings pixelated() {
+        return new SamplerSettings().setFilters(GLES20.GL_NEAREST, GLES20.GL_NEAREST);
+    }
+
+    /**
+     * Settings for stencils and masks, where only the alpha channel is used: stored as ALPHA_8.
+     * @return New settings
+     */
+    public static @NotNull SamplerSettings stencil() {
+        return new SamplerSettings().setAlphaOnly(true);
+    }
+
+    /**
+     * Set the filters. With mipmaps on, GL_LINEAR and GL_NEAREST minification become
+     * GL_LINEAR_MIPMAP_LINEAR and GL_NEAREST_MIPMAP_NEAREST; with them off the mipmap filters
+     * become their plain versions.
+     * @param minFilter The minification filter
+     * @param magFilter The magnification filter, GL_LINEAR or GL_NEAREST
+     * @return This object
+     */
+    public SamplerSettings setFilters(int minFilter, int magFilter) {
+        mMinFilter = minFilter;
+        mMagFilter = magFilter;
+        return this;
+    }
+
+    /**
+     * Set the wrap modes.
+     * @param wrapS GL_CLAMP_TO_EDGE, GL_REPEAT or GL_MIRRORED_REPEAT for the u axis
+     * @param wrapT The same for the v axis
+     * @return This object
+     */
+    public SamplerSettings setWrap(int wrapS, int wrapT) {
+        mWrapS = wrapS;
+        mWrapT = wrapT;
+        return this;
+    }
+
+    /**
+     * Turn mipmaps on or off.
+     * @param mipmaps True to use mipmaps
+     * @return This object
+     */
+    public SamplerSettings setMipmaps(boolean mipmaps) {
+        mMipmaps = mipmaps;
+        return this;
+    }
+
+    /**
+     * Set the amount of anisotropic filtering, which keeps textures sharp when they're squashed
+     * more in one direction than the other. Clamped to what the driver supports and ignored
+     * without GL_EXT_texture_filter_anisotropic.
+     * @param anisotropy The maximum anisotropy, 1 for none
+     * @return This object
+     */
+    public SamplerSettings setAnisotropy(float anisotropy) {
+        mAnisotropy = anisotropy < 1.f ? 1.f : anisotropy;
+        return this;
+    }
+
+    /**
+     * Let opaque bitmaps be stored as RGB_565, which halves their memory but can band on smooth
+     * gradients. On by default.
+     * @param reducedColour True to allow RGB_565
+     * @return This object
+     */
+    public SamplerSettings setReducedColour(boolean reducedColour) {
+        mReducedColour = reducedColour;
+        return this;
+    }
+
+    /**
+     * Keep only the alpha channel of a bitmap (ALPHA_8). Sampling the texture then gives black
+     * with the image's alpha, so only use it with shaders that just need the alpha, not for font
+     * textures (their glyphs are in the colour channels).
+     * @param alphaOnly True to keep only the alpha channel
+     * @return This object
+     */
+    public SamplerSettings setAlphaOnly(boolean alphaOnly) {
+        mAlphaOnly = alphaOnly;
+        return this;
+    }
+
+    public boolean getMipmaps() {
+        return mMipmaps;
+    }
+
+    public boolean getReducedColour() {
+        return mReducedColour;
+    }
+
+    public boolean getAlphaOnly() {
+        return mAlphaOnly;
+    }
+
+    /**
+     * Check whether a texture of a size can have mipmaps in the current context.
+     * @param width The width of the texture (pixels)
+     * @param height The height of the texture (pixels)
+     * @return True if mipmaps are on and allowed for the size, false otherwise
+     */
+    public boolean usesMipmaps(int width, int height) {
+        return mMipmaps && (GLCaps.hasNpotTextures() || (isPowerOfTwo(width) && isPowerOfTwo(height)));
+    }
+
+    /**
+     * Set the parameters of the bound GL_TEXTURE_2D. Must be called on the GL thread.
+     * @param width The width of the texture (pixels)
+     * @param height The height of the texture (pixels)
+     * @param mipmapped Whether the texture has a full set of mipmaps
+     */
+    void apply(int width, int height, boolean mipmapped) {
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, minFilter(mipmapped));
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, mMagFilter);
+
+        int wrapS = mWrapS, wrapT = mWrapT;
+        if ((wrapS != GLES20.GL_CLAMP_TO_EDGE || wrapT != GLES20.GL_CLAMP_TO_EDGE) && !GLCaps.hasNpotTextures()
+                && !(isPowerOfTwo(width) && isPowerOfTwo(height))) {
+            Twig.debug("SamplerSettings", "Can't repeat a " + width + "x" + height + " texture, clamping instead");
+            wrapS = wrapT = GLES20.GL_CLAMP_TO_EDGE;
+        }
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, wrapS);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, wrapT);
+
+        if (mAnisotropy > 1.f) {
+            final float max = GLCaps.getMaxAnisotropy();
+            if (max > 1.f) {
+                GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GL_TEXTURE_MAX_ANISOTROPY_EXT,
+                        mAnisotropy > max ? max : mAnisotropy);
+            }
+        }
+    }
+
+    private int minFilter(boolean mipmapped) {
+        switch (mMinFilter) {
+            case GLES20.GL_LINEAR:
+            case GLES20.GL_LINEAR_MIPMAP_LINEAR:
+            case GLES20.GL_LINEAR_MIPMAP_NEAREST:
+                if (!mipmapped) {
+                    return GLES20.GL_LINEAR;
+                }
+                return mMinFilter == GLES20.GL_LINEAR ? GLES20.GL_LINEAR_MIPMAP_LINEAR : mMinFilter;
+            case GLES20.GL_NEAREST:
+            case GLES20.GL_NEAREST_MIPMAP_NEAREST:
+            case GLES20.GL_NEAREST_MIPMAP_LINEAR:
+                if (!mipmapped) {
+                    return GLES20.GL_NEAREST;
+                }
+                return mMinFilter == GLES20.GL_NEAREST ? GLES20.GL_NEAREST_MIPMAP_NEAREST : mMinFilter;
+            default:
+                return mMinFilter;
+        }
+    }
+
+    static boolean isPowerOfTwo(int value) {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SamplerSettings)) {
+            return false;
+        }
+
+        SamplerSettings other = (SamplerSettings) o;
+        return mMinFilter == other.mMinFilter && mMagFilter == other.mMagFilter && mWrapS == other.mWrapS
+                && mWrapT == other.mWrapT && mMipmaps == other.mMipmaps && mAnisotropy == other.mAnisotropy
+                && mReducedColour == other.mReducedColour && mAlphaOnly == other.mAlphaOnly;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mMinFilter;
+        result = 31 * result + mMagFilter;
+        result = 31 * result + mWrapS;
+        result = 31 * result + mWrapT;
+        result = 31 * result + (mMipmaps ? 1 : 0);
+        result = 31 * result + Float.floatToIntBits(mAnisotropy);
+        result = 31 * result + (mReducedColour ? 1 : 0);
+        result = 31 * result + (mAlphaOnly ? 1 : 0);
+        return result;
+    }
+}
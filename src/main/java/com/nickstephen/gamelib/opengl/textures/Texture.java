@@ -1,12 +1,10 @@
 package com.nickstephen.gamelib.opengl.textures;
 
 import android.content.Context;
-import android.content.res.AssetManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
 import android.os.AsyncTask;
 
+import com.nickstephen.gamelib.assets.AssetPack;
 import com.nickstephen.gamelib.opengl.shapes.Shape;
 import com.nickstephen.gamelib.opengl.interfaces.IDisposable;
 import com.nickstephen.gamelib.run.GameLoop;
@@ -14,9 +12,10 @@ import com.nickstephen.gamelib.util.Pair;
 import com.nickstephen.lib.Twig;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -31,24 +30,62 @@ public class Texture {
         private final static Manager sInst = new Manager();
 
         public static Client get(@NotNull String name, @NotNull Shape shape, @NotNull Context texLoadContext) {
+            return get(name, shape, texLoadContext, null);
+        }
+
+        /**
+         * Get a texture, loading it if it isn't already. Textures are shared by name, so the
+         * sampler settings only count the first time a texture is asked for.
+         * @param name The name of the texture in the assets
+         * @param shape The shape that will use the texture
+         * @param texLoadContext The context to load the texture with
+         * @param sampler How the texture should be sampled, or null for linear filtering with no
+         *                mipmaps
+         * @return A client of the texture for the shape
+         */
+        public static Client get(@NotNull String name, @NotNull Shape shape, @NotNull Context texLoadContext,
+                                 @Nullable SamplerSettings sampler) {
+            return acquire(name, sampler).new Client(shape, texLoadContext);
+        }
+
+        /**
+         * Get a texture without a shape to use it, e.g. to load it ahead of time (see
+         * {@link com.nickstephen.gamelib.assets.Preloader}). Each call must be matched by a call to
+         * {@link #release(Texture)}.
+         * @param name The name of the texture in the assets
+         * @param sampler How the texture should be sampled, or null for linear filtering with no
+         *                mipmaps. Only counts if the texture isn't already in use.
+         * @return The texture
+         */
+        public static @NotNull Texture acquire(@NotNull String name, @Nullable SamplerSettings sampler) {
             synchronized (sInst.mNamedTexts) {
                 for (int i = sInst.mNamedTexts.size() - 1; i >= 0; --i) {
                     Pair<Texture, Integer> p = sInst.mNamedTexts.get(i);
 
                     if (p.left.mName.compareTo(name) == 0) {
+                        if (sampler != null && !sampler.equals(p.left.mSampler)) {
+                            Twig.debug("Texture", name + " is already loaded with other sampler settings, using those");
+                        }
+
                         ++p.right;
-                        return p.left.new Client(shape, texLoadContext);
+                        return p.left;
                     }
                 }
 
                 Texture t = new Texture();
                 t.mName = name;
+                t.mSampler = sampler != null ? new SamplerSettings(sampler) : new SamplerSettings();
                 sInst.mNamedTexts.add(new Pair<Texture, Integer>(t, 1));
-                return t.new Client(shape, texLoadContext);
+                return t;
             }
         }
 
-        private static void release(@NotNull Texture t) {
+        /**
+         * Give back a texture from {@link #acquire(String, SamplerSettings)}. It's deleted when
+         * nothing is using it any more, so call on the GL thread.
+         * @param t The texture
+         */
+        public static void release(@NotNull Texture t) {
             synchronized (sInst.mNamedTexts) {
                 for (int i = sInst.mNamedTexts.size() - 1; i >= 0; --i) {
                     Pair<Texture, Integer> p = sInst.mNamedTexts.get(i);
@@ -72,39 +109,17 @@ public class Texture {
 
     }
 
-    protected class Loader extends AsyncTask<Void, Void, Bitmap> {
+    protected class Loader extends AsyncTask<Void, Void, Boolean> {
         protected final Context mContext;
-        protected final String mFilename;
 
-        public Loader(@NotNull Context loadContext, @NotNull String fileName) {
+        public Loader(@NotNull Context loadContext) {
             mContext = loadContext;
-            mFilename = fileName;
         }
 
         @Override
-        protected Bitmap doInBackground(Void... voids) {
-            AssetManager assets = mContext.getAssets();
-            InputStream is;
-            try {
-                is = assets.open(mFilename);
-            } catch (IOException e) {
-                Twig.printStackTrace(e);
-                return null;
-            }
-
-            Bitmap raw = BitmapFactory.decodeStream(is);
-
-            try {
-                is.close();
-            } catch (IOException e) {
-                Twig.printStackTrace(e);
-                return null;
-            }
-
-            return raw;
+        protected Boolean doInBackground(Void... voids) {
+            return decode(mContext);
         }
-
-
     }
 
     protected static @NotNull TextureRegion[] setupTextureRegion(float rawW, float rawH, int spritesX, int spritesY) {
@@ -176,11 +191,17 @@ public class Texture {
     }
 
     private String mName;
+    private SamplerSettings mSampler;
     protected int mId;
     protected float mRawWidth;
     protected float mRawHeight;
     protected Loader mTexLoader;
 
+    // Decoded data waiting for upload, and whether a decode is running. Guarded by this.
+    private BitmapDecoder.Decoded mPendingBitmap;
+    private CompressedTexture mPendingCompressed;
+    private boolean mDecoding;
+
     private Texture() {}
 
     private void delete() {
@@ -189,17 +210,142 @@ public class Texture {
 
             mId = TEX_ID_UNASSIGNED;
         }
+
+        synchronized (this) {
+            if (mPendingBitmap != null) {
+                BitmapDecoder.release(mPendingBitmap.bitmap);
+                mPendingBitmap = null;
+            }
+            if (mPendingCompressed != null) {
+                mPendingCompressed.release();
+                mPendingCompressed = null;
+            }
+        }
+    }
+
+    public @NotNull String getName() {
+        return mName;
+    }
+
+    /**
+     * Check whether the texture is loaded into OpenGL.
+     * @return True if it is, false otherwise
+     */
+    public boolean isResident() {
+        return mId != TEX_ID_UNASSIGNED;
+    }
+
+    /**
+     * Read and decode the texture, ready for {@link #upload()}. Blocks, so call off the GL and main
+     * threads. Does nothing if the texture has already been decoded or loaded, or another thread
+     * is decoding it.
+     * @param context The context to load the texture with
+     * @return False if the texture couldn't be read, true otherwise
+     */
+    public boolean decode(@NotNull Context context) {
+        synchronized (this) {
+            if (mId != TEX_ID_UNASSIGNED || mDecoding || mPendingBitmap != null || mPendingCompressed != null) {
+                return true;
+            }
+            mDecoding = true;
+        }
+
+        BitmapDecoder.Decoded bitmap = null;
+        CompressedTexture compressed = null;
+        try {
+            String bitmapName = mName;
+
+            if (CompressedTexture.isCompressedName(mName)) {
+                if (CompressedTexture.isSupported()) {
+                    try {
+                        ByteBuffer packed = AssetPack.Manager.get(mName);
+                        if (packed != null) {
+                            compressed = CompressedTexture.parse(packed);
+                        } else {
+                            compressed = CompressedTexture.load(context.getAssets(), mName);
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        Twig.printStackTrace(e);
+                    }
+                } else {
+                    Twig.debug("Texture", "No ETC1 support, using the bitmap for " + mName);
+                }
+
+                bitmapName = CompressedTexture.getFallbackName(mName);
+            }
+
+            bitmap = BitmapDecoder.decode(context, bitmapName, mSampler);
+            return bitmap != null;
+        } finally {
+            synchronized (this) {
+                mPendingBitmap = bitmap;
+                mPendingCompressed = compressed;
+                mDecoding = false;
+            }
+        }
+    }
+
+    /**
+     * Upload the texture if it's been decoded. Call on the GL thread.
+     * @return True if the texture is loaded into OpenGL, false if it hasn't been decoded yet
+     */
+    public boolean upload() {
+        if (mId != TEX_ID_UNASSIGNED) {
+            return true;
+        }
+
+        final BitmapDecoder.Decoded bitmap;
+        final CompressedTexture compressed;
+        synchronized (this) {
+            bitmap = mPendingBitmap;
+            compressed = mPendingCompressed;
+            mPendingBitmap = null;
+            mPendingCompressed = null;
+        }
+
+        if (compressed != null) {
+            mRawWidth = compressed.getWidth();
+            mRawHeight = compressed.getHeight();
+            mId = TextureHelper.loadTexture(compressed, mSampler);
+        } else if (bitmap != null) {
+            // Regions stay in the image's pixels even if it was downsampled
+            mRawWidth = bitmap.width;
+            mRawHeight = bitmap.height;
+            mId = TextureHelper.uploadTexture(bitmap.bitmap, mSampler);
+            BitmapDecoder.release(bitmap.bitmap);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether a thread is decoding the texture right now.
+     * @return True if it's being decoded, false otherwise
+     */
+    public synchronized boolean isDecoding() {
+        return mDecoding;
     }
 
     protected int getId(final @NotNull Context context) {
         if (mId == TEX_ID_UNASSIGNED) {
+            if (upload()) {
+                return mId; // Decoded ahead of time
+            }
+
             if (mTexLoader == null) {
+                if (isDecoding()) {
+                    return TEX_ID_UNASSIGNED; // A preloader has it
+                }
+
                 GameLoop.getInstanceUnsafe().getMainThreadHandler().post(new Runnable() {
                     @Override
                     public void run() {
                         synchronized (Texture.this) {
                             if (mTexLoader == null) {
-                                mTexLoader = new Loader(context, mName);
+                                mTexLoader = new Loader(context);
                                 mTexLoader.execute();
                             }
                         }
@@ -209,7 +355,7 @@ public class Texture {
                 return TEX_ID_UNASSIGNED;
             } else {
                 if (mTexLoader.getStatus() == AsyncTask.Status.FINISHED) {
-                    Bitmap result = null;
+                    Boolean result = null;
                     try {
                         result = mTexLoader.get();
                     } catch (InterruptedException e) {
@@ -218,16 +364,16 @@ public class Texture {
                         Twig.printStackTrace(e);
                     }
 
-                    if (result != null) {
-                        mId = TextureHelper.loadTexture(result);
-                        mRawWidth = result.getWidth();
-                        mRawHeight = result.getHeight();
-                    } else {
-                        Twig.debug("Texture", "Error loading texture!");
-                        throw new RuntimeException("Error loading texture!");
-                    }
-
                     mTexLoader = null;
+
+                    if (!upload()) {
+                        if (result == null || !result) {
+                            Twig.debug("Texture", "Error loading texture!");
+                            throw new RuntimeException("Error loading texture!");
+                        }
+
+                        return TEX_ID_UNASSIGNED; // Someone else is still decoding it
+                    }
                 } else {
                     return TEX_ID_UNASSIGNED;
                 }
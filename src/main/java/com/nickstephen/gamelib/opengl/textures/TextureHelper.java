@@ -7,6 +7,10 @@ import android.opengl.GLES20;
 import android.opengl.GLUtils;
 
 import com.nickstephen.gamelib.opengl.Utilities;
+import com.nickstephen.gamelib.perf.Trace;
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
 
 /**
  * A helper class for loading textures.
@@ -34,11 +38,40 @@ public class TextureHelper {
     }
 
     /**
-     * Load a texture into OpenGL from a Bitmap
+     * Load a texture into OpenGL from a Bitmap, with linear filtering, no mipmaps and clamped edges
+     * @param bitmap The bitmap to convert to a texture
+     * @return The id of the texture as loaded into OpenGL
+     */
+    public static int loadTexture(Bitmap bitmap) {
+        return loadTexture(bitmap, new SamplerSettings());
+    }
+
+    /**
+     * Load a texture into OpenGL from a Bitmap. Mipmaps are generated if the settings want them.
+     * The bitmap is recycled afterwards.
+     * @param bitmap The bitmap to convert to a texture
+     * @param sampler How the texture should be sampled
+     * @return The id of the texture as loaded into OpenGL
+     */
+    public static int loadTexture(@NotNull Bitmap bitmap, @NotNull SamplerSettings sampler)
+    {
+        final int id = uploadTexture(bitmap, sampler);
+
+        // Recycle the bitmap, since its data has been loaded into OpenGL.
+        bitmap.recycle();
+
+        return id;
+    }
+
+    /**
+     * Load a texture into OpenGL from a Bitmap, leaving the bitmap alone so its memory can be
+     * reused (see {@link BitmapDecoder#release(Bitmap)}). RGB_565 and ALPHA_8 bitmaps become
+     * GL_RGB and GL_ALPHA textures, using the same smaller amount of GPU memory.
      * @param bitmap The bitmap to convert to a texture
+     * @param sampler How the texture should be sampled
      * @return The id of the texture as loaded into OpenGL
      */
-    public static int loadTexture(Bitmap bitmap)
+    public static int uploadTexture(@NotNull Bitmap bitmap, @NotNull SamplerSettings sampler)
     {
         final int[] textureHandle = new int[1];
 
@@ -47,20 +80,31 @@ public class TextureHelper {
 
         if (textureHandle[0] != 0)
         {
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            final boolean mipmaps = sampler.usesMipmaps(width, height);
+            // Rows of 16 and 8 bit pixels aren't always a multiple of 4 bytes long
+            final boolean packed = bitmap.getConfig() != Bitmap.Config.ARGB_8888;
+
             // Bind to the texture in OpenGL
             GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
 
-            // Set filtering
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE );  // Set U Wrapping
-            GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE );  // Set V Wrapping
+            // Set filtering and wrapping
+            sampler.apply(width, height, mipmaps);
 
             // Load the bitmap into the bound texture.
+            Trace.begin("Texture upload");
+            if (packed) {
+                GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+            }
             GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
-
-            // Recycle the bitmap, since its data has been loaded into OpenGL.
-            bitmap.recycle();
+            if (packed) {
+                GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+            }
+            if (mipmaps) {
+                GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+            }
+            Trace.end();
         }
 
         if (textureHandle[0] == 0)
@@ -70,4 +114,56 @@ public class TextureHelper {
 
         return textureHandle[0];
     }
+
+    /**
+     * Load a compressed texture into OpenGL with linear filtering, no mipmaps and clamped edges.
+     * The texture's data is released afterwards. Check {@link CompressedTexture#isSupported()}
+     * first.
+     * @param texture The compressed texture
+     * @return The id of the texture as loaded into OpenGL
+     */
+    public static int loadTexture(@NotNull CompressedTexture texture) {
+        return loadTexture(texture, new SamplerSettings());
+    }
+
+    /**
+     * Load a compressed texture into OpenGL. Compressed textures can't have mipmaps generated, so
+     * they're only mipmapped if the file has every level. The texture's data is released
+     * afterwards. Check {@link CompressedTexture#isSupported()} first.
+     * @param texture The compressed texture
+     * @param sampler How the texture should be sampled
+     * @return The id of the texture as loaded into OpenGL
+     */
+    public static int loadTexture(@NotNull CompressedTexture texture, @NotNull SamplerSettings sampler) {
+        final int[] textureHandle = new int[1];
+
+        GLES20.glGenTextures(1, textureHandle, 0);
+        Utilities.checkGlError("glGenTextures");
+
+        if (textureHandle[0] != 0) {
+            final int width = texture.getWidth();
+            final int height = texture.getHeight();
+            boolean mipmaps = sampler.usesMipmaps(width, height);
+            if (mipmaps && !texture.hasFullMipChain()) {
+                Twig.debug("TextureHelper", "Compressed texture only has " + texture.getLevelCount()
+                        + " mipmap level(s), not using mipmaps");
+                mipmaps = false;
+            }
+
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+            sampler.apply(width, height, mipmaps);
+
+            Trace.begin("Compressed texture upload");
+            texture.upload(mipmaps);
+            Trace.end();
+        }
+
+        texture.release();
+
+        if (textureHandle[0] == 0) {
+            throw new RuntimeException("Error loading texture.");
+        }
+
+        return textureHandle[0];
+    }
 }
@@ -0,0 +1,141 @@
+package com.nickstephen.gamelib.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>A fixed-memory histogram of non-negative long values (e.g. nanosecond timings) in the style of
+ * an HDR histogram. Values are put into log-linear buckets: each power of 2 is split into
+ * {@link #SUB_BUCKETS} linear sub-buckets, so any recorded value is reported to within about 3%
+ * regardless of its magnitude. Recording a value never allocates.</p>
+ *
+ * <p>Values up to {@link #MAX_TRACKABLE} (~18 minutes in nanos) are tracked, anything larger is
+ * clamped (although the true maximum is still kept).</p>
+ * @author Nick Stephen
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    public static final long MAX_TRACKABLE = (1L << MAX_MAGNITUDE) - 1;
+
+    private final int[] mCounts = new int[bucketIndex(MAX_TRACKABLE) + 1];
+    private long mTotalCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax;
+
+    /**
+     * Record a single value.
+     * @param value The value (negative values are treated as 0)
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        mCounts[bucketIndex(Math.min(value, MAX_TRACKABLE))]++;
+        mTotalCount++;
+        mSum += value;
+
+        if (value < mMin) {
+            mMin = value;
+        }
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    /**
+     * Get the value at a given percentile.
+     * @param percentile The percentile (0 - 100)
+     * @return The value at the percentile, or 0 if nothing has been recorded
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil((percentile / 100.0) * mTotalCount);
+        if (target < 1) {
+            target = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+
+            if (seen >= target) {
+                return Math.min(bucketMidpoint(i), mMax);
+            }
+        }
+
+        return mMax;
+    }
+
+    public synchronized long getCount() {
+        return mTotalCount;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    public synchronized long getMin() {
+        return mTotalCount == 0 ? 0 : mMin;
+    }
+
+    public synchronized double getMean() {
+        return mTotalCount == 0 ? 0.0 : (double) mSum / (double) mTotalCount;
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mTotalCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    /**
+     * Write a one line summary of the histogram, scaling the values by a divisor (e.g. 1000 to
+     * print nanos as micros).
+     * @param sb The builder to append to
+     * @param divisor The amount to divide each value by
+     */
+    public synchronized void appendSummary(@NotNull StringBuilder sb, double divisor) {
+        sb.append("n=").append(mTotalCount)
+                .append(" mean=").append(format(getMean() / divisor))
+                .append(" p50=").append(format(getValueAtPercentile(50.0) / divisor))
+                .append(" p95=").append(format(getValueAtPercentile(95.0) / divisor))
+                .append(" p99=").append(format(getValueAtPercentile(99.0) / divisor))
+                .append(" max=").append(format(mMax / divisor));
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 100.0) / 100.0);
+    }
+
+    /**
+     * Work out the bucket for a value. The first 2 * {@link #SUB_BUCKETS} values each get their own
+     * bucket, after that each power of 2 gets {@link #SUB_BUCKETS} buckets.
+     */
+    static int bucketIndex(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, msb - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >> shift);
+    }
+
+    /**
+     * The inverse of {@link #bucketIndex(long)}, giving the middle of the range of values in a bucket.
+     */
+    static long bucketMidpoint(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long lowest = ((long) index - ((long) shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+}
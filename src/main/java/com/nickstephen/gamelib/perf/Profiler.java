@@ -0,0 +1,190 @@
+package com.nickstephen.gamelib.perf;
+
+import com.nickstephen.lib.Twig;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>Records nanosecond timings of each phase of the {@link com.nickstephen.gamelib.run.GameLoop}
+ * tick and the {@link com.nickstephen.gamelib.opengl.Renderer} frame into a
+ * {@link com.nickstephen.gamelib.perf.Histogram} per phase.</p>
+ *
+ * <p>Profiling is off by default, in which case the hooks are just a check of a boolean. Turn it
+ * on with {@link #setEnabled(boolean)} and query the results with {@link #getHistogram(Phase)} or
+ * print them all with {@link #dump()}.</p>
+ *
+ * <p>Usage of the hooks:</p>
+ * <pre>
+ * long t = Profiler.start();
+ * doInput();
+ * t = Profiler.lap(Phase.TICK_INPUT, t);
+ * doTasks();
+ * Profiler.stop(Phase.TICK_TASKS, t);</pre>
+ * @author Nick Stephen
+ */
+public final class Profiler {
+    private static final String TAG = "Profiler";
+
+    /**
+     * The phases that are timed.
+     */
+    public enum Phase {
+        /** Handling raw touch samples and gesture events */
+        TICK_INPUT,
+        /** Updating the game loop's tasks */
+        TICK_TASKS,
+        /** The game logic implementation */
+        TICK_GAME_LOGIC,
+        /** Updating the running animations */
+        TICK_ANIMATIONS,
+        /** The whole tick */
+        TICK_TOTAL,
+        /** Running the queued GL thread actions */
+        FRAME_GL_ACTIONS,
+        /** Walking the layout tree (the total tree draw time minus the draw calls) */
+        FRAME_TREE_WALK,
+        /** Binding vertices and issuing draw calls */
+        FRAME_DRAW_CALLS,
+        /** The whole frame */
+        FRAME_TOTAL,
+        /** The time between the start of consecutive frames */
+        FRAME_INTERVAL
+    }
+
+    private static final Phase[] sPhases = Phase.values();
+    private static final Histogram[] sHistograms = new Histogram[sPhases.length];
+    private static final long[] sAccumulated = new long[sPhases.length];
+    private static volatile boolean sEnabled = false;
+
+    static {
+        for (int i = 0; i < sHistograms.length; i++) {
+            sHistograms[i] = new Histogram();
+        }
+    }
+
+    private Profiler() {} // Don't use
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Turn profiling on or off. Recorded values are kept when turning it off.
+     * @param enabled True to record timings, false otherwise
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Start timing a phase.
+     * @return The start time to pass to {@link #stop(Phase, long)} or {@link #lap(Phase, long)}, or
+     * 0 if profiling is disabled
+     */
+    public static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Finish timing a phase and record the time taken.
+     * @param phase The phase that was timed
+     * @param start The value returned from {@link #start()}
+     */
+    public static void stop(@NotNull Phase phase, long start) {
+        if (start != 0 && sEnabled) {
+            sHistograms[phase.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Finish timing a phase and start timing the next one, reusing the same clock read.
+     * @param phase The phase that was timed
+     * @param start The value returned from {@link #start()} or a previous lap
+     * @return The start time for the next phase
+     */
+    public static long lap(@NotNull Phase phase, long start) {
+        if (start == 0 || !sEnabled) {
+            return start();
+        }
+
+        long now = System.nanoTime();
+        sHistograms[phase.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Add the time since start to a running total for a phase, rather than recording it as a sample.
+     * Used for phases that are made up of many small pieces, like the draw calls in a frame. Not
+     * thread safe, so each phase must only be accumulated on one thread.
+     * @param phase The phase being timed
+     * @param start The value returned from {@link #start()}
+     */
+    public static void accumulate(@NotNull Phase phase, long start) {
+        if (start != 0 && sEnabled) {
+            sAccumulated[phase.ordinal()] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Record the running total of a phase as a single sample and reset the total.
+     * @param phase The phase that has been accumulated
+     * @return The total that was recorded (nanos)
+     */
+    public static long commit(@NotNull Phase phase) {
+        long total = sAccumulated[phase.ordinal()];
+        sAccumulated[phase.ordinal()] = 0;
+
+        if (sEnabled) {
+            sHistograms[phase.ordinal()].record(total);
+        }
+
+        return total;
+    }
+
+    /**
+     * Record a time directly.
+     * @param phase The phase
+     * @param nanos The time taken
+     */
+    public static void record(@NotNull Phase phase, long nanos) {
+        if (sEnabled) {
+            sHistograms[phase.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Get the histogram of timings for a phase.
+     * @param phase The phase
+     * @return The histogram (nanos)
+     */
+    public static @NotNull Histogram getHistogram(@NotNull Phase phase) {
+        return sHistograms[phase.ordinal()];
+    }
+
+    /**
+     * Clear all of the recorded timings.
+     */
+    public static void reset() {
+        for (int i = 0; i < sHistograms.length; i++) {
+            sHistograms[i].reset();
+        }
+    }
+
+    /**
+     * Write a summary of every phase (in micros) to the debug log.
+     * @return The summary that was logged
+     */
+    public static @NotNull String dump() {
+        StringBuilder sb = new StringBuilder("Timings (us):\n");
+
+        for (int i = 0; i < sPhases.length; i++) {
+            sb.append(sPhases[i].name()).append(": ");
+            sHistograms[i].appendSummary(sb, 1000.0);
+            sb.append('\n');
+        }
+
+        String summary = sb.toString();
+        Twig.debug(TAG, summary);
+        return summary;
+    }
+}
@@ -0,0 +1,285 @@
+package com.nickstephen.gamelib.perf;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>A low overhead recorder of begin/ end events for looking at how the game ticks, GL frames and
+ * loading work overlap in time. Events are written into a ring buffer owned by the thread that
+ * records them so recording never locks or allocates (apart from creating the buffer the first time
+ * a thread records anything). Once the buffer is full the oldest events are overwritten.</p>
+ *
+ * <p>Tracing is off by default, in which case every hook is just a check of a boolean until it's
+ * first turned on. Each thread keeps track of which of its open sections were recorded, so turning
+ * tracing on or off in the middle of a section never leaves an unmatched begin or end. The calls
+ * are also listed in proguard-rules.txt as having no side effects so they're stripped completely
+ * from release builds that run ProGuard.</p>
+ *
+ * <p>The recorded events can be written out with {@link #export(java.io.Writer)} in the Chrome
+ * trace event format, which can be opened in chrome://tracing or Perfetto. Call
+ * {@link #setEnabled(boolean)} with false before exporting, otherwise events recorded during the
+ * export may be only partly written. The buffers of threads that have finished are dropped once
+ * they've been exported or cleared.</p>
+ *
+ * <p>Names must be constant strings (not built on the fly) to keep the hooks allocation free.</p>
+ * @author Nick Stephen
+ */
+public final class Trace {
+    /**
+     * The number of events each thread can hold before it starts overwriting the oldest. Must be a
+     * power of 2.
+     */
+    public static final int BUFFER_CAPACITY = 16384;
+    private static final int BUFFER_MASK = BUFFER_CAPACITY - 1;
+    /**
+     * How deeply sections can be nested and still be matched up properly.
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private static final byte PHASE_BEGIN = 'B';
+    private static final byte PHASE_END = 'E';
+    private static final byte PHASE_INSTANT = 'i';
+
+    private static final long sBaseTime = System.nanoTime();
+    private static final List<Buffer> sBuffers = new CopyOnWriteArrayList<Buffer>();
+    private static final ThreadLocal<Buffer> sLocalBuffer = new ThreadLocal<Buffer>();
+    private static volatile boolean sEnabled = false;
+    // Set the first time tracing is turned on, after which the hooks have to track nesting
+    private static volatile boolean sUsed = false;
+
+    private Trace() {} // Don't use
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Turn tracing on or off. Recorded events are kept when turning it off.
+     * @param enabled True to record events, false otherwise
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled) {
+            sUsed = true;
+        }
+        sEnabled = enabled;
+    }
+
+    /**
+     * Get the calling thread's buffer.
+     * @param create Whether to create it if the thread doesn't have one yet
+     * @return The buffer, or null if there isn't one and create is false
+     */
+    private static @Nullable Buffer getBuffer(boolean create) {
+        Buffer buffer = sLocalBuffer.get();
+        if (buffer == null && create) {
+            buffer = new Buffer(Thread.currentThread());
+            sLocalBuffer.set(buffer);
+            sBuffers.add(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Mark the start of a section of work on the calling thread. Must be matched by a call to
+     * {@link #end()} on the same thread.
+     * @param name The name of the section
+     */
+    public static void begin(@NotNull String name) {
+        if (sUsed) {
+            final boolean enabled = sEnabled;
+            // A thread without a buffer has nothing open, so it only needs one to record
+            final Buffer buffer = getBuffer(enabled);
+            if (buffer != null) {
+                buffer.begin(name, enabled);
+            }
+        }
+    }
+
+    /**
+     * Mark the end of the most recently started section on the calling thread. The end is recorded
+     * if the section's begin was, whether or not tracing is still on.
+     */
+    public static void end() {
+        if (sUsed) {
+            final Buffer buffer = getBuffer(false);
+            if (buffer != null) {
+                buffer.end();
+            }
+        }
+    }
+
+    /**
+     * Mark a single point in time on the calling thread.
+     * @param name The name of the event
+     */
+    public static void instant(@NotNull String name) {
+        if (sEnabled) {
+            getBuffer(true).put(PHASE_INSTANT, name);
+        }
+    }
+
+    /**
+     * Throw away all of the recorded events.
+     */
+    public static void clear() {
+        for (Buffer buffer : sBuffers) {
+            buffer.clear();
+            if (buffer.isDead()) {
+                sBuffers.remove(buffer);
+            }
+        }
+    }
+
+    /**
+     * Write all of the recorded events, from every thread, in the Chrome trace event JSON format.
+     * @param out The writer to write to. Isn't closed.
+     * @throws IOException If writing fails
+     */
+    public static void export(@NotNull Writer out) throws IOException {
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+        boolean first = true;
+        for (Buffer buffer : sBuffers) {
+            // Check first so an event recorded just before the thread finished isn't lost
+            final boolean dead = buffer.isDead();
+            first = buffer.export(out, first);
+            if (dead) {
+                sBuffers.remove(buffer);
+            }
+        }
+
+        out.write("]}\n");
+        out.flush();
+    }
+
+    /**
+     * Write a string as a JSON string literal.
+     */
+    private static void writeString(@NotNull Writer out, @NotNull String s) throws IOException {
+        out.write('"');
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * A single thread's ring buffer of events. Only the owning thread writes to it.
+     */
+    private static class Buffer {
+        private final WeakReference<Thread> mThread;
+        private final long mThreadId;
+        private final String mThreadName;
+        private final long[] mTimes = new long[BUFFER_CAPACITY];
+        private final String[] mNames = new String[BUFFER_CAPACITY];
+        private final byte[] mPhases = new byte[BUFFER_CAPACITY];
+
+        // Whether each open section's begin was recorded. Only used by the owning thread.
+        private final boolean[] mRecorded = new boolean[MAX_DEPTH];
+        private int mDepth;
+
+        private volatile int mCount;
+        private volatile int mStart;
+
+        Buffer(@NotNull Thread thread) {
+            mThread = new WeakReference<Thread>(thread);
+            mThreadId = thread.getId();
+            mThreadName = thread.getName();
+        }
+
+        /**
+         * Check whether the owning thread has finished, so nothing more will be recorded.
+         */
+        boolean isDead() {
+            final Thread thread = mThread.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        void begin(@NotNull String name, boolean record) {
+            if (mDepth < MAX_DEPTH) {
+                mRecorded[mDepth] = record;
+            }
+            mDepth++;
+
+            if (record) {
+                put(PHASE_BEGIN, name);
+            }
+        }
+
+        void end() {
+            if (mDepth == 0) {
+                return; // No begin to match
+            }
+            mDepth--;
+
+            if (mDepth < MAX_DEPTH && mRecorded[mDepth]) {
+                put(PHASE_END, null);
+            }
+        }
+
+        void put(byte phase, @Nullable String name) {
+            final int count = mCount;
+            final int i = count & BUFFER_MASK;
+
+            mTimes[i] = System.nanoTime();
+            mNames[i] = name;
+            mPhases[i] = phase;
+
+            mCount = count + 1; // Publish the event
+        }
+
+        void clear() {
+            mStart = mCount;
+        }
+
+        boolean export(@NotNull Writer out, boolean first) throws IOException {
+            final int count = mCount;
+            final int available = Math.min(count - mStart, BUFFER_CAPACITY);
+
+            if (!first) {
+                out.write(',');
+            }
+            out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            out.write(Long.toString(mThreadId));
+            out.write(",\"args\":{\"name\":");
+            writeString(out, mThreadName);
+            out.write("}}");
+
+            for (int n = count - available; n != count; n++) {
+                final int i = n & BUFFER_MASK;
+
+                out.write(",\n{\"ph\":\"");
+                out.write((char) mPhases[i]);
+                out.write("\",\"pid\":1,\"tid\":");
+                out.write(Long.toString(mThreadId));
+                out.write(",\"ts\":");
+                out.write(Double.toString((mTimes[i] - sBaseTime) / 1000.0));
+
+                if (mNames[i] != null) {
+                    out.write(",\"name\":");
+                    writeString(out, mNames[i]);
+                }
+                if (mPhases[i] == PHASE_INSTANT) {
+                    out.write(",\"s\":\"t\"");
+                }
+                out.write('}');
+            }
+
+            return false;
+        }
+    }
+}
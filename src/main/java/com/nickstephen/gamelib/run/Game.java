@@ -2,16 +2,20 @@ package com.nickstephen.gamelib.run;
 
 import android.content.Context;
 
+import com.nickstephen.gamelib.assets.IOnPreloadL;
+import com.nickstephen.gamelib.assets.PreloadManifest;
+import com.nickstephen.gamelib.assets.Preloader;
 import com.nickstephen.gamelib.opengl.OpenGLSurfaceView;
 import com.nickstephen.gamelib.opengl.shapes.Shape;
 import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
+import com.nickstephen.gamelib.opengl.gestures.TouchStream;
 import com.nickstephen.gamelib.opengl.layout.RootContainer;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Created by Nick Stephen on 23/04/2014.
@@ -29,8 +33,10 @@ public abstract class Game {
     private OpenGLSurfaceView mSurface;
     protected RootContainer mActiveView;
     private int mWidth, mHeight;
-    private final List<Runnable> mActions = new LinkedList<Runnable>();
-    private final List<GestureEvent> mInputs = new LinkedList<GestureEvent>();
+    private final Queue<Runnable> mActions = new ConcurrentLinkedQueue<Runnable>();
+    private final InputQueue mInputs = new InputQueue();
+    private final TouchStream mTouchStream = new TouchStream();
+    private volatile boolean mRawTouch = false;
     protected Context mContext;
 
     protected Game(@NotNull Context context) {
@@ -50,19 +56,91 @@ public abstract class Game {
         return mActiveView;
     }
 
+    /**
+     * Queue an action to be run on the GL thread before a frame is drawn. Can be called from any
+     * thread.
+     * @param r The action
+     */
     public void addGLThreadAction(@NotNull Runnable r) {
         mActions.add(r);
+
+        requestRender();
+    }
+
+    public @Nullable Runnable getGLThreadAction() {
+        return mActions.poll();
+    }
+
+    public boolean hasGLThreadActions() {
+        return !mActions.isEmpty();
+    }
+
+    /**
+     * Ask the surface to draw a new frame. Only has an effect when the surface is rendering on demand,
+     * and usually isn't needed since changes to the active view request frames themselves.
+     */
+    public void requestRender() {
+        OpenGLSurfaceView surface = mSurface;
+        if (surface != null) {
+            surface.requestRender();
+        }
     }
 
-    public Runnable getGLThreadAction() {
-        if (mActions.size() > 0) {
-            return mActions.remove(0);
+    /**
+     * Change the view that's drawn and receives input, and request a frame to show it.
+     * @param view The new view
+     */
+    protected void setActiveView(@Nullable RootContainer view) {
+        synchronized (this) {
+            mActiveView = view;
         }
-        return null;
+
+        requestRender();
+    }
+
+    /**
+     * Load everything a view needs with a {@link Preloader}, then make it the active view. The
+     * current view (a loading screen, say) keeps being drawn until everything is loaded. The
+     * preloader and the manifest are disposed once the view is active, so create the view's shapes
+     * before calling this.
+     * @param view The new view
+     * @param manifest What the view needs
+     * @param listener A listener for the loading progress, or null
+     * @return The preloader, which has been started
+     */
+    protected @NotNull Preloader setActiveViewWhenLoaded(@NotNull final RootContainer view,
+                                                         @NotNull final PreloadManifest manifest,
+                                                         @Nullable final IOnPreloadL listener) {
+        final Preloader preloader = new Preloader(mContext, manifest);
+        preloader.setListener(new IOnPreloadL() {
+            @Override
+            public void onPreloadProgress(Preloader p, int loaded, int total) {
+                if (listener != null) {
+                    listener.onPreloadProgress(p, loaded, total);
+                }
+            }
+
+            @Override
+            public void onPreloadComplete(Preloader p) {
+                setActiveView(view);
+
+                if (listener != null) {
+                    listener.onPreloadComplete(p);
+                }
+
+                p.dispose();
+                manifest.dispose(); // Give back its program references
+            }
+        });
+
+        preloader.start();
+        return preloader;
     }
 
     public void addInput(@NotNull GestureEvent e) {
-        if (!consumeInputEvent(e)) {
+        if (consumeInputEvent(e)) {
+            e.recycle();
+        } else {
             mInputs.add(e);
         }
     }
@@ -82,6 +160,7 @@ public abstract class Game {
     /**
      * Sub-classes should override this method if there are certain inputs that should be immediately
      * used before the next game thread tick. Be careful! This will be called on the GUI thread.
+     * Consumed events are recycled as soon as this returns, so don't keep a reference to them.
      * @param e The event to consume
      * @return True to signal the event was consumed and should not be added to the input queue, false otherwise
      */
@@ -93,11 +172,41 @@ public abstract class Game {
         mInputs.clear();
     }
 
+    /**
+     * Set whether every raw touch sample (all pointers, including the historical samples batched
+     * into each {@link android.view.MotionEvent}) should be written into the
+     * {@link #getTouchStream() touch stream} as well as being passed to the gesture detector. Off by
+     * default.
+     * @param enabled True to record raw touch samples, false otherwise
+     */
+    public void setRawTouchEnabled(boolean enabled) {
+        mRawTouch = enabled;
+    }
+
+    public boolean isRawTouchEnabled() {
+        return mRawTouch;
+    }
+
+    /**
+     * Get the stream of raw touch samples. Written on the GUI thread and drained on the game thread
+     * at the start of each tick.
+     * @return The touch stream
+     */
+    public @NotNull TouchStream getTouchStream() {
+        return mTouchStream;
+    }
+
+    /**
+     * Set whether scrolls that pile up in the input queue (e.g. because the game thread stalled)
+     * should be merged into a single scroll before they reach the game thread. On by default.
+     * @param coalesce True to merge consecutive scrolls of the same gesture, false otherwise
+     */
+    public void setCoalesceScrolls(boolean coalesce) {
+        mInputs.setCoalescing(coalesce);
+    }
+
     @Nullable GestureEvent popInput() {
-        if (mInputs.size() > 0) {
-            return mInputs.remove(0);
-        }
-        return null;
+        return mInputs.poll();
     }
 
     public void destroy() {
@@ -5,12 +5,17 @@ import android.os.Handler;
 import com.nickstephen.gamelib.anim.Animation;
 import com.nickstephen.gamelib.opengl.shapes.Shape;
 import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
+import com.nickstephen.gamelib.opengl.gestures.ITouchSampleL;
 import com.nickstephen.gamelib.opengl.layout.RootContainer;
+import com.nickstephen.gamelib.perf.Profiler;
+import com.nickstephen.gamelib.perf.Trace;
 import com.nickstephen.gamelib.run.tasking.ITask;
 import com.nickstephen.lib.Twig;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,14 +32,25 @@ public class GameLoop implements Runnable {
     public static final long[] HZ_60 = new long[] { 16, 17, 17 };
     public static final long[] HZ_80 = new long[] { 12, 13 };
 
+    /**
+     * The default maximum time (nanos) spent handling user input in a single tick.
+     */
+    public static final long DEFAULT_INPUT_BUDGET = 4000000L;
+
     protected static GameLoop sInstance;
+    private static final ThreadLocal<GameLoop> sBoundInstance = new ThreadLocal<GameLoop>();
 
     /**
      * Get a reference to the GameLoop object. There are no checks for null values so you should
-     * make sure the instance is intialised before using.
+     * make sure the instance is intialised before using. If the calling thread is stepping a headless
+     * loop (see {@link #runHeadless(int)}) then that loop is returned instead of the global instance.
      * @return A GameLoop instance
      */
     public static GameLoop getInstanceUnsafe() {
+        GameLoop bound = sBoundInstance.get();
+        if (bound != null) {
+            return bound;
+        }
         return sInstance;
     }
 
@@ -46,23 +62,72 @@ public class GameLoop implements Runnable {
     private List<ITask> mTasks = new ArrayList<ITask>();
     private boolean mPause = true;
     private boolean mIsAlive = false;
-    private Handler mHandler;
+    private final Handler mHandler;
+    private final IClock mClock;
+    private final ManualClock mManualClock;
+    private Game mGame;
+    private InputRecorder mRecorder;
+    private InputReplay mReplay;
+    private long mTickTime;
+    private volatile boolean mInTick;
     private Shape mFocusShape;
+    private long mInputBudget = DEFAULT_INPUT_BUDGET;
+    private final List<ITouchSampleL> mTouchListeners = new ArrayList<ITouchSampleL>();
+    private final ITouchSampleL mTouchDispatcher = new ITouchSampleL() {
+        @Override
+        public void onTouchSample(int pointerId, int action, float x, float y, long time) {
+            for (int i = 0, len = mTouchListeners.size(); i < len; i++) {
+                mTouchListeners.get(i).onTouchSample(pointerId, action, x, y, time);
+            }
+        }
+
+        @Override
+        public void onTouchSamplesEnd() {
+            for (int i = 0, len = mTouchListeners.size(); i < len; i++) {
+                mTouchListeners.get(i).onTouchSamplesEnd();
+            }
+        }
+    };
 
     /**
      * Construct the GameLoop (doesn't start it).
      * @param updateHz An array of times (millis) between each tick.
      */
     protected GameLoop(@NotNull long[] updateHz) {
+        this(updateHz, WallClock.INSTANCE, new Handler());
+    }
+
+    /**
+     * Construct a GameLoop (doesn't start it) with a custom clock.
+     * @param updateHz An array of times (millis) between each tick.
+     * @param clock The clock to read the time of each tick from
+     * @param mainThreadHandler A handler attached to the main thread, or null if there isn't one
+     */
+    protected GameLoop(@NotNull long[] updateHz, @NotNull IClock clock, @Nullable Handler mainThreadHandler) {
         mUpdateHzArray = updateHz;
         mAnimations = new ArrayList<Animation>();
-        mHandler = new Handler();
+        mHandler = mainThreadHandler;
+        mClock = clock;
+        mManualClock = (clock instanceof ManualClock) ? (ManualClock) clock : null;
+    }
+
+    /**
+     * Construct a headless GameLoop for simulations. It has no main thread handler and its time only
+     * moves forward by the update interval each time it's stepped (see {@link #step()} and
+     * {@link #runHeadless(int)}), so it can run as fast as the CPU allows. It doesn't need a
+     * {@link com.nickstephen.gamelib.run.Game} unless you attach one with {@link #setGame(Game)}.
+     * @param updateHz An array of times (millis) between each tick.
+     * @param clock The clock that will be advanced on each step
+     */
+    protected GameLoop(@NotNull long[] updateHz, @NotNull ManualClock clock) {
+        this(updateHz, clock, null);
+        mInputBudget = 0; // Wall clock budgets would make the simulation non-deterministic
     }
 
     @Override
     public void run() {
         mIsAlive = true;
-        long nextUpdate = System.currentTimeMillis();
+        long nextUpdate = mClock.now();
 
         while (!mStop) {
             if (mPause) {
@@ -74,7 +139,7 @@ public class GameLoop implements Runnable {
                 continue;
             }
 
-            long now = System.currentTimeMillis();
+            long now = mClock.now();
 
             if (now < nextUpdate) {
                 try {
@@ -87,7 +152,7 @@ public class GameLoop implements Runnable {
 
             tick(now);
 
-            long post = System.currentTimeMillis();
+            long post = mClock.now();
             long update = updateInterval();
 
             if ((post - now) >= update) {
@@ -101,20 +166,197 @@ public class GameLoop implements Runnable {
         onExit();
     }
 
+    /**
+     * Perform a single tick of a headless loop at the current time and then advance the clock by
+     * the update interval. Doesn't sleep. The loop is bound to the calling thread for the duration of
+     * the tick so animations started during it are added to this loop.
+     * @throws IllegalStateException If the loop wasn't constructed with a {@link ManualClock}
+     */
+    public void step() {
+        if (mManualClock == null) {
+            throw new IllegalStateException("Only loops with a ManualClock can be stepped");
+        }
+
+        GameLoop prev = sBoundInstance.get();
+        sBoundInstance.set(this);
+        try {
+            stepBound();
+        } finally {
+            sBoundInstance.set(prev);
+        }
+    }
+
+    /**
+     * Run a number of ticks of a headless loop back to back on the calling thread, as fast as
+     * possible. Stops early if {@link #stop()} is called.
+     * @param ticks The number of ticks to run
+     * @return The number of ticks actually run
+     * @throws IllegalStateException If the loop wasn't constructed with a {@link ManualClock}
+     */
+    public int runHeadless(int ticks) {
+        if (mManualClock == null) {
+            throw new IllegalStateException("Only loops with a ManualClock can be stepped");
+        }
+
+        GameLoop prev = sBoundInstance.get();
+        sBoundInstance.set(this);
+        mIsAlive = true;
+
+        int i = 0;
+        try {
+            while (i < ticks && !mStop && stepBound()) {
+                i++;
+            }
+
+            if (mStop) {
+                onExit();
+            }
+        } finally {
+            sBoundInstance.set(prev);
+        }
+
+        return i;
+    }
+
+    /**
+     * @return False if there was nothing left to replay, true otherwise
+     */
+    private boolean stepBound() {
+        if (mReplay != null) {
+            if (!nextReplayTick()) {
+                return false;
+            }
+            mManualClock.set(mReplay.getTime());
+        }
+
+        tick(mManualClock.now());
+        mManualClock.advance(updateInterval());
+        mTicks++;
+        return true;
+    }
+
     /**
      * Perform the required actions at every tick of the game. Updates the game logic and any
      * animations.
-     * @param now The current system time (millis)
+     * @param now The current time (millis)
      */
     private void tick(long now) {
-        {
+        Trace.begin("GameLoop.tick");
+        final long tickStart = Profiler.start();
+        long t = tickStart;
+
+        // A headless loop has already read the replay's tick and set its clock to match
+        if (mReplay != null && mManualClock == null && nextReplayTick()) {
+            now = mReplay.getTime(); // Run at the recorded time so animations match the recording
+        }
+        mTickTime = now;
+        mInTick = true;
+
+        final Game game = getGame();
+        if (mRecorder != null) {
+            try {
+                mRecorder.beginTick(mTicks, now);
+            } catch (IOException ex) {
+                recordingFailed(ex);
+            }
+        }
+
+        if (mReplay != null) {
             GestureEvent e;
-            //noinspection StatementWithEmptyBody
-            while ((e = Game.getInstanceUnsafe().popInput()) != null && !handleUserInput(e)) {}
+            while ((e = mReplay.poll()) != null) {
+                handleAndRecord(e);
+            }
+
+            // Live input is thrown away whilst replaying so it doesn't pile up in the queues
+            if (game != null) {
+                game.getTouchStream().clear();
+                game.clearInputs();
+            }
+        } else if (game != null) {
+            if (mTouchListeners.isEmpty()) {
+                game.getTouchStream().clear();
+            } else {
+                game.getTouchStream().drain(mTouchDispatcher);
+            }
+
+            long inputStart = System.nanoTime();
+            GestureEvent e;
+            while ((e = game.popInput()) != null) {
+                boolean stop = handleAndRecord(e);
+
+                if (stop || (mInputBudget > 0 && System.nanoTime() - inputStart >= mInputBudget)) {
+                    // Anything left over stays queued for the next tick
+                    break;
+                }
+            }
         }
+        if (mRecorder != null) {
+            try {
+                mRecorder.endTick();
+            } catch (IOException ex) {
+                recordingFailed(ex);
+            }
+        }
+        t = Profiler.lap(Profiler.Phase.TICK_INPUT, t);
         updateTasks();
+        t = Profiler.lap(Profiler.Phase.TICK_TASKS, t);
         updateGameLogic();
+        t = Profiler.lap(Profiler.Phase.TICK_GAME_LOGIC, t);
+        if (!mAnimations.isEmpty() && game != null) {
+            // Animations may change things that don't invalidate the shape themselves
+            RootContainer root = game.getActiveView();
+            if (root != null) {
+                root.markDirty();
+            }
+        }
         updateAnimations(now);
+        Profiler.stop(Profiler.Phase.TICK_ANIMATIONS, t);
+        Profiler.stop(Profiler.Phase.TICK_TOTAL, tickStart);
+        mInTick = false;
+        Trace.end();
+    }
+
+    /**
+     * Pass an event to {@link #handleUserInput(GestureEvent)}, record it if recording and then
+     * recycle it.
+     */
+    private boolean handleAndRecord(@NotNull GestureEvent e) {
+        if (mRecorder != null) {
+            try {
+                mRecorder.record(e);
+            } catch (IOException ex) {
+                recordingFailed(ex);
+            }
+        }
+
+        boolean stop = handleUserInput(e);
+        e.recycle();
+        return stop;
+    }
+
+    private void recordingFailed(@NotNull IOException e) {
+        Twig.printStackTrace(e);
+        Twig.debug("GameLoop", "Input recording failed, stopping recording");
+        mRecorder = null;
+    }
+
+    /**
+     * Move the replay on to its next tick, stopping the loop if it's finished.
+     * @return True if there was another tick
+     */
+    private boolean nextReplayTick() {
+        try {
+            if (mReplay.nextTick()) {
+                return true;
+            }
+        } catch (IOException e) {
+            Twig.printStackTrace(e);
+        }
+
+        Twig.debug("GameLoop", "Input replay finished at tick " + mTicks);
+        mReplay = null;
+        stop();
+        return false;
     }
 
     /**
@@ -128,6 +370,7 @@ public class GameLoop implements Runnable {
      * recommended to filter FINISH as it may mess with the {@link #mFocusShape})
      *
      * The method will never be called with a null input (if there are no more gestures in the queue).
+     * The event is recycled as soon as this method returns so don't keep a reference to it.
      *
      * NOTE: This is called from the Game thread, not the main thread!
      * @param e The event to consume
@@ -146,7 +389,8 @@ public class GameLoop implements Runnable {
             }
         }
 
-        RootContainer root = Game.getInstanceUnsafe().getActiveView();
+        Game game = getGame();
+        RootContainer root = (game != null) ? game.getActiveView() : null;
         if (root != null) {
             return root.onGestureEvent(e);
         }
@@ -254,7 +498,7 @@ public class GameLoop implements Runnable {
     }
 
     public void cancelAnimations(boolean graceful) {
-        long now = System.currentTimeMillis();
+        long now = getTime();
 
         if (graceful) {
             int len = mAnimations.size();
@@ -265,10 +509,89 @@ public class GameLoop implements Runnable {
         mAnimations.clear();
     }
 
-    public Handler getMainThreadHandler() {
+    /**
+     * Get a handler for posting work to the main thread.
+     * @return The handler, or null if this is a headless loop
+     */
+    public @Nullable Handler getMainThreadHandler() {
         return mHandler;
     }
 
+    /**
+     * Get the current time according to this loop. During a tick this is the time the tick is
+     * running at (which, when replaying, is the recorded time), so everything started in the same
+     * tick agrees on the time. Animations should use this rather than the system time so they run
+     * correctly in headless simulations and replays.
+     * @return The time (millis)
+     */
+    public long getTime() {
+        if (mInTick) {
+            return mTickTime;
+        }
+        return mClock.now();
+    }
+
+    public @NotNull IClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Get the number of ticks that have been run.
+     * @return The tick count
+     */
+    public int getTickCount() {
+        return mTicks;
+    }
+
+    /**
+     * Get the game whose input queue and active view this loop uses.
+     * @return The game set with {@link #setGame(Game)} or, for a normal (non-headless) loop without
+     * one, the global game instance
+     */
+    public @Nullable Game getGame() {
+        if (mGame == null && mManualClock == null) {
+            return Game.getInstanceUnsafe();
+        }
+        return mGame;
+    }
+
+    /**
+     * Set the game whose input queue and active view this loop uses. Only necessary for running
+     * several loops at once; a normal loop uses the global game instance.
+     * @param game The game, or null to use the default
+     * @return This instance, for method chaining
+     */
+    public GameLoop setGame(@Nullable Game game) {
+        mGame = game;
+        return this;
+    }
+
+    /**
+     * Record the gesture events consumed on every tick, with the tick number and clock value, so the
+     * run can be replayed later. Must be set from the game thread or before the loop is started. If
+     * writing fails the recorder is dropped. The recorder isn't closed by the loop.
+     * @param recorder The recorder, or null to stop recording
+     * @return This instance, for method chaining
+     */
+    public GameLoop setInputRecorder(@Nullable InputRecorder recorder) {
+        mRecorder = recorder;
+        return this;
+    }
+
+    /**
+     * Feed the loop's input from a recorded log instead of the live input queue, which is emptied
+     * and ignored every tick. Each tick runs at its recorded time. For an exact reproduction of the
+     * recorded run the loop should be headless (constructed with a {@link ManualClock}), in which
+     * case the clock is also driven by the log and ticks aren't paced by the wall clock. The loop is
+     * stopped once the log runs out. Must be set from the game thread or before the loop is started.
+     * @param replay The replay, or null to go back to live input
+     * @return This instance, for method chaining
+     */
+    public GameLoop setInputReplay(@Nullable InputReplay replay) {
+        mReplay = replay;
+        return this;
+    }
+
     public boolean removeAnimation(Animation anim) {
         return mAnimations.remove(anim);
     }
@@ -295,6 +618,36 @@ public class GameLoop implements Runnable {
         mFocusShape = shape;
     }
 
+    /**
+     * Set the maximum time to spend handling user input in a single tick. Once it's used up any
+     * remaining events are left in the queue until the next tick so that a burst of input can't
+     * starve {@link #updateGameLogic()}. At least one event is always handled per tick.
+     * @param nanos The time budget (nanos). Set <= 0 for no limit.
+     */
+    public void setInputTimeBudget(long nanos) {
+        mInputBudget = nanos;
+    }
+
+    /**
+     * Add a listener for the raw touch samples (see
+     * {@link com.nickstephen.gamelib.run.Game#setRawTouchEnabled(boolean)}). Samples are delivered
+     * at the start of each tick, before any gesture events. Must be called from the game thread.
+     * @param listener The listener to add
+     */
+    public void addTouchSampleListener(@NotNull ITouchSampleL listener) {
+        mTouchListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with {@link #addTouchSampleListener(ITouchSampleL)}. Must be called
+     * from the game thread.
+     * @param listener The listener to remove
+     * @return True if the listener was removed, false otherwise
+     */
+    public boolean removeTouchSampleListener(@NotNull ITouchSampleL listener) {
+        return mTouchListeners.remove(listener);
+    }
+
     public boolean addTask(@NotNull ITask task) {
         if (!task.start()) {
             return false;
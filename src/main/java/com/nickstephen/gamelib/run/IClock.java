@@ -0,0 +1,15 @@
+package com.nickstephen.gamelib.run;
+
+/**
+ * A source of the current time for a {@link com.nickstephen.gamelib.run.GameLoop}. Swapping the
+ * clock lets the loop (and the animations it runs) be driven by something other than the wall clock,
+ * e.g. a {@link com.nickstephen.gamelib.run.ManualClock} for headless simulations.
+ * @author Nick Stephen
+ */
+public interface IClock {
+    /**
+     * Get the current time.
+     * @return The time (millis)
+     */
+    public long now();
+}
@@ -0,0 +1,110 @@
+package com.nickstephen.gamelib.run;
+
+import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
+import com.nickstephen.gamelib.opengl.gestures.GestureScroll;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>A FIFO queue of gesture events passed from the GUI thread to the game thread. Backed by a ring
+ * buffer that only grows (never shrinks) so adding and popping events doesn't allocate once it's
+ * reached its working size.</p>
+ *
+ * <p>If coalescing is on (the default), a scroll that's added straight after another scroll of the
+ * same gesture is merged into the one already waiting in the queue rather than queued separately.
+ * Scrolls separated by any other event are never merged so the ordering of DOWN, FLING and FINISH
+ * events relative to the scrolls is kept.</p>
+ * @author Nick Stephen
+ */
+class InputQueue {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private GestureEvent[] mEvents = new GestureEvent[INITIAL_CAPACITY];
+    private int mHead;
+    private int mSize;
+    private boolean mCoalesce = true;
+
+    /**
+     * Add an event to the back of the queue.
+     * @param e The event
+     */
+    public synchronized void add(@NotNull GestureEvent e) {
+        if (mCoalesce && e.type == GestureEvent.Type.SCROLL && mSize > 0) {
+            GestureEvent tail = mEvents[(mHead + mSize - 1) % mEvents.length];
+
+            if (isSameScroll(tail, e)) {
+                GestureScroll scroll = (GestureScroll) tail;
+                scroll.scrollX += ((GestureScroll) e).scrollX;
+                scroll.scrollY += ((GestureScroll) e).scrollY;
+                e.recycle();
+                return;
+            }
+        }
+
+        if (mSize == mEvents.length) {
+            grow();
+        }
+
+        mEvents[(mHead + mSize) % mEvents.length] = e;
+        mSize++;
+    }
+
+    /**
+     * Remove the event from the front of the queue.
+     * @return The event, or null if the queue is empty
+     */
+    public synchronized @Nullable GestureEvent poll() {
+        if (mSize == 0) {
+            return null;
+        }
+
+        GestureEvent e = mEvents[mHead];
+        mEvents[mHead] = null;
+        mHead = (mHead + 1) % mEvents.length;
+        mSize--;
+        return e;
+    }
+
+    /**
+     * Remove all events from the queue, recycling them.
+     */
+    public synchronized void clear() {
+        GestureEvent e;
+        while ((e = poll()) != null) {
+            e.recycle();
+        }
+        mHead = 0;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Set whether consecutive scrolls of the same gesture should be merged.
+     * @param coalesce True to merge scrolls, false to queue every one
+     */
+    public synchronized void setCoalescing(boolean coalesce) {
+        mCoalesce = coalesce;
+    }
+
+    /**
+     * Check whether two events are scrolls from the same gesture. Scrolls carry the position of the
+     * initial down event so they'll be delivered to the same target in the layout.
+     */
+    private static boolean isSameScroll(@NotNull GestureEvent queued, @NotNull GestureEvent e) {
+        return queued.type == GestureEvent.Type.SCROLL && queued.pointerId == e.pointerId &&
+                queued.originalTime == e.originalTime && queued.originalX == e.originalX &&
+                queued.originalY == e.originalY;
+    }
+
+    private void grow() {
+        GestureEvent[] events = new GestureEvent[mEvents.length * 2];
+        for (int i = 0; i < mSize; i++) {
+            events[i] = mEvents[(mHead + i) % mEvents.length];
+        }
+        mEvents = events;
+        mHead = 0;
+    }
+}
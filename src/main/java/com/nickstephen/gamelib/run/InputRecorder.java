@@ -0,0 +1,138 @@
+package com.nickstephen.gamelib.run;
+
+import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
+import com.nickstephen.gamelib.opengl.gestures.GestureFling;
+import com.nickstephen.gamelib.opengl.gestures.GestureScroll;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Records the gesture events consumed by a {@link com.nickstephen.gamelib.run.GameLoop} on each
+ * tick, along with the tick number and clock value, into a compact binary log. The log can be fed
+ * back into a loop with {@link com.nickstephen.gamelib.run.InputReplay} to reproduce the exact
+ * same run.</p>
+ *
+ * <p>Attach the recorder with {@link GameLoop#setInputRecorder(InputRecorder)}. Only the gesture
+ * events that reach {@link GameLoop#handleUserInput(com.nickstephen.gamelib.opengl.gestures.GestureEvent)}
+ * are recorded, not raw touch samples.</p>
+ *
+ * <p>Log format (big endian): the magic number {@link #MAGIC}, a version byte, the clock value of
+ * the first tick as a long and then one record per tick. Each tick record is a varint of the tick
+ * number delta, a zig-zag varint of the clock delta, a varint count of events and then the events.
+ * An event is its type ordinal byte, a varint pointer id, the down time long, x and y floats and
+ * for SCROLL and FLING events the two extra floats.</p>
+ * @author Nick Stephen
+ */
+public class InputRecorder {
+    public static final int MAGIC = 0x474C4952; // "GLIR"
+    public static final int VERSION = 1;
+
+    private final DataOutputStream mOut;
+    private final ByteArrayOutputStream mTickBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream mTickOut = new DataOutputStream(mTickBytes);
+
+    private boolean mStarted = false;
+    private int mLastTick;
+    private long mLastTime;
+    private int mCount;
+
+    /**
+     * Constructor.
+     * @param out The stream to write the log to. Closed by {@link #close()}.
+     */
+    public InputRecorder(@NotNull OutputStream out) {
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * Start recording a tick.
+     * @param tick The tick number
+     * @param now The clock value the tick is run with
+     * @throws IOException If writing the log fails
+     */
+    public void beginTick(int tick, long now) throws IOException {
+        if (!mStarted) {
+            mOut.writeInt(MAGIC);
+            mOut.writeByte(VERSION);
+            mOut.writeLong(now);
+            mLastTick = tick;
+            mLastTime = now;
+            mStarted = true;
+        }
+
+        writeVarLong(mOut, tick - mLastTick);
+        writeVarLong(mOut, zigZag(now - mLastTime));
+        mLastTick = tick;
+        mLastTime = now;
+
+        mTickBytes.reset();
+        mCount = 0;
+    }
+
+    /**
+     * Record an event consumed during the current tick.
+     * @param e The event
+     * @throws IOException If writing the log fails
+     */
+    public void record(@NotNull GestureEvent e) throws IOException {
+        mTickOut.writeByte(e.type.ordinal());
+        writeVarLong(mTickOut, e.pointerId);
+        mTickOut.writeLong(e.originalTime);
+        mTickOut.writeFloat(e.originalX);
+        mTickOut.writeFloat(e.originalY);
+
+        if (e.type == GestureEvent.Type.SCROLL) {
+            mTickOut.writeFloat(((GestureScroll) e).scrollX);
+            mTickOut.writeFloat(((GestureScroll) e).scrollY);
+        } else if (e.type == GestureEvent.Type.FLING) {
+            mTickOut.writeFloat(((GestureFling) e).xVelocity);
+            mTickOut.writeFloat(((GestureFling) e).yVelocity);
+        }
+
+        mCount++;
+    }
+
+    /**
+     * Finish recording the current tick.
+     * @throws IOException If writing the log fails
+     */
+    public void endTick() throws IOException {
+        writeVarLong(mOut, mCount);
+        mTickOut.flush();
+        mTickBytes.writeTo(mOut);
+    }
+
+    /**
+     * Flush anything buffered to the underlying stream.
+     * @throws IOException If writing fails
+     */
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    /**
+     * Flush and close the log.
+     * @throws IOException If writing fails
+     */
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static void writeVarLong(@NotNull DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
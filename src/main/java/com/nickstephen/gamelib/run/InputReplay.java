@@ -0,0 +1,173 @@
+package com.nickstephen.gamelib.run;
+
+import com.nickstephen.gamelib.opengl.gestures.GestureEvent;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Plays back a log written by an {@link com.nickstephen.gamelib.run.InputRecorder}, one tick at a
+ * time. Attach it to a loop with {@link GameLoop#setInputReplay(InputReplay)} and the loop will feed
+ * the recorded events into {@link GameLoop#handleUserInput(com.nickstephen.gamelib.opengl.gestures.GestureEvent)}
+ * instead of reading the live input queue.</p>
+ *
+ * <p>When the loop is headless (it has a {@link com.nickstephen.gamelib.run.ManualClock}) its clock
+ * is also set to the recorded value at the start of each tick, so the run is reproduced exactly. The
+ * loop stops once the log runs out.</p>
+ * @author Nick Stephen
+ */
+public class InputReplay {
+    private static final GestureEvent.Type[] sTypes = GestureEvent.Type.values();
+
+    private final DataInputStream mIn;
+    private final List<GestureEvent> mEvents = new ArrayList<GestureEvent>();
+
+    private int mIndex;
+    private int mTick;
+    private long mTime;
+    private boolean mFinished = false;
+
+    /**
+     * Constructor. Reads the log header straight away.
+     * @param in The stream to read the log from. Closed by {@link #close()}.
+     * @throws IOException If the header can't be read or isn't a valid log
+     */
+    public InputReplay(@NotNull InputStream in) throws IOException {
+        mIn = new DataInputStream(new BufferedInputStream(in));
+
+        if (mIn.readInt() != InputRecorder.MAGIC) {
+            throw new IOException("Not an input log");
+        }
+        int version = mIn.readUnsignedByte();
+        if (version != InputRecorder.VERSION) {
+            throw new IOException("Unsupported input log version " + version);
+        }
+        mTime = mIn.readLong();
+    }
+
+    /**
+     * Read the next tick from the log. Any events from the previous tick that weren't polled are
+     * recycled.
+     * @return True if there was another tick, false if the log is finished
+     * @throws IOException If the log can't be read
+     */
+    public boolean nextTick() throws IOException {
+        recycleRemaining();
+
+        if (mFinished) {
+            return false;
+        }
+
+        long tickDelta;
+        try {
+            tickDelta = readVarLong(mIn);
+        } catch (EOFException e) {
+            mFinished = true;
+            return false;
+        }
+
+        mTick += (int) tickDelta;
+        mTime += unZigZag(readVarLong(mIn));
+
+        int count = (int) readVarLong(mIn);
+        for (int i = 0; i < count; i++) {
+            GestureEvent.Type type = sTypes[mIn.readUnsignedByte()];
+            int pointer = (int) readVarLong(mIn);
+            long time = mIn.readLong();
+            float x = mIn.readFloat();
+            float y = mIn.readFloat();
+            float param1 = 0, param2 = 0;
+
+            if (type == GestureEvent.Type.SCROLL || type == GestureEvent.Type.FLING) {
+                param1 = mIn.readFloat();
+                param2 = mIn.readFloat();
+            }
+
+            mEvents.add(GestureEvent.construct(type, time, pointer, x, y, param1, param2));
+        }
+
+        return true;
+    }
+
+    /**
+     * Take the next event of the current tick. The caller is responsible for recycling it.
+     * @return The event, or null if there are no more in this tick
+     */
+    public @Nullable GestureEvent poll() {
+        if (mIndex >= mEvents.size()) {
+            return null;
+        }
+
+        GestureEvent e = mEvents.get(mIndex);
+        mEvents.set(mIndex++, null);
+        return e;
+    }
+
+    /**
+     * Get the number of the current tick, relative to the first recorded tick.
+     * @return The tick number
+     */
+    public int getTick() {
+        return mTick;
+    }
+
+    /**
+     * Get the recorded clock value of the current tick.
+     * @return The time (millis)
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Close the log.
+     * @throws IOException If closing fails
+     */
+    public void close() throws IOException {
+        recycleRemaining();
+        mFinished = true;
+        mIn.close();
+    }
+
+    private void recycleRemaining() {
+        GestureEvent e;
+        while ((e = poll()) != null) {
+            e.recycle();
+        }
+        mEvents.clear();
+        mIndex = 0;
+    }
+
+    static long unZigZag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static long readVarLong(@NotNull DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+
+        do {
+            if (shift > 63) {
+                throw new IOException("Malformed varint in input log");
+            }
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+}
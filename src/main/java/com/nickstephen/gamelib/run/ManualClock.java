@@ -0,0 +1,50 @@
+package com.nickstephen.gamelib.run;
+
+/**
+ * A clock that only moves when it's told to. Used by headless game loops so that a tick takes
+ * exactly its update interval of game time however long it takes to compute.
+ * @author Nick Stephen
+ */
+public class ManualClock implements IClock {
+    private volatile long mTime;
+
+    /**
+     * Constructor. Starts the clock at 0.
+     */
+    public ManualClock() {
+        this(0);
+    }
+
+    /**
+     * Constructor.
+     * @param start The time (millis) to start the clock at
+     */
+    public ManualClock(long start) {
+        mTime = start;
+    }
+
+    @Override
+    public long now() {
+        return mTime;
+    }
+
+    /**
+     * Move the clock forwards.
+     * @param millis The amount of time to advance by
+     * @return This instance, for method chaining
+     */
+    public ManualClock advance(long millis) {
+        mTime += millis;
+        return this;
+    }
+
+    /**
+     * Set the time of the clock.
+     * @param time The new time (millis)
+     * @return This instance, for method chaining
+     */
+    public ManualClock set(long time) {
+        mTime = time;
+        return this;
+    }
+}
@@ -0,0 +1,93 @@
+package com.nickstephen.gamelib.run;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Runs many independent headless {@link com.nickstephen.gamelib.run.GameLoop}s in parallel on a
+ * fixed pool of threads, e.g. for balancing simulations or training AI on a server.</p>
+ *
+ * <p>Each loop is bound to the thread running it for the duration of its ticks, so
+ * {@link GameLoop#getInstanceUnsafe()} (and therefore animations) refer to the right loop. Anything
+ * else that's global (the {@link com.nickstephen.gamelib.run.Game} singleton, the texture and
+ * program managers) is shared between simulations, so give each loop its own game with
+ * {@link GameLoop#setGame(Game)} if it needs one and keep GL out of simulations entirely.</p>
+ * @author Nick Stephen
+ */
+public class SimulationPool {
+    private final ExecutorService mExecutor;
+
+    /**
+     * Constructor that uses one thread per available processor.
+     */
+    public SimulationPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * @param threads The number of simulations to run at once
+     */
+    public SimulationPool(int threads) {
+        mExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, "Simulation-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue a loop to be run for a number of ticks.
+     * @param loop A headless loop (constructed with a {@link ManualClock})
+     * @param ticks The number of ticks to run it for
+     * @return A future that completes with the loop once it's finished
+     */
+    public @NotNull <T extends GameLoop> Future<T> submit(@NotNull final T loop, final int ticks) {
+        return mExecutor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                loop.runHeadless(ticks);
+                return loop;
+            }
+        });
+    }
+
+    /**
+     * Run every loop for a number of ticks and wait for them all to finish.
+     * @param loops Headless loops (constructed with a {@link ManualClock})
+     * @param ticks The number of ticks to run each loop for
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If any of the loops threw an exception
+     */
+    public void runAll(@NotNull List<? extends GameLoop> loops, int ticks) throws InterruptedException, ExecutionException {
+        List<Future<? extends GameLoop>> futures = new ArrayList<Future<? extends GameLoop>>(loops.size());
+        for (int i = 0; i < loops.size(); i++) {
+            futures.add(submit(loops.get(i), ticks));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            futures.get(i).get();
+        }
+    }
+
+    /**
+     * Stop accepting simulations. Those already queued still run.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,17 @@
+package com.nickstephen.gamelib.run;
+
+/**
+ * The default clock, which just reads the system time.
+ * @author Nick Stephen
+ */
+public final class WallClock implements IClock {
+    public static final WallClock INSTANCE = new WallClock();
+
+    private WallClock() {
+    }
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,202 @@
+package com.nickstephen.gamelib.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>A pool of direct {@link java.nio.ByteBuffer}s in power of two size classes. Allocating a
+ * direct buffer is slow and its native memory is only freed when the buffer is finalised, so
+ * shapes that are created and thrown away often (text for example) should borrow their buffers
+ * from here and give them back when they're disposed.</p>
+ *
+ * <p>Buffers come back in native byte order with their limit set to the requested size; their
+ * capacity may be larger. Requests bigger than {@link #MAX_POOLED_SIZE} aren't pooled. At most
+ * {@link #MAX_POOLED_BYTES} of free buffers are held on to; past that released buffers are left
+ * for the garbage collector.</p>
+ *
+ * <p>All methods are thread-safe.</p>
+ * @author Nick Stephen
+ */
+public final class BufferPool {
+    /**
+     * The smallest size class (bytes).
+     */
+    public static final int MIN_POOLED_SIZE = 64;
+    /**
+     * The largest size class (bytes).
+     */
+    public static final int MAX_POOLED_SIZE = 1 << 20;
+    /**
+     * The most memory held by free buffers in the pool (bytes).
+     */
+    public static final int MAX_POOLED_BYTES = 4 << 20;
+
+    private static final int MIN_SHIFT = 6;
+    private static final int CLASSES = 20 - MIN_SHIFT + 1;
+
+    private static final Object sLock = new Object();
+    private static final ByteBuffer[][] sFree = new ByteBuffer[CLASSES][4];
+    private static final int[] sFreeCount = new int[CLASSES];
+
+    private static final byte[] sZeroes = new byte[4096];
+
+    private static int sPooledBytes;
+    private static int sOutstanding;
+    private static long sHits;
+    private static long sMisses;
+
+    private BufferPool() {} // Don't use
+
+    /**
+     * Borrow a direct buffer of at least the given size. A buffer from the pool still holds
+     * whatever its last user wrote into it.
+     * @param size The size needed (bytes)
+     * @return A cleared buffer in native order with its limit set to size
+     */
+    public static @NotNull ByteBuffer acquire(int size) {
+        return acquire(size, false);
+    }
+
+    /**
+     * Borrow a direct buffer of at least the given size, optionally filled with zeroes like a
+     * freshly allocated one.
+     * @param size The size needed (bytes)
+     * @param zeroed True to zero the first size bytes of a buffer that comes from the pool
+     * @return A cleared buffer in native order with its limit set to size
+     */
+    public static @NotNull ByteBuffer acquire(int size, boolean zeroed) {
+        final int sizeClass = sizeClass(size);
+        ByteBuffer buffer = null;
+
+        synchronized (sLock) {
+            sOutstanding++;
+
+            if (sizeClass >= 0 && sFreeCount[sizeClass] > 0) {
+                final int i = --sFreeCount[sizeClass];
+                buffer = sFree[sizeClass][i];
+                sFree[sizeClass][i] = null;
+                sPooledBytes -= buffer.capacity();
+                sHits++;
+            } else {
+                sMisses++;
+            }
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(sizeClass >= 0 ? MIN_POOLED_SIZE << sizeClass : size);
+            buffer.order(ByteOrder.nativeOrder());
+        } else if (zeroed) {
+            buffer.clear();
+            buffer.limit(size);
+            while (buffer.hasRemaining()) {
+                buffer.put(sZeroes, 0, Math.min(sZeroes.length, buffer.remaining()));
+            }
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool. It (and any views of it) must not be used after this call.
+     * @param buffer A buffer from {@link #acquire(int)}
+     */
+    public static void release(@NotNull ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        final int sizeClass = sizeClass(capacity);
+
+        synchronized (sLock) {
+            sOutstanding--;
+
+            if (sizeClass < 0 || (MIN_POOLED_SIZE << sizeClass) != capacity
+                    || sPooledBytes + capacity > MAX_POOLED_BYTES) {
+                return; // Not one of ours or the pool is full
+            }
+
+            ByteBuffer[] free = sFree[sizeClass];
+            final int count = sFreeCount[sizeClass];
+            if (count == free.length) {
+                ByteBuffer[] grown = new ByteBuffer[count * 2];
+                System.arraycopy(free, 0, grown, 0, count);
+                sFree[sizeClass] = free = grown;
+            }
+
+            free[count] = buffer;
+            sFreeCount[sizeClass] = count + 1;
+            sPooledBytes += capacity;
+        }
+    }
+
+    /**
+     * Drop all of the free buffers. Useful when the system is low on memory.
+     */
+    public static void trim() {
+        synchronized (sLock) {
+            for (int c = 0; c < CLASSES; c++) {
+                for (int i = 0; i < sFreeCount[c]; i++) {
+                    sFree[c][i] = null;
+                }
+                sFreeCount[c] = 0;
+            }
+            sPooledBytes = 0;
+        }
+    }
+
+    /**
+     * Get the memory held by free buffers in the pool.
+     * @return The number of bytes
+     */
+    public static int getPooledBytes() {
+        synchronized (sLock) {
+            return sPooledBytes;
+        }
+    }
+
+    /**
+     * Get the number of buffers that have been acquired and not released yet.
+     * @return The number of buffers
+     */
+    public static int getOutstanding() {
+        synchronized (sLock) {
+            return sOutstanding;
+        }
+    }
+
+    /**
+     * Get the fraction of {@link #acquire(int)} calls that were served from the pool.
+     * @return The hit rate between 0 and 1
+     */
+    public static float getHitRate() {
+        synchronized (sLock) {
+            final long total = sHits + sMisses;
+            return total == 0 ? 0.f : sHits / (float) total;
+        }
+    }
+
+    /**
+     * Reset the hit rate counters.
+     */
+    public static void resetStats() {
+        synchronized (sLock) {
+            sHits = 0;
+            sMisses = 0;
+        }
+    }
+
+    /**
+     * Get the size class for a size.
+     * @return The index of the smallest class that fits, or -1 if the size is too big to pool
+     */
+    private static int sizeClass(int size) {
+        if (size > MAX_POOLED_SIZE) {
+            return -1;
+        } else if (size <= MIN_POOLED_SIZE) {
+            return 0;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,68 @@
+package com.nickstephen.gamelib.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>A simple thread-safe object pool. Sub-classes provide {@link #newObject()} which is called
+ * whenever the pool is empty.</p>
+ *
+ * <p>Released objects past the maximum pool size are simply dropped for the garbage collector.</p>
+ * @author Nick Stephen
+ */
+public abstract class Pool<T> {
+    private final Object[] mFree;
+    private int mFreeCount;
+
+    /**
+     * Constructor.
+     * @param maxSize The maximum number of free objects to hold on to
+     */
+    public Pool(int maxSize) {
+        mFree = new Object[maxSize];
+    }
+
+    /**
+     * Create a new instance of the pooled object. Called when there are no free objects.
+     * @return A new object
+     */
+    protected abstract @NotNull T newObject();
+
+    /**
+     * Get an object from the pool, or a new one if the pool is empty.
+     * @return An object ready for use
+     */
+    @SuppressWarnings("unchecked")
+    public @NotNull T acquire() {
+        synchronized (mFree) {
+            if (mFreeCount > 0) {
+                T obj = (T) mFree[--mFreeCount];
+                mFree[mFreeCount] = null;
+                return obj;
+            }
+        }
+
+        return newObject();
+    }
+
+    /**
+     * Return an object to the pool. The caller must not use the object after this call.
+     * @param obj The object to return
+     */
+    public void release(@NotNull T obj) {
+        synchronized (mFree) {
+            if (mFreeCount < mFree.length) {
+                mFree[mFreeCount++] = obj;
+            }
+        }
+    }
+
+    /**
+     * Get the number of free objects currently held by the pool.
+     * @return The number of free objects
+     */
+    public int getFreeCount() {
+        synchronized (mFree) {
+            return mFreeCount;
+        }
+    }
+}
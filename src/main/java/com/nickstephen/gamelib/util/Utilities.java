@@ -1,5 +1,6 @@
 package com.nickstephen.gamelib.util;
 
+import android.os.Handler;
 import android.widget.Toast;
 
 import com.nickstephen.gamelib.run.Game;
@@ -12,7 +13,12 @@ import org.jetbrains.annotations.NotNull;
  */
 public class Utilities {
     public static void toastMessageSafe(@NotNull final CharSequence mesg, final boolean shortTime) {
-        GameLoop.getInstanceUnsafe().getMainThreadHandler().post(new Runnable() {
+        Handler handler = GameLoop.getInstanceUnsafe().getMainThreadHandler();
+        if (handler == null) {
+            return; // Headless, nowhere to show it
+        }
+
+        handler.post(new Runnable() {
             @Override
             public void run() {
                 Toast.makeText(Game.getInstanceUnsafe().getContext(), mesg,